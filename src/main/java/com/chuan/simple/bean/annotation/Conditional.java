@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+
+/**
+ * The scanned component is only registered if all the conditions hold. The
+ * conditions are read from the class file, the component class is not
+ * loaded if they fail.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Conditional {
+
+    /**
+     * Names of classes which must be on the class path.
+     */
+    String[] onClass() default {};
+
+    /**
+     * Names of classes which must not be on the class path.
+     */
+    String[] onMissingClass() default {};
+
+    /**
+     * Context attributes as 'name=value' which must have the value, or as
+     * 'name' which must be set.
+     */
+    String[] onAttribute() default {};
+
+    /**
+     * Names of {@link Builder}s which must be registered before.
+     */
+    String[] onBuilder() default {};
+
+    /**
+     * Names of {@link Builder}s which must not be registered before.
+     */
+    String[] onMissingBuilder() default {};
+
+}
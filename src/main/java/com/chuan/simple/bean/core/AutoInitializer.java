@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.exception.SimpleBuildException;
+
+/**
+ * Build the auto-init singletons of a {@link SimpleContext}.
+ * <p>
+ * The dependencies between builders are collected by
+ * {@link BuilderDependencies}. Singletons without pending dependencies are
+ * built in parallel on the executor, the others are built as soon as all of
+ * their dependencies are built. Circular dependencies are left to the build
+ * procedures.
+ */
+public class AutoInitializer {
+
+    private static final Log log = LogFactory.getLog(AutoInitializer.class);
+
+    /**
+     * Build sequentially in topological order if null.
+     */
+    private final Executor executor;
+
+    private final BuilderDependencies dependencies;
+
+    private final Map<Builder<?>, Task> tasks = new LinkedHashMap<>();
+
+    /**
+     * Tasks in topological order, dependencies go first.
+     */
+    private final List<Task> scheduled = new ArrayList<>();
+
+    private List<String> criticalPath = Collections.emptyList();
+
+    public AutoInitializer(SimpleContext context, Executor executor) {
+        this.executor = executor;
+        this.dependencies = new BuilderDependencies(context.getRegistry(),
+                context.getAttributes());
+    }
+
+    public void initialize(Collection<Builder<?>> builders) {
+        long start = System.nanoTime();
+        for (Builder<?> builder : builders) {
+            tasks.put(builder, new Task(builder));
+        }
+        for (Task task : tasks.values()) {
+            collectDependencies(task);
+        }
+        for (Task task : tasks.values()) {
+            schedule(task, new HashSet<>());
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        for (Task task : scheduled) {
+            futures.add(task.future);
+            task.future.whenComplete((result, e) -> {
+                if (e != null) {
+                    failed.completeExceptionally(e);
+                }
+            });
+        }
+        CompletableFuture<Void> all = CompletableFuture
+                .allOf(futures.toArray(new CompletableFuture<?>[0]));
+        try {
+            CompletableFuture.anyOf(all, failed).join();
+        } catch (CompletionException e) {
+            // Don't start the pending builds, the running ones can't be
+            // stopped.
+            for (CompletableFuture<Void> future : futures) {
+                future.cancel(false);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SimpleBuildException("Auto init failed", cause);
+        }
+        report(System.nanoTime() - start);
+    }
+
+    /**
+     * Names of the builders on the longest chain of dependent builds of the
+     * last {@link #initialize(Collection)}.
+     */
+    public List<String> getCriticalPath() {
+        return criticalPath;
+    }
+
+    private void collectDependencies(Task task) {
+        Set<Builder<?>> visited = new HashSet<>();
+        Deque<Builder<?>> pending =
+                new ArrayDeque<>(getDependencies(task.builder));
+        while (!pending.isEmpty()) {
+            Builder<?> dependency = pending.poll();
+            if (dependency == task.builder || !visited.add(dependency)) {
+                continue;
+            }
+            Task dependencyTask = tasks.get(dependency);
+            if (dependencyTask != null) {
+                task.dependencies.add(dependencyTask);
+            } else {
+                // Built on demand, look through it for auto-init builders.
+                pending.addAll(getDependencies(dependency));
+            }
+        }
+    }
+
+    protected List<Builder<?>> getDependencies(Builder<?> builder) {
+        return dependencies.getDependencies(builder);
+    }
+
+    private CompletableFuture<Void> schedule(Task task, Set<Task> visiting) {
+        if (task.future != null) {
+            return task.future;
+        }
+        visiting.add(task);
+        List<CompletableFuture<Void>> dependencyFutures = new ArrayList<>();
+        Iterator<Task> it = task.dependencies.iterator();
+        while (it.hasNext()) {
+            Task dependency = it.next();
+            if (visiting.contains(dependency)) {
+                log.debug("Circular dependency between auto-init builder "
+                        + task.builder.getBuilderName() + " and "
+                        + dependency.builder.getBuilderName());
+                it.remove();
+                continue;
+            }
+            dependencyFutures.add(schedule(dependency, visiting));
+        }
+        visiting.remove(task);
+        CompletableFuture<Void> dependencies = CompletableFuture.allOf(
+                dependencyFutures.toArray(new CompletableFuture<?>[0]));
+        if (executor == null) {
+            task.future = dependencies.thenRun(task::run);
+        } else {
+            task.future = dependencies.thenRunAsync(task::run, executor);
+        }
+        scheduled.add(task);
+        return task.future;
+    }
+
+    private void report(long elapsed) {
+        Task last = null;
+        for (Task task : scheduled) {
+            task.pathCost = task.cost;
+            for (Task dependency : task.dependencies) {
+                if (task.previous == null
+                        || dependency.pathCost > task.previous.pathCost) {
+                    task.previous = dependency;
+                }
+            }
+            if (task.previous != null) {
+                task.pathCost += task.previous.pathCost;
+            }
+            if (last == null || task.pathCost > last.pathCost) {
+                last = task;
+            }
+        }
+        LinkedList<String> path = new LinkedList<>();
+        StringBuilder description = new StringBuilder();
+        for (Task task = last; task != null; task = task.previous) {
+            path.addFirst(task.builder.getBuilderName());
+            description.insert(0, (task.previous != null ? " -> " : "")
+                    + task.builder.getBuilderName() + "("
+                    + TimeUnit.NANOSECONDS.toMillis(task.cost) + "ms)");
+        }
+        this.criticalPath = Collections.unmodifiableList(path);
+        if (log.isInfoEnabled() && last != null) {
+            log.info("Auto initialized " + scheduled.size()
+                    + " singletons in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed)
+                    + "ms, critical path ("
+                    + TimeUnit.NANOSECONDS.toMillis(last.pathCost) + "ms): "
+                    + description);
+        }
+    }
+
+    private static final class Task {
+
+        private final Builder<?> builder;
+
+        private final Set<Task> dependencies = new LinkedHashSet<>();
+
+        private CompletableFuture<Void> future;
+
+        private volatile long cost;
+
+        private long pathCost;
+
+        private Task previous;
+
+        private Task(Builder<?> builder) {
+            this.builder = builder;
+        }
+
+        private void run() {
+            long start = System.nanoTime();
+            builder.build();
+            cost = System.nanoTime() - start;
+        }
+
+    }
+
+}
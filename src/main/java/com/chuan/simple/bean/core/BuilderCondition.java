@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.bean.annotation.Conditional;
+import com.chuan.simple.bean.core.config.node.Node;
+import com.chuan.simple.bean.core.info.AnnotationInfo;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+
+/**
+ * The conditions a builder is registered on, given by the builder node
+ * attributes 'on-class', 'on-missing-class', 'on-attribute', 'on-builder'
+ * and 'on-missing-builder' or by {@link Conditional}.
+ * <p>
+ * Classes are looked up as class files and builders among the builders
+ * registered so far, so no class is loaded.
+ */
+public class BuilderCondition {
+
+    public static final String ATTR_ON_CLASS = "on-class";
+
+    public static final String ATTR_ON_MISSING_CLASS = "on-missing-class";
+
+    public static final String ATTR_ON_ATTRIBUTE = "on-attribute";
+
+    public static final String ATTR_ON_BUILDER = "on-builder";
+
+    public static final String ATTR_ON_MISSING_BUILDER = "on-missing-builder";
+
+    private static final String[] NONE = new String[0];
+
+    private static final String EQUALS = "=";
+
+    private String[] onClass = NONE;
+
+    private String[] onMissingClass = NONE;
+
+    private String[] onAttribute = NONE;
+
+    private String[] onBuilder = NONE;
+
+    private String[] onMissingBuilder = NONE;
+
+    /**
+     * The conditions of a builder node.
+     * @return null if it has none
+     */
+    public static BuilderCondition from(Node cfg) {
+        if (!cfg.hasAttr(ATTR_ON_CLASS) && !cfg.hasAttr(ATTR_ON_MISSING_CLASS)
+                && !cfg.hasAttr(ATTR_ON_ATTRIBUTE)
+                && !cfg.hasAttr(ATTR_ON_BUILDER)
+                && !cfg.hasAttr(ATTR_ON_MISSING_BUILDER)) {
+            return null;
+        }
+        BuilderCondition condition = new BuilderCondition();
+        condition.onClass = split(cfg.attrString(ATTR_ON_CLASS));
+        condition.onMissingClass =
+                split(cfg.attrString(ATTR_ON_MISSING_CLASS));
+        condition.onAttribute = split(cfg.attrString(ATTR_ON_ATTRIBUTE));
+        condition.onBuilder = split(cfg.attrString(ATTR_ON_BUILDER));
+        condition.onMissingBuilder =
+                split(cfg.attrString(ATTR_ON_MISSING_BUILDER));
+        return condition;
+    }
+
+    /**
+     * The conditions of a {@link Conditional} read from a class file.
+     * @return null if there is none
+     */
+    public static BuilderCondition from(AnnotationInfo conditional) {
+        if (conditional == null) {
+            return null;
+        }
+        BuilderCondition condition = new BuilderCondition();
+        condition.onClass = values(conditional, "onClass");
+        condition.onMissingClass = values(conditional, "onMissingClass");
+        condition.onAttribute = values(conditional, "onAttribute");
+        condition.onBuilder = values(conditional, "onBuilder");
+        condition.onMissingBuilder = values(conditional, "onMissingBuilder");
+        return condition;
+    }
+
+    public boolean matches(SimpleContext context) {
+        ClassInfoCache classInfos = context.getClassInfos();
+        for (String className : onClass) {
+            if (!classInfos.isPresent(className)) {
+                return false;
+            }
+        }
+        for (String className : onMissingClass) {
+            if (classInfos.isPresent(className)) {
+                return false;
+            }
+        }
+        for (String attribute : onAttribute) {
+            if (!matchesAttribute(context, attribute)) {
+                return false;
+            }
+        }
+        for (String builderName : onBuilder) {
+            if (context.getBuilder(builderName) == null) {
+                return false;
+            }
+        }
+        for (String builderName : onMissingBuilder) {
+            if (context.getBuilder(builderName) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesAttribute(SimpleContext context,
+            String attribute) {
+        int equals = attribute.indexOf(EQUALS);
+        if (equals < 0) {
+            return StringHelper.isNotEmpty(context.getAttribute(attribute));
+        }
+        String value = context.getAttribute(attribute.substring(0, equals).trim());
+        return StringHelper.equals(value,
+                attribute.substring(equals + 1).trim());
+    }
+
+    private static String[] split(String value) {
+        if (!StringHelper.hasText(value)) {
+            return NONE;
+        }
+        return Arrays.stream(StringHelper.splitByDelimiter(value,
+                StringHelper.COMMA)).map(String::trim)
+                .filter(StringHelper::isNotEmpty).toArray(String[]::new);
+    }
+
+    private static String[] values(AnnotationInfo annotation,
+            String attributeName) {
+        Object value = annotation.getAttribute(attributeName);
+        if (!(value instanceof List)) {
+            return NONE;
+        }
+        return ((List<?>) value).stream().map(String::valueOf)
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        append(sb, ATTR_ON_CLASS, onClass);
+        append(sb, ATTR_ON_MISSING_CLASS, onMissingClass);
+        append(sb, ATTR_ON_ATTRIBUTE, onAttribute);
+        append(sb, ATTR_ON_BUILDER, onBuilder);
+        append(sb, ATTR_ON_MISSING_BUILDER, onMissingBuilder);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String name,
+            String[] values) {
+        if (values.length > 0) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(name).append(':')
+                    .append(String.join(StringHelper.COMMA, values));
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.builder.MethodBuilder;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
+import com.chuan.simple.bean.core.element.entity.Element;
+import com.chuan.simple.bean.core.info.ClassInfo;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+import com.chuan.simple.bean.core.info.FieldInfo;
+
+/**
+ * Resolve the builders a builder directly depends on within a
+ * {@link Registry}.
+ * <p>
+ * The dependencies are collected from {@link Builder#getDependsOn()}, the
+ * configured {@link Element}s, the owner of {@link MethodBuilder}, the
+ * injection points of {@link GeneratedBuilder} and the types of autowired
+ * fields. Types are looked up by name, so resolving the dependencies loads
+ * no builder class.
+ */
+public class BuilderDependencies {
+
+    private static final String JAVA_PACKAGE = "java.";
+
+    private final Registry registry;
+
+    private final Map<String, String> attributes;
+
+    private final ClassInfoCache classInfos;
+
+    public BuilderDependencies(Registry registry,
+            Map<String, String> attributes) {
+        this.registry = registry;
+        this.attributes = attributes;
+        this.classInfos = registry.getClassInfos();
+    }
+
+    public List<Builder<?>> getDependencies(Builder<?> builder) {
+        List<Builder<?>> dependencies = new ArrayList<>();
+        String[] dependsOn = builder.getDependsOn();
+        if (dependsOn != null) {
+            for (String depend : dependsOn) {
+                addNamed(dependencies, depend);
+            }
+        }
+        if (builder instanceof MethodBuilder<?>) {
+            MethodBuilder<?> methodBuilder = (MethodBuilder<?>) builder;
+            if (StringHelper.isNotEmpty(methodBuilder.getOwnerName())) {
+                addNamed(dependencies, methodBuilder.getOwnerName());
+            } else if (methodBuilder.getOwnerClassName() != null) {
+                addTyped(dependencies, methodBuilder.getOwnerClassName());
+            } else if (methodBuilder.getOwnerClass() != null) {
+                addTyped(dependencies,
+                        methodBuilder.getOwnerClass().getName());
+            }
+        }
+        for (Element element : builder.getElements()) {
+            addElement(dependencies, element);
+        }
+        if (builder instanceof GeneratedBuilder<?>) {
+            for (Object[] point : ((GeneratedBuilder<?>) builder)
+                    .getDependencyPoints()) {
+                int size = dependencies.size();
+                addNamed(dependencies, (String) point[0]);
+                if (size == dependencies.size() && point[1] != null) {
+                    addTyped(dependencies, ((Class<?>) point[1]).getName());
+                }
+            }
+        }
+        if (builder.isAutowiredField()) {
+            addAutowiredFields(dependencies, builder);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Add the builders of the fields not configured, read from the class
+     * files so no builder class is loaded.
+     */
+    private void addAutowiredFields(List<Builder<?>> dependencies,
+            Builder<?> builder) {
+        String className = builder.getClassName();
+        if (className == null && builder.isBuilderClassResolved()) {
+            className = builder.getBuilderClass().getName();
+        }
+        while (className != null && !className.startsWith(JAVA_PACKAGE)) {
+            ClassInfo classInfo = classInfos.get(className);
+            if (classInfo == null) {
+                return;
+            }
+            for (FieldInfo field : classInfo.getFields().values()) {
+                if (!builder.getFields().containsKey(field.getFieldName())) {
+                    addTyped(dependencies, field.getFieldClassName());
+                }
+            }
+            className = classInfo.getSuperClassName();
+        }
+    }
+
+    /**
+     * Add the builders an element refers to by name or type. Literal values
+     * are never taken for builder names.
+     */
+    private void addElement(List<Builder<?>> dependencies, Object value) {
+        if (value instanceof Element) {
+            Element element = (Element) value;
+            if (element.getValue() != null) {
+                addElement(dependencies, element.getValue());
+                return;
+            }
+            int size = dependencies.size();
+            if (element.getBuilder() != null) {
+                dependencies.add(element.getBuilder());
+            } else {
+                addNamed(dependencies, element.getBuilderName());
+            }
+            if (size == dependencies.size()) {
+                addTyped(dependencies, element.getTypeName());
+            }
+        } else if (value instanceof Element[]) {
+            for (Element element : (Element[]) value) {
+                addElement(dependencies, element);
+            }
+        } else if (value instanceof Collection) {
+            for (Object o : (Collection<?>) value) {
+                addElement(dependencies, o);
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                addElement(dependencies, entry.getKey());
+                addElement(dependencies, entry.getValue());
+            }
+        }
+    }
+
+    private void addNamed(List<Builder<?>> dependencies, String name) {
+        if (StringHelper.isEmpty(name)) {
+            return;
+        }
+        Builder<?> builder = registry.findBuilder(registry.getContext()
+                .getPlaceholderTemplates().resolve(name, attributes));
+        if (builder != null) {
+            dependencies.add(builder);
+        }
+    }
+
+    private void addTyped(List<Builder<?>> dependencies, String typeName) {
+        if (StringHelper.isEmpty(typeName)) {
+            return;
+        }
+        Builder<?> builder = registry.getBuilderByTypeName(typeName);
+        if (builder != null) {
+            dependencies.add(builder);
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.chuan.simple.helper.expression.ExpressionHelper;
+
+/**
+ * A string whose {@code ${...}} placeholders are parsed once.
+ * <p>
+ * A string without placeholders is never resolved. Otherwise the attribute
+ * names it references are recorded, so a changed attribute only concerns
+ * the strings referencing it, and the last result of the template is
+ * reused while these attributes keep their values. Placeholders nested in
+ * a placeholder are taken as referencing any attribute. The resolution
+ * itself is left to {@link ExpressionHelper}.
+ */
+public final class PlaceholderTemplate {
+
+    public static final String PREFIX = "${";
+
+    public static final String SUFFIX = "}";
+
+    public static final String DEFAULT_SEPARATOR = ":";
+
+    private final String source;
+
+    private final boolean constant;
+
+    /**
+     * The referenced attribute names, null if any attribute may be
+     * referenced.
+     */
+    private final String[] names;
+
+    private volatile Resolved last;
+
+    private PlaceholderTemplate(String source) {
+        this.source = source;
+        this.constant = !source.contains(PREFIX);
+        this.names = constant ? new String[0] : parseNames(source);
+    }
+
+    /**
+     * Parse the string, the template is kept by the caller, see
+     * {@link PlaceholderTemplates} for the templates shared in a context.
+     */
+    public static PlaceholderTemplate of(String source) {
+        return new PlaceholderTemplate(source);
+    }
+
+    public String resolve(Map<String, String> attributes) {
+        if (constant) {
+            return source;
+        }
+        if (names == null) {
+            return ExpressionHelper.resolvePlaceholders(source, attributes);
+        }
+        String[] values = new String[names.length];
+        boolean nested = false;
+        for (int i = 0; i < names.length; i++) {
+            values[i] = attributes.get(names[i]);
+            nested = nested || values[i] != null && values[i].contains(PREFIX);
+        }
+        Resolved resolved = this.last;
+        if (resolved != null && Arrays.equals(resolved.values, values)) {
+            return resolved.result;
+        }
+        String result = ExpressionHelper.resolvePlaceholders(source, attributes);
+        if (!nested) {
+            // The result of a value with placeholders depends on more names.
+            this.last = new Resolved(values, result);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the string has no placeholder.
+     */
+    public boolean isConstant() {
+        return constant;
+    }
+
+    /**
+     * Whether the result may change with one of the attributes.
+     */
+    public boolean references(Collection<String> attributeNames) {
+        if (constant) {
+            return false;
+        }
+        if (names == null) {
+            return true;
+        }
+        for (String name : names) {
+            if (attributeNames.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Take the text of each placeholder as name, and the text before the
+     * default value too.
+     * @return null if a placeholder is nested or not closed
+     */
+    private static String[] parseNames(String source) {
+        List<String> names = new ArrayList<>();
+        int start = source.indexOf(PREFIX);
+        while (start >= 0) {
+            int end = source.indexOf(SUFFIX, start + PREFIX.length());
+            if (end < 0) {
+                return null;
+            }
+            String name = source.substring(start + PREFIX.length(), end);
+            if (name.contains(PREFIX)) {
+                return null;
+            }
+            names.add(name);
+            int separator = name.indexOf(DEFAULT_SEPARATOR);
+            if (separator >= 0) {
+                names.add(name.substring(0, separator));
+            }
+            start = source.indexOf(PREFIX, end + SUFFIX.length());
+        }
+        return names.toArray(new String[0]);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static class Resolved {
+
+        private final String[] values;
+
+        private final String result;
+
+        private Resolved(String[] values, String result) {
+            this.values = values;
+            this.result = result;
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The {@link PlaceholderTemplate}s of a context by their source. The least
+ * recently used templates are evicted beyond the capacity, so changing
+ * values do not stop the caching.
+ */
+public class PlaceholderTemplates {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final Map<String, PlaceholderTemplate> templates;
+
+    public PlaceholderTemplates() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PlaceholderTemplates(int capacity) {
+        this.templates = new LinkedHashMap<String, PlaceholderTemplate>(16,
+                0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Entry<String, PlaceholderTemplate> eldest) {
+                return size() > capacity;
+            }
+
+        };
+    }
+
+    public PlaceholderTemplate get(String source) {
+        synchronized (templates) {
+            PlaceholderTemplate template = templates.get(source);
+            if (template == null) {
+                template = PlaceholderTemplate.of(source);
+                templates.put(source, template);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * Resolve the placeholders of {@code source}, null stays null.
+     */
+    public String resolve(String source, Map<String, String> attributes) {
+        if (source == null) {
+            return null;
+        }
+        return get(source).resolve(attributes);
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+}
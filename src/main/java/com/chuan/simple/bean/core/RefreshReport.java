@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What a refresh of {@link SimpleContext} did to the builders.
+ */
+public class RefreshReport {
+
+    private final boolean incremental;
+
+    private final Set<String> rebuilt = new TreeSet<>();
+
+    private final Set<String> reused = new TreeSet<>();
+
+    private final Set<String> removed = new TreeSet<>();
+
+    public RefreshReport(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Whether unchanged builders were kept, false if every builder was
+     * rebuilt.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Names of the builders which were new, changed or depend on changed
+     * builders.
+     */
+    public Set<String> getRebuilt() {
+        return Collections.unmodifiableSet(rebuilt);
+    }
+
+    /**
+     * Names of the builders which were kept together with their singletons.
+     */
+    public Set<String> getReused() {
+        return Collections.unmodifiableSet(reused);
+    }
+
+    /**
+     * Names of the builders which are no longer configured.
+     */
+    public Set<String> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    void rebuilt(String builderName) {
+        this.rebuilt.add(builderName);
+    }
+
+    void reused(String builderName) {
+        this.reused.add(builderName);
+    }
+
+    void removed(String builderName) {
+        this.removed.add(builderName);
+    }
+
+    @Override
+    public String toString() {
+        return (incremental ? "Incremental" : "Full") + " refresh, rebuilt "
+                + rebuilt.size() + ", reused " + reused.size() + ", removed "
+                + removed.size();
+    }
+
+}
@@ -0,0 +1,744 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.procedure.SingletonCreation;
+import com.chuan.simple.bean.core.build.procedure.WaiterGraph;
+import com.chuan.simple.bean.core.config.node.Node;
+import com.chuan.simple.bean.core.config.parser.LazyImport;
+import com.chuan.simple.bean.core.config.parser.SimpleParser;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+import com.chuan.simple.bean.core.processor.Processor;
+
+/**
+ * A generation of the builders, aliases, singletons and processors of a
+ * {@link SimpleContext}.
+ * <p>
+ * A refresh fills a new registry off to the side and publishes it at once,
+ * so readers never block on or observe a half-built context. Lazy imports
+ * are parsed into a copy of the published registry the same way.
+ */
+public class Registry {
+
+    private static final Log log = LogFactory.getLog(Registry.class);
+
+    protected final Map<String, Builder<?>> builderMap =
+            new ConcurrentHashMap<>();
+
+    protected final Map<String, String> aliasMap = new ConcurrentHashMap<>();
+
+    /**
+     * Builders indexed by the names of every super class and interface of
+     * their builder class, used by {@link #getBuilders(Class)}. The names
+     * are read from the class files if the builder class is not loaded yet.
+     */
+    protected final Map<String, Map<String, Builder<?>>> typeIndex =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The builder with the highest order of each queried type name, used by
+     * {@link #getBuilder(Class)}.
+     */
+    protected final Map<String, Builder<?>> typeWinners =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Changed with {@link #typeIndex}, so winners computed from an outdated
+     * index are not cached.
+     */
+    protected long typeVersion;
+
+    protected final Set<String> namesInUse = new HashSet<>();
+
+    protected final List<Processor> processors = new CopyOnWriteArrayList<>();
+
+    protected final Map<String, Object> singletonMap;
+
+    protected final Map<String, Object> singletonMapOnConstruction;
+
+    protected final Map<String, SingletonCreation> singletonCreations;
+
+    protected final WaiterGraph singletonWaiters;
+
+    /**
+     * The {@link Node#contentHash() content hashes} of the config nodes
+     * builders are defined by, used to find the builders changed by a
+     * refresh.
+     */
+    protected final Map<String, Long> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * The content hashes of the config nodes other than builders, in parsing
+     * order.
+     */
+    protected final List<Long> structure = new CopyOnWriteArrayList<>();
+
+    protected volatile Map<String, String> attributes =
+            Collections.emptyMap();
+
+    /**
+     * The imports marked lazy, parsed once a builder of theirs is asked for.
+     */
+    protected final List<LazyImport> lazyImports = new CopyOnWriteArrayList<>();
+
+    protected volatile int pendingLazyImports;
+
+    /**
+     * The lazy imports parsed into this registry so far, in parsing order.
+     */
+    protected final List<LazyImport> loadedLazyImports =
+            new CopyOnWriteArrayList<>();
+
+    protected final Set<LazyImport> loadedLazyImportSet =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * Serializes the parsing of lazy imports, shared with the copies they are
+     * parsed into.
+     */
+    protected final Object lazyImportLock;
+
+    /**
+     * The nesting depth of lazy imports being parsed, guarded by
+     * {@link #lazyImportLock}.
+     */
+    protected int lazyImportDepth;
+
+    protected final SimpleContext context;
+
+    protected final SimpleParser parser;
+
+    protected final ClassInfoCache classInfos;
+
+    public Registry(SimpleContext context, Collection<Processor> processors) {
+        this.context = context;
+        this.processors.addAll(processors);
+        this.singletonMap = new ConcurrentHashMap<>();
+        this.singletonMapOnConstruction = new ConcurrentHashMap<>();
+        this.singletonCreations = new ConcurrentHashMap<>();
+        this.singletonWaiters = new WaiterGraph();
+        this.lazyImportLock = new Object();
+        this.parser = new SimpleParser(context);
+        this.classInfos = context.getClassInfos();
+    }
+
+    /**
+     * Copy the builders, aliases and configs of {@code source} to parse lazy
+     * imports into. The singletons, the parser and the lazy imports are
+     * shared with {@code source}, so builders of both build the same
+     * singletons.
+     */
+    protected Registry(Registry source) {
+        this.context = source.context;
+        this.parser = source.parser;
+        this.classInfos = source.classInfos;
+        this.lazyImportLock = source.lazyImportLock;
+        this.singletonMap = source.singletonMap;
+        this.singletonMapOnConstruction = source.singletonMapOnConstruction;
+        this.singletonCreations = source.singletonCreations;
+        this.singletonWaiters = source.singletonWaiters;
+        this.processors.addAll(source.processors);
+        this.aliasMap.putAll(source.aliasMap);
+        synchronized (source.typeIndex) {
+            this.builderMap.putAll(source.builderMap);
+            for (Entry<String, Map<String, Builder<?>>> entry
+                    : source.typeIndex.entrySet()) {
+                this.typeIndex.put(entry.getKey(),
+                        new ConcurrentHashMap<>(entry.getValue()));
+            }
+        }
+        synchronized (source.namesInUse) {
+            this.namesInUse.addAll(source.namesInUse);
+        }
+        this.definitions.putAll(source.definitions);
+        this.structure.addAll(source.structure);
+        this.attributes = source.attributes;
+        synchronized (source.lazyImports) {
+            this.lazyImports.addAll(source.lazyImports);
+            this.pendingLazyImports = source.pendingLazyImports;
+        }
+        this.loadedLazyImports.addAll(source.loadedLazyImports);
+        this.loadedLazyImportSet.addAll(source.loadedLazyImportSet);
+    }
+
+    public Builder<?> getBuilder(String builderName) {
+        return this.builderMap.get(builderName);
+    }
+
+    /**
+     * Get the builder by its name or by any of its aliases.
+     */
+    public Builder<?> findBuilder(String name) {
+        if (name == null) {
+            return null;
+        }
+        Builder<?> builder = resolveBuilder(name);
+        if (builder == null && pendingLazyImports > 0) {
+            Registry loaded = loadLazyImports(name, null);
+            if (loaded != null) {
+                builder = loaded.findBuilder(name);
+            }
+        }
+        return builder;
+    }
+
+    private Builder<?> resolveBuilder(String name) {
+        String target;
+        while (StringHelper.isNotEmpty(target = this.aliasMap.get(name))) {
+            name = target;
+        }
+        return this.builderMap.get(name);
+    }
+
+    public Set<String> getBuilderNames() {
+        return this.builderMap.keySet();
+    }
+
+    public Collection<Builder<?>> getBuilders() {
+        return this.builderMap.values();
+    }
+
+    public Map<String, Builder<?>> getBuilders(Class<?> clazz) {
+        if (pendingLazyImports > 0) {
+            Registry loaded = loadLazyImports(null, clazz);
+            if (loaded != null && loaded != this) {
+                return loaded.getBuilders(clazz);
+            }
+        }
+        if (clazz.isArray()) {
+            return scanBuilders(clazz);
+        }
+        Map<String, Builder<?>> builders = typeIndex.get(clazz.getName());
+        if (builders == null) {
+            return new HashMap<>();
+        }
+        return assignableBuilders(clazz, builders);
+    }
+
+    /**
+     * Array types are not indexed by their covariant super types, so they
+     * still have to be matched one by one.
+     */
+    protected Map<String, Builder<?>> scanBuilders(Class<?> clazz) {
+        return assignableBuilders(clazz, builderMap);
+    }
+
+    /**
+     * Keep the builders whose class is assignable to {@code clazz}. The
+     * builder classes are loaded here on the first query by type.
+     */
+    protected Map<String, Builder<?>> assignableBuilders(Class<?> clazz,
+            Map<String, Builder<?>> builders) {
+        Map<String, Builder<?>> result = new HashMap<>();
+        for (Entry<String, Builder<?>> entry : builders.entrySet()) {
+            Builder<?> builder = entry.getValue();
+            Class<?> builderClass = builder.getBuilderClass();
+            if (builderClass != null && clazz.isAssignableFrom(builderClass)) {
+                result.put(entry.getKey(), builder);
+            }
+        }
+        return result;
+    }
+
+    public Builder<?> getBuilder(Class<?> clazz) {
+        if (pendingLazyImports > 0) {
+            Registry loaded = loadLazyImports(null, clazz);
+            if (loaded != null && loaded != this) {
+                return loaded.getBuilder(clazz);
+            }
+        }
+        if (clazz.isArray()) {
+            return highestOrder(scanBuilders(clazz));
+        }
+        String typeName = clazz.getName();
+        Builder<?> winner = typeWinners.get(typeName);
+        if (winner != null && clazz.isAssignableFrom(winner.getBuilderClass())) {
+            return winner;
+        }
+        long version;
+        Map<String, Builder<?>> builders;
+        synchronized (typeIndex) {
+            version = typeVersion;
+            builders = typeIndex.get(typeName);
+        }
+        if (builders == null) {
+            return null;
+        }
+        // Loading the builder classes may run static initializers which use
+        // this registry, so no lock is held here.
+        winner = highestOrder(assignableBuilders(clazz, builders));
+        if (winner != null) {
+            synchronized (typeIndex) {
+                if (version == typeVersion) {
+                    typeWinners.put(typeName, winner);
+                }
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Get the builder with the highest order among the builders indexed by
+     * the type name, no builder class is loaded.
+     */
+    public Builder<?> getBuilderByTypeName(String typeName) {
+        return highestOrder(typeIndex.get(typeName));
+    }
+
+    protected Builder<?> highestOrder(Map<String, Builder<?>> builders) {
+        if (builders == null) {
+            return null;
+        }
+        Builder<?> builder = null;
+        for (Builder<?> bd : builders.values()) {
+            if (builder == null
+                    || (bd != null && bd.getOrder() > builder.getOrder())) {
+                builder = bd;
+            }
+        }
+        return builder;
+    }
+
+    public void putBuilder(String builderName, Builder<?> builder) {
+        synchronized (typeIndex) {
+            Builder<?> previous = builderMap.put(builderName, builder);
+            if (previous != null) {
+                unindexBuilder(builderName, previous);
+            }
+            indexBuilder(builderName, builder);
+        }
+    }
+
+    public Builder<?> removeBuilder(String builderName) {
+        Builder<?> builder;
+        this.definitions.remove(builderName);
+        synchronized (typeIndex) {
+            builder = this.builderMap.remove(builderName);
+            if (builder != null) {
+                unindexBuilder(builderName, builder);
+            }
+        }
+        Iterator<Map.Entry<String, String>> it =
+                this.aliasMap.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            if (StringHelper.equals(entry.getValue(), builderName)) {
+                it.remove();
+                namesInUse.remove(entry.getKey());
+            }
+        }
+        this.namesInUse.remove(builderName);
+        return builder;
+    }
+
+    protected void indexBuilder(String builderName, Builder<?> builder) {
+        for (String type : getTypeNames(builder)) {
+            typeIndex.computeIfAbsent(type, key -> new ConcurrentHashMap<>())
+                    .put(builderName, builder);
+            typeWinners.remove(type);
+        }
+        typeVersion++;
+    }
+
+    protected void unindexBuilder(String builderName, Builder<?> builder) {
+        for (String type : getTypeNames(builder)) {
+            Map<String, Builder<?>> builders = typeIndex.get(type);
+            if (builders != null) {
+                builders.remove(builderName, builder);
+                if (builders.isEmpty()) {
+                    typeIndex.remove(type);
+                }
+            }
+            typeWinners.remove(type);
+        }
+        typeVersion++;
+    }
+
+    /**
+     * Forget the cached winners of {@link #getBuilder(Class)} which may be
+     * affected by the changed order of {@code builder}.
+     */
+    public void invalidateBuilderOrder(Builder<?> builder) {
+        synchronized (typeIndex) {
+            for (String type : getTypeNames(builder)) {
+                typeWinners.remove(type);
+            }
+            typeVersion++;
+        }
+    }
+
+    /**
+     * Get the names of the builder class and all of its super classes and
+     * interfaces. They are read from the class files while the builder class
+     * is not loaded, so indexing a builder loads no class.
+     */
+    protected Set<String> getTypeNames(Builder<?> builder) {
+        if (!builder.isBuilderClassResolved()
+                && builder.getClassName() != null) {
+            Set<String> typeNames =
+                    classInfos.getTypeNames(builder.getClassName());
+            if (typeNames != null) {
+                return typeNames;
+            }
+        }
+        Class<?> builderClass = builder.getBuilderClass();
+        if (builderClass == null) {
+            return Collections.emptySet();
+        }
+        Set<String> typeNames = new LinkedHashSet<>();
+        for (Class<?> type : getTypes(builderClass)) {
+            typeNames.add(type.getName());
+        }
+        return typeNames;
+    }
+
+    /**
+     * Get the class itself and all of its super classes and interfaces.
+     */
+    protected Set<Class<?>> getTypes(Class<?> clazz) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        collectTypes(clazz, types);
+        if (clazz.isInterface()) {
+            types.add(Object.class);
+        }
+        return types;
+    }
+
+    private void collectTypes(Class<?> clazz, Set<Class<?>> types) {
+        while (clazz != null && types.add(clazz)) {
+            for (Class<?> itf : clazz.getInterfaces()) {
+                collectTypes(itf, types);
+            }
+            clazz = clazz.getSuperclass();
+        }
+    }
+
+    public void addLazyImport(LazyImport lazyImport) {
+        synchronized (lazyImports) {
+            lazyImports.add(lazyImport);
+            pendingLazyImports++;
+        }
+    }
+
+    public List<LazyImport> getLazyImports() {
+        return lazyImports;
+    }
+
+    /**
+     * Parse the lazy imports defining a builder of the name or, if it is
+     * null, of the type. The imports found by parsing them are loaded as
+     * well if they match.
+     * <p>
+     * Lazy imports are parsed one at a time. While this registry is
+     * published they are parsed into a copy of it, which is published once
+     * its new builders are processed, so readers never see half-registered
+     * builders.
+     * @return the registry to look the builder up in again, null if nothing
+     *         changed
+     */
+    protected Registry loadLazyImports(String name, Class<?> type) {
+        Registry current = context.getRegistry();
+        if (current != this) {
+            // An outdated registry, unless the current thread fills another
+            // one, which must not be parsed into from here.
+            return context.isPublished(current) ? current : null;
+        }
+        String typeName = type == null ? null : type.isArray()
+                ? type.getComponentType().getName() : type.getName();
+        if (!mayLoadLazyImports(name, typeName)) {
+            return null;
+        }
+        synchronized (lazyImportLock) {
+            if (context.isFilling(this)) {
+                // Being refreshed or a copy, only the current thread sees it.
+                return loadMatchingImports(name, typeName) ? this : null;
+            }
+            if (!context.isPublished(this)) {
+                // Replaced while waiting for the lock.
+                return context.getRegistry();
+            }
+            Registry copy = new Registry(this);
+            if (!context.callWith(copy,
+                    () -> copy.loadMatchingImports(name, typeName))) {
+                return null;
+            }
+            if (!context.publish(this, copy)) {
+                // A refresh was published meanwhile, it has the imports too.
+                return context.getRegistry();
+            }
+            copy.adoptBuilders(this);
+            return copy;
+        }
+    }
+
+    /**
+     * Whether a pending lazy import may match, checked without locking.
+     */
+    private boolean mayLoadLazyImports(String name, String typeName) {
+        for (LazyImport lazyImport : lazyImports) {
+            if (!isLoaded(lazyImport) && (!lazyImport.isCollected()
+                    || matches(lazyImport, name, typeName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(LazyImport lazyImport, String name,
+            String typeName) {
+        return name != null ? lazyImport.hasName(name)
+                : lazyImport.hasType(typeName, classInfos);
+    }
+
+    private boolean loadMatchingImports(String name, String typeName) {
+        return loadLazyImports(() -> {
+            boolean loaded = false;
+            boolean found = true;
+            while (found) {
+                found = false;
+                for (LazyImport lazyImport : lazyImports) {
+                    if (!isLoaded(lazyImport)
+                            && matches(lazyImport, name, typeName)) {
+                        loadLazyImport(lazyImport);
+                        found = true;
+                    }
+                }
+                loaded = loaded || found;
+            }
+            return loaded;
+        }, true);
+    }
+
+    /**
+     * Parse the lazy imports {@code source} has parsed, in the same order, so
+     * a refresh keeps the builders loaded lazily before.
+     * @param process whether to process the parsed builders, otherwise they
+     *        are processed with all others
+     */
+    public void loadLazyImportsOf(Registry source, boolean process) {
+        synchronized (lazyImportLock) {
+            loadLazyImports(() -> {
+                boolean loaded = false;
+                for (LazyImport loadedImport : source.loadedLazyImports) {
+                    Resource resource = loadedImport.getResource();
+                    for (LazyImport lazyImport : lazyImports) {
+                        if (!isLoaded(lazyImport)
+                                && lazyImport.getResource().equals(resource)) {
+                            loadLazyImport(lazyImport);
+                            loaded = true;
+                        }
+                    }
+                }
+                return loaded;
+            }, process);
+        }
+    }
+
+    /**
+     * Run {@code loading} and process the builders it added. Imports parsed
+     * while processing them, or nested in others, are processed by the
+     * outermost call only.
+     */
+    private boolean loadLazyImports(BooleanSupplier loading, boolean process) {
+        Set<String> processed = new HashSet<>(builderMap.keySet());
+        lazyImportDepth++;
+        try {
+            boolean loaded = loading.getAsBoolean();
+            if (loaded && process && lazyImportDepth == 1) {
+                processAddedBuilders(processed);
+            }
+            return loaded;
+        } finally {
+            lazyImportDepth--;
+        }
+    }
+
+    private void processAddedBuilders(Set<String> processed) {
+        while (true) {
+            List<Builder<?>> added = new ArrayList<>();
+            for (Entry<String, Builder<?>> entry : builderMap.entrySet()) {
+                if (processed.add(entry.getKey())) {
+                    added.add(entry.getValue());
+                }
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            for (Processor processor : processors) {
+                processor.processBuilders(added);
+            }
+        }
+    }
+
+    /**
+     * Whether the lazy import is parsed into this registry, the lazy imports
+     * are shared with the copies they are parsed into.
+     */
+    public boolean isLoaded(LazyImport lazyImport) {
+        return loadedLazyImportSet.contains(lazyImport);
+    }
+
+    protected void loadLazyImport(LazyImport lazyImport) {
+        // Marked first, lookups while parsing must not parse it again.
+        loadedLazyImportSet.add(lazyImport);
+        loadedLazyImports.add(lazyImport);
+        synchronized (lazyImports) {
+            pendingLazyImports--;
+        }
+        Set<String> builderNames = new HashSet<>(builderMap.keySet());
+        Set<String> aliases = new HashSet<>(aliasMap.keySet());
+        try {
+            parser.parseLazily(lazyImport);
+        } catch (RuntimeException e) {
+            // A broken config must not fail lookups of unrelated builders,
+            // it stays marked so it is not parsed again on every lookup.
+            log.error("Couldn't parse " + lazyImport
+                    + ", the builders of it are skipped", e);
+            for (String builderName : new ArrayList<>(builderMap.keySet())) {
+                if (!builderNames.contains(builderName)) {
+                    removeBuilder(builderName);
+                }
+            }
+            for (String alias : new ArrayList<>(aliasMap.keySet())) {
+                if (!aliases.contains(alias)) {
+                    removeAlias(alias);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bind the builders still bound to {@code source} to this published copy
+     * of it, so they use the processors of this registry.
+     */
+    protected void adoptBuilders(Registry source) {
+        for (Builder<?> builder : builderMap.values()) {
+            if (builder.getRegistry() == source) {
+                builder.setRegistry(this);
+            }
+        }
+    }
+
+    public String getAliasTarget(String alias) {
+        return this.aliasMap.get(alias);
+    }
+
+    public void putAlias(String alias, String name) {
+        this.aliasMap.put(alias, name);
+    }
+
+    public void removeAlias(String alias) {
+        this.aliasMap.remove(alias);
+        this.namesInUse.remove(alias);
+    }
+
+    public boolean checkAndUseName(String name) {
+        if (namesInUse.contains(name)) {
+            return false;
+        }
+        synchronized (namesInUse) {
+            if (namesInUse.contains(name)) {
+                return false;
+            }
+            namesInUse.add(name);
+        }
+        return true;
+    }
+
+    public List<Processor> getProcessors() {
+        return processors;
+    }
+
+    public Map<String, Object> getSingletonMap() {
+        return singletonMap;
+    }
+
+    public Map<String, Object> getSingletonMapOnConstruction() {
+        return singletonMapOnConstruction;
+    }
+
+    public Map<String, SingletonCreation> getSingletonCreations() {
+        return singletonCreations;
+    }
+
+    public WaiterGraph getSingletonWaiters() {
+        return singletonWaiters;
+    }
+
+    /**
+     * The content hash of the config node the builder is defined by.
+     */
+    public Long getDefinition(String builderName) {
+        return definitions.get(builderName);
+    }
+
+    public void putDefinition(String builderName, Node definition) {
+        this.definitions.put(builderName, definition.contentHash());
+    }
+
+    public List<Long> getStructure() {
+        return structure;
+    }
+
+    public void addStructure(Node node) {
+        this.structure.add(node.contentHash());
+    }
+
+    /**
+     * The context attributes after the configs of this registry were loaded.
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+
+    public SimpleParser getParser() {
+        return parser;
+    }
+
+    public SimpleContext getContext() {
+        return context;
+    }
+
+    public ClassInfoCache getClassInfos() {
+        return classInfos;
+    }
+
+}
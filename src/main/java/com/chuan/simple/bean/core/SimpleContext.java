@@ -15,30 +15,46 @@
  */
 package com.chuan.simple.bean.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.chuan.simple.helper.common.StringHelper;
-import com.chuan.simple.helper.expression.ExpressionHelper;
 import com.chuan.simple.helper.resource.Resource;
 import com.chuan.simple.helper.resource.ResourceHelper;
 import com.chuan.simple.bean.core.build.builder.Builder;
 import com.chuan.simple.bean.core.build.builder.Manager;
+import com.chuan.simple.bean.core.build.invoker.AsmInvokerFactory;
+import com.chuan.simple.bean.core.build.invoker.InvokerFactory;
+import com.chuan.simple.bean.core.build.invoker.ReflectiveInvokerFactory;
+import com.chuan.simple.bean.core.build.procedure.SingletonCreation;
+import com.chuan.simple.bean.core.build.procedure.WaiterGraph;
+import com.chuan.simple.bean.core.config.loader.NodeCache;
+import com.chuan.simple.bean.core.config.watcher.ConfigWatcher;
 import com.chuan.simple.bean.core.config.node.Node;
 import com.chuan.simple.bean.core.config.parser.SimpleParser;
 import com.chuan.simple.bean.core.element.entity.Element;
 import com.chuan.simple.bean.core.element.installer.ElementInstaller;
+import com.chuan.simple.bean.core.handler.HandlerManager;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+import com.chuan.simple.bean.core.info.ExecutableInfoCache;
 import com.chuan.simple.bean.core.handler.Handler;
 import com.chuan.simple.bean.core.processor.Processor;
 import com.chuan.simple.bean.exception.SimpleBuildException;
@@ -109,32 +125,109 @@ public class SimpleContext {
 
     private static final Log log = LogFactory.getLog(SimpleContext.class);
 
-    protected final Map<String, Builder<?>> builderMap =
-            new ConcurrentHashMap<>();
-
-    protected final Map<String, String> aliasMap = new ConcurrentHashMap<>();
-
     protected final Map<String, String> baseAttributes =
             new ConcurrentHashMap<>();
 
     protected final Map<Class<? extends Element>, ElementInstaller<? extends Builder<?>, ? extends Element>> elementInstallers =
             new ConcurrentHashMap<>();
 
-    protected final List<Processor> processors = new ArrayList<>();
-
-    protected final Map<String, Object> singletonMap =
-            new ConcurrentHashMap<>();
-
-    protected final Map<String, Object> singletonMapOnConstruction =
-            new ConcurrentHashMap<>();
+    /**
+     * Processors added outside of refreshing, every registry starts with them.
+     */
+    protected final List<Processor> processors = new CopyOnWriteArrayList<>();
 
     protected final List<Object> configs = new ArrayList<>();
-    
-    protected final Set<String> namesInUse = new HashSet<>();
 
-    protected final SimpleParser parser = new SimpleParser(this);
-
-    protected volatile Boolean onRefresh = false;
+    /**
+     * The class files read without loading the classes, shared by all
+     * registries.
+     */
+    protected final ClassInfoCache classInfos =
+            new ClassInfoCache(defaultClassLoader());
+
+    /**
+     * The parameters of the constructors and methods, shared by building,
+     * proxying and installing.
+     */
+    protected final ExecutableInfoCache executableInfos =
+            new ExecutableInfoCache();
+
+    /**
+     * The placeholder strings of the configs and annotations, parsed once.
+     */
+    protected final PlaceholderTemplates placeholderTemplates =
+            new PlaceholderTemplates();
+
+    /**
+     * The parsed configs, null to read them on every refresh.
+     */
+    protected volatile NodeCache configCache = NodeCache.shared();
+
+    /**
+     * The published registry which all readers see.
+     */
+    protected volatile Registry registry = new Registry(this, processors);
+
+    /**
+     * The registry being filled by the running refresh or by parsing a lazy
+     * import, only visible to the threads filling it.
+     */
+    protected final ThreadLocal<Registry> refreshingRegistry =
+            new ThreadLocal<>();
+
+    /**
+     * Guards publishing {@link #registry} by refreshes and lazy imports.
+     */
+    protected final Object publishLock = new Object();
+
+    protected final AtomicBoolean onRefresh = new AtomicBoolean(false);
+
+    /**
+     * The pools of the context, shut down by {@link #destroy()}.
+     */
+    protected final ContextExecutor defaultAutoInitExecutor =
+            new ContextExecutor("simple-bean-auto-init");
+
+    protected final ContextExecutor defaultConfigExecutor =
+            new ContextExecutor("simple-bean-config");
+
+    protected final ContextExecutor defaultScanExecutor =
+            new ContextExecutor("simple-bean-scan");
+
+    /**
+     * The executor to build auto-init singletons on, they are built
+     * sequentially if null.
+     */
+    protected volatile Executor autoInitExecutor = defaultAutoInitExecutor;
+
+    /**
+     * The executor to load configs and their imports on, they are loaded
+     * while parsing if null.
+     */
+    protected volatile Executor configExecutor = defaultConfigExecutor;
+
+    /**
+     * The executor to read the class files of large scans on, they are read
+     * on the scanning thread if null.
+     */
+    protected volatile Executor scanExecutor = defaultScanExecutor;
+
+    protected volatile List<String> autoInitCriticalPath =
+            Collections.emptyList();
+
+    protected volatile ConfigWatcher configWatcher;
+
+    /**
+     * The handler classes of META-INF/simple.handlers, read once for all
+     * registry generations.
+     */
+    protected volatile Map<String, Class<?>> handlerClasses;
+
+    /**
+     * The backend build plans create beans and assign fields by.
+     */
+    protected volatile InvokerFactory invokerFactory =
+            ReflectiveInvokerFactory.INSTANCE;
 
     public SimpleContext() {
     }
@@ -150,53 +243,457 @@ public class SimpleContext {
         }
     }
     
+    /**
+     * Load the configs into a new {@link Registry} and publish it once it is
+     * completely built. Readers keep using the previous registry until then
+     * and the previous registry stays published if the refresh fails.
+     */
     public void refresh() {
-        if (onRefresh) {
-            return;
-        }
-        synchronized (onRefresh) {
-            if (!onRefresh) {
-                onRefresh = true;
-
-                clear(true);
-                
-                loadConfigs();
-                
-                processBuilders();
-                
-                autoInit();
-                
-                onRefresh = false;
+        refresh(false);
+    }
+
+    /**
+     * Reload the configs and rebuild only the builders whose definition or
+     * dependencies changed since the last refresh, the other builders are
+     * kept together with their singletons.
+     * <p>
+     * Every builder is rebuilt if the context attributes or any config node
+     * other than a builder changed.
+     *
+     * @return what the refresh did, null if another refresh is running
+     */
+    public RefreshReport refreshIncrementally() {
+        // The cached configs which changed are noticed by the cache.
+        return refresh(true);
+    }
+
+    /**
+     * Like {@link #refreshIncrementally()}, but only the given resources are
+     * read again.
+     */
+    public RefreshReport refreshIncrementally(Collection<Resource> changed) {
+        NodeCache configCache = this.configCache;
+        if (configCache != null) {
+            for (Resource resource : changed) {
+                configCache.invalidate(resource);
+            }
+        }
+        return refresh(true);
+    }
+
+    protected RefreshReport refresh(boolean incremental) {
+        if (!onRefresh.compareAndSet(false, true)) {
+            return null;
+        }
+        Registry previous = this.registry;
+        Registry next = new Registry(this, processors);
+        refreshingRegistry.set(next);
+        try {
+            if (!incremental) {
+                next.getSingletonMap().putAll(
+                        refreshSingleton(previous, Collections.emptySet()));
+            }
+
+            loadConfigs();
+            next.setAttributes(new HashMap<>(baseAttributes));
+            // Processed below with the other builders.
+            next.loadLazyImportsOf(previous, false);
+
+            processBuilders();
+
+            RefreshReport report;
+            if (incremental) {
+                report = reuseBuilders(previous, next);
+                next.getSingletonMap().putAll(
+                        refreshSingleton(previous, report.getReused()));
+            } else {
+                report = fullReport(previous, next);
+            }
+
+            autoInit();
+
+            publishRefreshed(previous, next);
+            if (incremental) {
+                adoptBuilders(next, report.getReused());
+            }
+            ConfigWatcher watcher = this.configWatcher;
+            if (watcher != null) {
+                watcher.watch(next.getParser().getParsed());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(report);
+            }
+            return report;
+        } finally {
+            refreshingRegistry.remove();
+            onRefresh.set(false);
+        }
+    }
+
+    /**
+     * Publish the refreshed registry. The lazy imports parsed into the
+     * published registry while refreshing are parsed into {@code next}
+     * first, so their builders are kept.
+     */
+    protected void publishRefreshed(Registry previous, Registry next) {
+        Registry current = previous;
+        while (!publish(current, next)) {
+            current = this.registry;
+            next.loadLazyImportsOf(current, true);
+        }
+    }
+
+    /**
+     * Publish {@code next} unless another registry than {@code expected} was
+     * published meanwhile.
+     */
+    protected boolean publish(Registry expected, Registry next) {
+        synchronized (publishLock) {
+            if (this.registry != expected) {
+                return false;
+            }
+            this.registry = next;
+            return true;
+        }
+    }
+
+    /**
+     * Whether the registry is the one all readers see.
+     */
+    public boolean isPublished(Registry registry) {
+        return this.registry == registry;
+    }
+
+    /**
+     * Whether the current thread fills the registry, which is not published
+     * yet.
+     */
+    public boolean isFilling(Registry registry) {
+        return refreshingRegistry.get() == registry;
+    }
+
+    /**
+     * Put the builders of {@code previous} which are unchanged in
+     * {@code next} into {@code next} instead of their new copies.
+     */
+    protected RefreshReport reuseBuilders(Registry previous, Registry next) {
+        if (previous.getBuilders().isEmpty() || !sameStructure(previous, next)) {
+            return fullReport(previous, next);
+        }
+        BuilderDependencies previousDependencies =
+                new BuilderDependencies(previous, previous.getAttributes());
+        BuilderDependencies nextDependencies =
+                new BuilderDependencies(next, next.getAttributes());
+        Map<String, Set<String>> dependents = new HashMap<>();
+        Set<String> rebuilt = new HashSet<>();
+        Deque<String> changed = new ArrayDeque<>();
+        for (String name : next.getBuilderNames()) {
+            Builder<?> builder = next.getBuilder(name);
+            Builder<?> old = previous.getBuilder(name);
+            Set<String> dependencies =
+                    builderNames(nextDependencies.getDependencies(builder));
+            for (String dependency : dependencies) {
+                dependents.computeIfAbsent(dependency, k -> new HashSet<>())
+                        .add(name);
+            }
+            if (old == null || old.getClass() != builder.getClass()
+                    || !sameClass(old, builder)
+                    || !Objects.equals(previous.getDefinition(name),
+                            next.getDefinition(name))
+                    || !dependencies.equals(builderNames(
+                            previousDependencies.getDependencies(old)))) {
+                rebuilt.add(name);
+                changed.add(name);
+            }
+        }
+        while (!changed.isEmpty()) {
+            Set<String> names = dependents.get(changed.poll());
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                if (rebuilt.add(name)) {
+                    changed.add(name);
+                }
+            }
+        }
+        RefreshReport report = new RefreshReport(true);
+        for (String name : next.getBuilderNames()) {
+            if (rebuilt.contains(name)) {
+                report.rebuilt(name);
+                continue;
+            }
+            Builder<?> old = previous.getBuilder(name);
+            Object singleton = previous.getSingletonMap().get(name);
+            if (singleton != null) {
+                next.getSingletonMap().put(name, singleton);
+            }
+            // Still bound to previous until next is published, see
+            // adoptBuilders.
+            next.putBuilder(name, old);
+            report.reused(name);
+        }
+        addRemoved(previous, next, report);
+        return report;
+    }
+
+    /**
+     * Bind the reused builders to the published {@code next}, taking the
+     * singletons they built for the previous registry meanwhile. Until then
+     * they keep working on the previous registry, which stays consistent if
+     * the refresh fails.
+     */
+    protected void adoptBuilders(Registry next, Set<String> reused) {
+        for (String name : reused) {
+            Builder<?> builder = next.getBuilder(name);
+            if (builder == null || builder.getRegistry() == next) {
+                continue;
+            }
+            Registry previous = builder.getRegistry();
+            builder.setRegistry(next);
+            Object singleton = previous.getSingletonMap().get(name);
+            if (singleton != null) {
+                next.getSingletonMap().putIfAbsent(name, singleton);
+            }
+        }
+    }
+
+    protected RefreshReport fullReport(Registry previous, Registry next) {
+        RefreshReport report = new RefreshReport(false);
+        for (String name : next.getBuilderNames()) {
+            report.rebuilt(name);
+        }
+        addRemoved(previous, next, report);
+        return report;
+    }
+
+    private void addRemoved(Registry previous, Registry next,
+            RefreshReport report) {
+        for (String name : previous.getBuilderNames()) {
+            if (next.getBuilder(name) == null) {
+                report.removed(name);
+            }
+        }
+    }
+
+    private boolean sameStructure(Registry previous, Registry next) {
+        if (!previous.getAttributes().equals(next.getAttributes())) {
+            return false;
+        }
+        return previous.getStructure().equals(next.getStructure());
+    }
+
+    /**
+     * Compare the classes by name unless both are loaded, so the comparison
+     * loads no class.
+     */
+    private boolean sameClass(Builder<?> previous, Builder<?> next) {
+        if (previous.isBuilderClassResolved() && next.isBuilderClassResolved()
+                || previous.getClassName() == null
+                || next.getClassName() == null) {
+            return previous.getBuilderClass() == next.getBuilderClass();
+        }
+        return previous.getClassName().equals(next.getClassName());
+    }
+
+    private Set<String> builderNames(Collection<Builder<?>> builders) {
+        Set<String> names = new HashSet<>();
+        for (Builder<?> builder : builders) {
+            names.add(builder.getBuilderName());
+        }
+        return names;
+    }
+
+    /**
+     * Get the registry seen by the current thread, that is the registry being
+     * filled for the threads filling it and the published one otherwise.
+     */
+    public Registry getRegistry() {
+        Registry current = refreshingRegistry.get();
+        if (current != null) {
+            return current;
+        }
+        return this.registry;
+    }
+
+    /**
+     * Call {@code task} with {@code registry} as the registry of the current
+     * thread.
+     */
+    protected <T> T callWith(Registry registry, Supplier<T> task) {
+        Registry outer = refreshingRegistry.get();
+        refreshingRegistry.set(registry);
+        try {
+            return task.get();
+        } finally {
+            if (outer == null) {
+                refreshingRegistry.remove();
+            } else {
+                refreshingRegistry.set(outer);
             }
         }
     }
 
     protected void processBuilders() {
         Collection<Builder<?>> builders = getBuilders();
-        for (Processor processor : processors) {
+        for (Processor processor : getProcessors()) {
             processor.processBuilders(builders);
         }
     }
 
     protected void loadConfigs() {
+        SimpleParser parser = getRegistry().getParser();
+        List<Object> resolved = new ArrayList<>();
         for (Object config : configs) {
             if (config instanceof String)
-                for (Resource resource : ResourceHelper
-                        .resources((String) config)) {
-                    parser.parse(resource);
-                }
+                resolved.addAll(ResourceHelper.resources((String) config));
             else if (config instanceof Node || config instanceof Resource)
-                parser.parse(config);
+                resolved.add(config);
         }
+        // All configs are loaded ahead, they are registered in order.
+        parser.parseAll(resolved);
     }
 
     protected void autoInit() {
+        List<Builder<?>> builders = new ArrayList<>();
         for (Builder<?> builder : getBuilders()) {
             if (StringHelper.equals(Builder.SCOPE_SINGLETON, builder.getScope())
                     && builder.isAutoInit()) {
-                builder.build();
+                builders.add(builder);
             }
         }
+        AutoInitializer initializer =
+                new AutoInitializer(this, refreshingExecutor(autoInitExecutor));
+        initializer.initialize(builders);
+        this.autoInitCriticalPath = initializer.getCriticalPath();
+    }
+
+    /**
+     * Run the tasks of {@code executor} against the registry of the current
+     * thread.
+     */
+    protected Executor refreshingExecutor(Executor executor) {
+        Registry current = refreshingRegistry.get();
+        if (executor == null || current == null) {
+            return executor;
+        }
+        return command -> executor.execute(() -> callWith(current, () -> {
+            command.run();
+            return null;
+        }));
+    }
+
+    /**
+     * Watch the config files and reload the changed ones once no further
+     * change arrives within {@code debounceMillis}.
+     */
+    public synchronized ConfigWatcher watchConfigs(long debounceMillis) {
+        if (this.configWatcher == null) {
+            ConfigWatcher watcher = new ConfigWatcher(this, debounceMillis);
+            watcher.watch(this.registry.getParser().getParsed());
+            watcher.start();
+            this.configWatcher = watcher;
+        }
+        return this.configWatcher;
+    }
+
+    public synchronized void stopWatchingConfigs() {
+        if (this.configWatcher != null) {
+            this.configWatcher.close();
+            this.configWatcher = null;
+        }
+    }
+
+    public InvokerFactory getInvokerFactory() {
+        return invokerFactory;
+    }
+
+    public ClassInfoCache getClassInfos() {
+        return classInfos;
+    }
+
+    public ExecutableInfoCache getExecutableInfos() {
+        return executableInfos;
+    }
+
+    public PlaceholderTemplates getPlaceholderTemplates() {
+        return placeholderTemplates;
+    }
+
+    public NodeCache getConfigCache() {
+        return configCache;
+    }
+
+    /**
+     * Set the cache of the parsed configs, a new {@link NodeCache} to keep
+     * them per context, {@link NodeCache#shared()} to share them with the
+     * other contexts or {@code null} to read them on every refresh.
+     */
+    public void setConfigCache(NodeCache configCache) {
+        this.configCache = configCache;
+    }
+
+    private static ClassLoader defaultClassLoader() {
+        ClassLoader classLoader =
+                Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = SimpleContext.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
+    /**
+     * Set the backend of the build plans compiled from now on, e.g.
+     * {@link AsmInvokerFactory} to call constructors, methods and fields by
+     * generated classes.
+     */
+    public void setInvokerFactory(InvokerFactory invokerFactory) {
+        this.invokerFactory = invokerFactory;
+    }
+
+    public Executor getConfigExecutor() {
+        return configExecutor;
+    }
+
+    /**
+     * Set the executor to read and tokenize the configs and their imports
+     * on ahead of parsing, {@code null} to read them one by one on the
+     * refreshing thread.
+     */
+    public void setConfigExecutor(Executor configExecutor) {
+        this.configExecutor = configExecutor;
+    }
+
+    public Executor getScanExecutor() {
+        return scanExecutor;
+    }
+
+    /**
+     * Set the executor to read the class files of large scans on,
+     * {@code null} to read them one by one on the refreshing thread.
+     */
+    public void setScanExecutor(Executor scanExecutor) {
+        this.scanExecutor = scanExecutor;
+    }
+
+    public Executor getAutoInitExecutor() {
+        return autoInitExecutor;
+    }
+
+    /**
+     * Set the executor to build auto-init singletons on while refreshing,
+     * {@code null} to build them sequentially on the refreshing thread.
+     */
+    public void setAutoInitExecutor(Executor autoInitExecutor) {
+        this.autoInitExecutor = autoInitExecutor;
+    }
+
+    /**
+     * Names of the builders on the longest chain of dependent auto-init
+     * builds of the last refresh.
+     */
+    public List<String> getAutoInitCriticalPath() {
+        return autoInitCriticalPath;
     }
 
     public Object tryBuild(String builderName) {
@@ -208,10 +705,8 @@ public class SimpleContext {
     }
 
     public Object build(String builderName, boolean errorOnFailed) {
-        String finalBuilderName = finalBuilderName(builderName);
-        Builder<?> builder;
-        if ((finalBuilderName == null
-                || (builder = builderMap.get(finalBuilderName)) == null)) {
+        Builder<?> builder = getBuilder(builderName);
+        if (builder == null) {
             if (errorOnFailed) {
                 throw new SimpleBuildException(
                         "Couldn't find builder " + builderName);
@@ -223,15 +718,6 @@ public class SimpleContext {
         return builder.build();
     }
 
-    protected String finalBuilderName(String builderName) {
-    	String targetBuilderName = builderName;
-    	while (StringHelper.isNotEmpty(targetBuilderName 
-    	        = aliasMap.get(builderName))) {
-    		builderName = targetBuilderName;
-        }
-        return builderName;
-    }
-
     public <T> T build(Class<T> clazz) {
         return build(clazz, true);
     }
@@ -255,77 +741,69 @@ public class SimpleContext {
     }
 
     public Map<String, Builder<?>> getBuilders(Class<?> clazz) {
-        Map<String, Builder<?>> result = new HashMap<>();
-        for (Entry<String, Builder<?>> entry : builderMap.entrySet()) {
-            Builder<?> builder = entry.getValue();
-            if (clazz.isAssignableFrom(builder.getBuilderClass())) {
-                result.put(entry.getKey(), builder);
-            }
-        }
-        return result;
+        return getRegistry().getBuilders(clazz);
     }
 
     public Collection<Builder<?>> getBuilders() {
-        return this.builderMap.values();
+        return getRegistry().getBuilders();
     }
 
     public void addBuilder(String beanName, Builder<?> builder) {
-        beanName = ExpressionHelper.resolvePlaceholders(beanName, baseAttributes);
-        builderMap.put(beanName, builder);
+        beanName = placeholderTemplates.resolve(beanName, baseAttributes);
+        getRegistry().putBuilder(beanName, builder);
+    }
+
+    /**
+     * Record the config node the builder is defined by.
+     */
+    public void addDefinition(String beanName, Node definition) {
+        beanName = placeholderTemplates.resolve(beanName, baseAttributes);
+        getRegistry().putDefinition(beanName, definition);
     }
 
     public void registerBuilder(String beanName, Builder<?> builder) {
-        beanName = ExpressionHelper.resolvePlaceholders(beanName, baseAttributes);
-        if (!checkAndUseName(beanName)) {
+        beanName = placeholderTemplates.resolve(beanName, baseAttributes);
+        Registry registry = getRegistry();
+        if (!registry.checkAndUseName(beanName)) {
             throw new SimpleBuildException("Alias "+beanName+" is already been used as builder name or alias");
         } else {
-            builderMap.put(beanName, builder);
+            registry.putBuilder(beanName, builder);
         }
     }
 
+    /**
+     * Forget the cached winners of {@link #getBuilder(Class)} which may be
+     * affected by the changed order of {@code builder}.
+     */
+    public void invalidateBuilderOrder(Builder<?> builder) {
+        getRegistry().invalidateBuilderOrder(builder);
+    }
+
     public Builder<?> getBuilder(String builderName) {
-        String finalBuilderName = finalBuilderName(builderName);
-        return this.builderMap.get(finalBuilderName);
+        return getRegistry().findBuilder(builderName);
     }
 
     public Builder<?> getBuilder(Class<?> clazz) {
-        Map<String, Builder<?>> builders = getBuilders(clazz);
-        Builder<?> builder = null;
-        for (Builder<?> bd : builders.values()) {
-            if (builder == null
-                    || (bd != null && bd.getOrder() > builder.getOrder())) {
-                builder = bd;
-            }
-        }
-        return builder;
+        return getRegistry().getBuilder(clazz);
     }
-    
+
     public void removeBuilder(String builderName){
-        this.builderMap.remove(builderName);
-        Iterator<Map.Entry<String,String>> it =this.aliasMap.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry<String,String> entry =it.next();
-            if (StringHelper.equals(entry.getValue(),builderName)){
-                it.remove();
-            }
-            namesInUse.remove(entry.getKey());
-        }
-        this.namesInUse.remove(builderName);
+        getRegistry().removeBuilder(builderName);
     }
 
     public void removeAlias(String alias){
-        this.aliasMap.remove(alias);
-        this.namesInUse.remove(alias);
+        getRegistry().removeAlias(alias);
     }
 
     
     public void registerAlias(String name, String alias) {
-        name = ExpressionHelper.resolvePlaceholders(name, baseAttributes);
-        alias = ExpressionHelper.resolvePlaceholders(alias, baseAttributes);
-        if (!checkAndUseName(alias)){
+        name = placeholderTemplates.resolve(name, baseAttributes);
+        alias = placeholderTemplates.resolve(alias, baseAttributes);
+        Registry registry = getRegistry();
+        if (!registry.checkAndUseName(alias)){
             throw new SimpleBuildException("Alias "+alias+" is already been used as builder name or alias");
         }
-        this.aliasMap.put(alias, name);
+        registry.putAlias(alias, name);
     }
 
     public void registerAliases(String name, Collection<String> aliases) {
@@ -335,20 +813,40 @@ public class SimpleContext {
     }
     
     public boolean checkAndUseName(String name) {
-        if (namesInUse.contains(name)){
-            return false;
-        }
-        synchronized (namesInUse){
-            if (namesInUse.contains(name)){
-                return false;
-            }
-            namesInUse.add(name);
-        }
-        return true;
+        return getRegistry().checkAndUseName(name);
     }
 
+    /**
+     * Set the attribute, the builders whose resolved placeholders reference
+     * it are refreshed and resolve them again on their next build.
+     */
     public void setAttribute(String name, String value) {
-        this.baseAttributes.put(name, value);
+        String previous = this.baseAttributes.put(name, value);
+        if (!StringHelper.equals(previous, value)) {
+            refreshAttributeDependents(name);
+        }
+    }
+
+    protected void refreshAttributeDependents(String name) {
+        // Attributes whose values reference the changed one change too.
+        Set<String> names = new HashSet<>();
+        names.add(name);
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (Entry<String, String> attribute : baseAttributes.entrySet()) {
+                if (!names.contains(attribute.getKey()) && placeholderTemplates
+                        .get(attribute.getValue()).references(names)) {
+                    names.add(attribute.getKey());
+                    added = true;
+                }
+            }
+        }
+        for (Builder<?> builder : getBuilders()) {
+            if (builder.referencesAttributes(names)) {
+                builder.refresh();
+            }
+        }
     }
 
     public String getAttribute(String name) {
@@ -359,12 +857,20 @@ public class SimpleContext {
         return this.baseAttributes;
     }
 
+    /**
+     * Add the processor to the registry of the current thread, processors
+     * added outside of refreshing are kept for the next registries as well.
+     */
     public void addProcessor(Processor processor) {
-        this.processors.add(processor);
+        Registry registry = getRegistry();
+        if (registry == this.registry) {
+            this.processors.add(processor);
+        }
+        registry.getProcessors().add(processor);
     }
 
     public List<Processor> getProcessors() {
-        return processors;
+        return getRegistry().getProcessors();
     }
 
 
@@ -373,6 +879,21 @@ public class SimpleContext {
         this.elementInstallers.put(clazz, installer);
     }
 
+    public Map<String, Class<?>> getHandlerClasses() {
+        Map<String, Class<?>> handlerClasses = this.handlerClasses;
+        if (handlerClasses == null) {
+            synchronized (this) {
+                handlerClasses = this.handlerClasses;
+                if (handlerClasses == null) {
+                    handlerClasses = Collections.unmodifiableMap(
+                            HandlerManager.loadHandlerClasses());
+                    this.handlerClasses = handlerClasses;
+                }
+            }
+        }
+        return handlerClasses;
+    }
+
     public ElementInstaller<? extends Builder<?>, ? extends Element>
             getElementInstaller(Class<? extends Element> clazz) {
         return this.elementInstallers.get(clazz);
@@ -384,11 +905,19 @@ public class SimpleContext {
     }
 
     public Map<String, Object> getSingletonMapOnConstruction() {
-        return singletonMapOnConstruction;
+        return getRegistry().getSingletonMapOnConstruction();
     }
 
     public Map<String, Object> getSingletonMap() {
-        return singletonMap;
+        return getRegistry().getSingletonMap();
+    }
+
+    public Map<String, SingletonCreation> getSingletonCreations() {
+        return getRegistry().getSingletonCreations();
+    }
+
+    public WaiterGraph getSingletonWaiters() {
+        return getRegistry().getSingletonWaiters();
     }
 
     public void addConfig(String... configs) {
@@ -422,7 +951,11 @@ public class SimpleContext {
     }
     
     public void destroy() {
-        for (Object sigleton : singletonMap.values()) {
+        stopWatchingConfigs();
+        defaultAutoInitExecutor.shutdown();
+        defaultConfigExecutor.shutdown();
+        defaultScanExecutor.shutdown();
+        for (Object sigleton : this.registry.getSingletonMap().values()) {
             if (sigleton instanceof Manager) {
                 ((Manager) sigleton).destroy();
             }
@@ -431,31 +964,17 @@ public class SimpleContext {
     }
     
     protected void clear() {
-        clear(false);
+        this.registry = new Registry(this, processors);
     }
     
-    protected void clear(boolean isRefresh) {
-        Map<String, Object> refreshableSingletonMap = null;
-        if (isRefresh) {
-            refreshableSingletonMap = refreshSingleton(); 
-        }
-        this.aliasMap.clear();
-        this.singletonMap.clear();
-        this.singletonMapOnConstruction.clear();
-        this.builderMap.clear();
-        this.namesInUse.clear();
-        this.parser.clear();
-        if (isRefresh) {
-            this.singletonMap.putAll(refreshableSingletonMap);
-        }
-        
-    }
-    
-    protected Map<String, Object> refreshSingleton() {
+    protected Map<String, Object> refreshSingleton(Registry registry,
+            Set<String> reused) {
         Map<String, Object> refreshableSingletonMap = new HashMap<>();
-        for (Entry<String, Object> entry : singletonMap.entrySet()) {
+        for (Entry<String, Object> entry : registry.getSingletonMap()
+                .entrySet()) {
             Object sigleton = entry.getValue();
-            if (sigleton instanceof Manager) {
+            if (sigleton instanceof Manager
+                    && !reused.contains(entry.getKey())) {
                 ((Manager) sigleton).refresh();
                 refreshableSingletonMap.put(entry.getKey(), sigleton);
             }
@@ -463,6 +982,4 @@ public class SimpleContext {
         return refreshableSingletonMap;
     }
 
-    
-
 }
@@ -30,8 +30,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.chuan.simple.helper.clazz.ClassHelper;
 import com.chuan.simple.helper.method.MethodHelper;
 import com.chuan.simple.bean.core.Privates;
+import com.chuan.simple.bean.core.Registry;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.procedure.BuildProcedure;
 import com.chuan.simple.bean.core.build.procedure.CompoundProcedure;
@@ -70,7 +72,8 @@ public abstract class Builder<T> implements ProcedureDependant {
     protected boolean allowOnConstruction = true;
 
     /**
-     * The class for the target bean which is built by this builder.
+     * The class for the target bean which is built by this builder, loaded
+     * from {@link #className} on first use if it is not given.
      */
     protected volatile Class<?> builderClass;
 
@@ -120,7 +123,12 @@ public abstract class Builder<T> implements ProcedureDependant {
 
     protected final List<Element> elements = new ArrayList<>();
 
-    protected final List<Element> parsedElements = new ArrayList<>();
+    /**
+     * Elements holding a parsed value, may be parsed by several threads at
+     * the same time.
+     */
+    protected final List<Element> parsedElements =
+            Collections.synchronizedList(new ArrayList<>());
 
     protected Map<Executable, InvocationHandler> aspects =
             new ConcurrentHashMap<>();
@@ -133,13 +141,25 @@ public abstract class Builder<T> implements ProcedureDependant {
 
     protected final SimpleContext context;
 
+    /**
+     * The registry generation this builder belongs to, which keeps its
+     * singletons.
+     */
+    protected volatile Registry registry;
+
     protected ClassInfo classInfo;
 
     protected Executable buildExecutable;
 
     protected final List<Element> buildParameters = new ArrayList<>();
 
-    protected Class<?>[] buildParameterTypes;
+    protected volatile Class<?>[] buildParameterTypes;
+
+    /**
+     * The names of {@link #buildParameterTypes}, which are loaded on first
+     * use.
+     */
+    protected volatile String[] buildParameterTypeNames;
 
     protected final Map<Executable, List<Element>> executableParameters =
             new ConcurrentHashMap<>();
@@ -153,6 +173,7 @@ public abstract class Builder<T> implements ProcedureDependant {
 
     protected Builder(SimpleContext context) {
         this.context = context;
+        this.registry = context.getRegistry();
         initializeProcedure();
     }
 
@@ -196,7 +217,15 @@ public abstract class Builder<T> implements ProcedureDependant {
         this.executableParameters.clear();
         this.managers.clear();
         this.createProcedure.clear();
-                this.context.getSingletonMap().remove(this.builderName);
+        this.registry.getSingletonMap().remove(this.builderName);
+    }
+
+    /**
+     * Whether the placeholders resolved by the builder so far reference one
+     * of the attributes.
+     */
+    public boolean referencesAttributes(Collection<String> attributeNames) {
+        return this.createProcedure.referencesAttributes(attributeNames);
     }
     
     public void clearElements(Class<? extends Element> elementType) {
@@ -210,9 +239,22 @@ public abstract class Builder<T> implements ProcedureDependant {
     }
     
     public Class<?> getBuilderClass() {
+        Class<?> builderClass = this.builderClass;
+        if (builderClass == null && className != null) {
+            builderClass = ClassHelper.forName(className);
+            this.builderClass = builderClass;
+        }
         return builderClass;
     }
 
+    /**
+     * Whether the builder class is loaded, {@link #getBuilderClass()} loads
+     * it otherwise.
+     */
+    public boolean isBuilderClassResolved() {
+        return builderClass != null;
+    }
+
     public void setBuilderClass(Class<?> builderClass) {
         this.builderClass = builderClass;
     }
@@ -239,6 +281,7 @@ public abstract class Builder<T> implements ProcedureDependant {
 
     public void setOrder(int order) {
         this.order = order;
+        this.registry.invalidateBuilderOrder(this);
     }
 
     public List<String> getAliases() {
@@ -303,6 +346,14 @@ public abstract class Builder<T> implements ProcedureDependant {
         return context;
     }
 
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    public void setRegistry(Registry registry) {
+        this.registry = registry;
+    }
+
     public String getClassName() {
         return className;
     }
@@ -321,7 +372,7 @@ public abstract class Builder<T> implements ProcedureDependant {
 
     public void aspectMethod(String methodName, InvocationHandler handler,
             Class<?> paramTypes) {
-        Method method = MethodHelper.findMethod(this.builderClass, methodName,
+        Method method = MethodHelper.findMethod(getBuilderClass(), methodName,
                 paramTypes);
         this.aspects.put(method, handler);
     }
@@ -329,7 +380,7 @@ public abstract class Builder<T> implements ProcedureDependant {
     public void aspectConstructor(InvocationHandler handler,
             Class<?> paramTypes) {
         Constructor<?> ctor =
-                MethodHelper.findConstructor(this.builderClass, paramTypes);
+                MethodHelper.findConstructor(getBuilderClass(), paramTypes);
         this.aspects.put(ctor, handler);
     }
 
@@ -399,6 +450,11 @@ public abstract class Builder<T> implements ProcedureDependant {
     }
 
     public Class<?>[] getBuildParameterTypes() {
+        Class<?>[] buildParameterTypes = this.buildParameterTypes;
+        if (buildParameterTypes == null && buildParameterTypeNames != null) {
+            buildParameterTypes = ClassHelper.forName(buildParameterTypeNames);
+            this.buildParameterTypes = buildParameterTypes;
+        }
         return buildParameterTypes;
     }
 
@@ -406,6 +462,15 @@ public abstract class Builder<T> implements ProcedureDependant {
         this.buildParameterTypes = buildParameterTypes;
     }
 
+    public String[] getBuildParameterTypeNames() {
+        return buildParameterTypeNames;
+    }
+
+    public void setBuildParameterTypeNames(String[] buildParameterTypeNames) {
+        this.buildParameterTypeNames = buildParameterTypeNames;
+        this.buildParameterTypes = null;
+    }
+
 
     public boolean isManagePrototype() {
         return managePrototype;
@@ -426,6 +491,18 @@ public abstract class Builder<T> implements ProcedureDependant {
         public List<Element> getParsedElements() {
             return parsedElements;
         }
+
+        /**
+         * Add the element unless added already, prototypes parse the same
+         * elements on each build.
+         */
+        public void addParsedElement(Element element) {
+            synchronized (parsedElements) {
+                if (!parsedElements.contains(element)) {
+                    parsedElements.add(element);
+                }
+            }
+        }
     }
 
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.generated;
+
+import java.util.List;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.index.ComponentIndexProcessor;
+
+/**
+ * A {@link Builder} generated by {@link ComponentIndexProcessor}, which
+ * creates and injects its beans by plain java code instead of reflection.
+ *
+ * @param <T>
+ *            the type of bean which built by this builder
+ */
+public interface GeneratedBuilder<T> {
+
+    /**
+     * Apply the metadata of the annotations, like {@code @Scope} and
+     * {@code @Order}.
+     */
+    void configure();
+
+    T instantiate();
+
+    void inject(T bean);
+
+    /**
+     * The builder name and the type of each bean to inject, the name may be
+     * null.
+     */
+    Object[][] getDependencyPoints();
+
+    /**
+     * The builders of the {@code @Bean} methods.
+     */
+    List<GeneratedMethodBuilder<?>> getMethodBuilders();
+
+}
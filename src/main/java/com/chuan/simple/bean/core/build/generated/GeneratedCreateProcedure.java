@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.generated;
+
+import com.chuan.simple.helper.common.ObjectHelper;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.builder.MethodBuilder;
+import com.chuan.simple.bean.core.build.procedure.CreateProcedure;
+import com.chuan.simple.bean.exception.SimpleCreateException;
+
+/**
+ * Create the bean by {@link GeneratedBuilder#instantiate()}. Proxied beans
+ * are still created by the reflective executable.
+ */
+public class GeneratedCreateProcedure extends CreateProcedure {
+
+    public GeneratedCreateProcedure(Builder<?> builder) {
+        super(builder);
+    }
+
+    @Override
+    protected Object doCreate() {
+        if (builder.getHandler() != null
+                || !ObjectHelper.isEmpty(builder.getAspects())) {
+            return super.doCreate();
+        }
+        resolvePlaceholder();
+        buildDependsOn();
+        if (builder instanceof MethodBuilder<?>) {
+            setOwner((MethodBuilder<?>) builder);
+        }
+        Object bean = ((GeneratedBuilder<?>) builder).instantiate();
+        if (bean == null) {
+            throw new SimpleCreateException(
+                    "Couldn't create bean " + builder.getBuilderName());
+        }
+        putSingletonOnConstruction(bean);
+        return bean;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.generated;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.build.builder.MethodBuilder;
+import com.chuan.simple.bean.core.build.procedure.CreateProcedure;
+import com.chuan.simple.bean.core.build.procedure.PopulateProcedure;
+
+/**
+ * Base of the generated builders of {@code @Bean} methods.
+ */
+public abstract class GeneratedMethodBuilder<T> extends MethodBuilder<T>
+        implements GeneratedBuilder<T> {
+
+    /**
+     * The name given by {@code @Bean}, null for the method name.
+     */
+    private final String beanName;
+
+    protected GeneratedMethodBuilder(SimpleContext context,
+            Class<T> builderClass, String methodName, String beanName,
+            Class<?> ownerClass, Class<?>[] parameterTypes) {
+        super(context);
+        setBuilderClass(builderClass);
+        setClassName(builderClass.getName());
+        setMethodName(methodName);
+        setOwnerClass(ownerClass);
+        setOwnerClassName(ownerClass.getName());
+        setBuildParameterTypes(parameterTypes);
+        this.beanName = beanName;
+    }
+
+    @Override
+    public void initializeProcedure() {
+        super.initializeProcedure();
+        this.createProcedure = new GeneratedCreateProcedure(this);
+        extendsProcedure(CreateProcedure.class, this.createProcedure);
+        extendsProcedure(PopulateProcedure.class,
+                new GeneratedPopulateProcedure(this));
+    }
+
+    public String getBeanName() {
+        return beanName;
+    }
+
+    @Override
+    public void configure() {
+    }
+
+    @Override
+    public void inject(T bean) {
+    }
+
+    @Override
+    public Object[][] getDependencyPoints() {
+        return new Object[0][];
+    }
+
+    @Override
+    public List<GeneratedMethodBuilder<?>> getMethodBuilders() {
+        return Collections.emptyList();
+    }
+
+    protected Object autowired(String value, String builderName,
+            Class<?> type, boolean required) {
+        return Injection.autowired(this, value, builderName, type, required);
+    }
+
+    protected Object parameter(String name, Class<?> type) {
+        return Injection.parameter(this, name, type);
+    }
+
+}
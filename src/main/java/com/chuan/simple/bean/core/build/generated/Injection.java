@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.generated;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.procedure.CompoundProcedure;
+import com.chuan.simple.bean.core.element.installer.ElementInstaller;
+import com.chuan.simple.bean.exception.SimpleBuildException;
+import com.chuan.simple.bean.exception.SimpleCompoundException;
+
+/**
+ * Resolve the values injected by generated code the same way as the
+ * elements parsed from annotations.
+ */
+final class Injection {
+
+    private Injection() {
+    }
+
+    /**
+     * Resolve an {@code @Autowired} point like
+     * {@link ElementInstaller#parse(Builder, com.chuan.simple.bean.core.element.entity.Element)}.
+     */
+    static Object autowired(Builder<?> owner, String value, String builderName,
+            Class<?> type, boolean required) {
+        SimpleContext context = owner.getContext();
+        if (value != null) {
+            return context.getPlaceholderTemplates().resolve(value,
+                    context.getAttributes());
+        }
+        Builder<?> builder = null;
+        if (StringHelper.isNotEmpty(builderName)) {
+            builder = context.getBuilder(builderName);
+        }
+        if (builder == null && type != null) {
+            builder = context.getBuilder(type);
+        }
+        Object bean = null;
+        if (builder != null) {
+            bean = builder.build();
+        } else if (type != null) {
+            bean = owner.getProcedure(CompoundProcedure.class)
+                    .tryCompound(type);
+        }
+        if (required && bean == null) {
+            throw new SimpleBuildException("Install required element '"
+                    + builderName + "' of type " + type + " failed");
+        }
+        return bean;
+    }
+
+    /**
+     * Resolve a parameter without {@code @Autowired} like
+     * {@link CompoundProcedure#compoundParameters}.
+     */
+    static Object parameter(Builder<?> owner, String name, Class<?> type) {
+        if (!owner.isAutowiredExecutable()) {
+            return null;
+        }
+        Object bean = owner.getContext().tryBuild(name);
+        if (bean == null) {
+            bean = owner.getProcedure(CompoundProcedure.class)
+                    .tryCompound(type);
+        }
+        if (bean == null) {
+            throw new SimpleCompoundException("Compound parameter '" + name
+                    + "' of bean '" + owner.getBuilderName() + "' failed");
+        }
+        return bean;
+    }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.chuan.simple.bean.exception.SimpleBuildException;
+
+/**
+ * Generate a small class per constructor, method or field which calls it
+ * directly, without reflective access checks and argument array copies.
+ * <p>
+ * The classes are defined by a loader parented on the loader of the
+ * declaring class, or on another loader of the involved types which sees
+ * them all. Members which are not reachable from a generated class (not
+ * public, or of types no such loader sees) are invoked by
+ * {@link MethodHandle}s instead.
+ */
+public class AsmInvokerFactory implements InvokerFactory, Opcodes {
+
+    private static final Log log = LogFactory.getLog(AsmInvokerFactory.class);
+
+    private static final String INVOKER =
+            Type.getInternalName(Invoker.class);
+
+    private static final String FIELD_SETTER =
+            Type.getInternalName(FieldSetter.class);
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * The generated loaders by their parents. The generated loaders refer to
+     * their parents, so they are held weakly too, kept alive by the
+     * generated classes in use.
+     */
+    private static final Map<ClassLoader, Reference<GeneratedClassLoader>>
+            generatedLoaders = new WeakHashMap<>();
+
+    @Override
+    public Invoker invoker(Executable executable) {
+        if (Modifier.isPublic(executable.getModifiers())) {
+            List<Class<?>> types = new ArrayList<>();
+            types.add(executable.getDeclaringClass());
+            types.addAll(Arrays.asList(executable.getParameterTypes()));
+            if (executable instanceof Method) {
+                types.add(((Method) executable).getReturnType());
+            }
+            ClassLoader loader = findLoader(Invoker.class, types);
+            if (loader != null) {
+                try {
+                    return (Invoker) generateInvoker(executable, loader)
+                            .newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    log.debug("Couldn't generate invoker of " + executable,
+                            e);
+                }
+            }
+        }
+        return handleInvoker(executable);
+    }
+
+    @Override
+    public FieldSetter setter(Field field) {
+        if (Modifier.isPublic(field.getModifiers())
+                && !Modifier.isFinal(field.getModifiers())) {
+            ClassLoader loader = findLoader(FieldSetter.class,
+                    Arrays.asList(field.getDeclaringClass(), field.getType()));
+            if (loader != null) {
+                try {
+                    return (FieldSetter) generateSetter(field, loader)
+                            .newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    log.debug("Couldn't generate setter of " + field, e);
+                }
+            }
+        }
+        return handleSetter(field);
+    }
+
+    protected Invoker handleInvoker(Executable executable) {
+        executable.setAccessible(true);
+        int count = executable.getParameterCount();
+        try {
+            MethodHandle handle;
+            if (executable instanceof Constructor<?>) {
+                handle = MethodHandles.lookup()
+                        .unreflectConstructor((Constructor<?>) executable);
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            } else {
+                Method method = (Method) executable;
+                handle = MethodHandles.lookup().unreflect(method);
+                if (Modifier.isStatic(method.getModifiers())) {
+                    handle = MethodHandles.dropArguments(handle, 0,
+                            Object.class);
+                }
+            }
+            MethodHandle invoker = handle
+                    .asSpreader(Object[].class, count)
+                    .asType(MethodType.methodType(Object.class, Object.class,
+                            Object[].class));
+            return (owner, args) -> (Object) invoker.invokeExact(owner, args);
+        } catch (IllegalAccessException e) {
+            throw new SimpleBuildException(
+                    "Couldn't access " + executable, e);
+        }
+    }
+
+    protected FieldSetter handleSetter(Field field) {
+        field.setAccessible(true);
+        try {
+            MethodHandle setter = MethodHandles.lookup().unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class,
+                            Object.class));
+            return (bean, value) -> {
+                setter.invokeExact(bean, value);
+            };
+        } catch (IllegalAccessException e) {
+            // Final fields can only be set reflectively.
+            return field::set;
+        }
+    }
+
+    /**
+     * Find a class loader which sees the interface and all the types, the
+     * loader of the declaring class first.
+     * @return null if the types are not public or no loader sees them all
+     */
+    private ClassLoader findLoader(Class<?> itf, List<Class<?>> types) {
+        Set<ClassLoader> candidates = new LinkedHashSet<>();
+        for (Class<?> type : types) {
+            type = componentOf(type);
+            if (!type.isPrimitive()) {
+                if (!Modifier.isPublic(type.getModifiers())) {
+                    return null;
+                }
+                if (type.getClassLoader() != null) {
+                    candidates.add(type.getClassLoader());
+                }
+            }
+        }
+        candidates.add(itf.getClassLoader());
+        for (ClassLoader candidate : candidates) {
+            if (isVisible(itf, candidate) && areVisible(types, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private boolean areVisible(List<Class<?>> types, ClassLoader loader) {
+        for (Class<?> type : types) {
+            if (!isVisible(type, loader)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isVisible(Class<?> type, ClassLoader loader) {
+        type = componentOf(type);
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private Class<?> componentOf(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type;
+    }
+
+    private Class<?> generateInvoker(Executable executable,
+            ClassLoader loader) {
+        String name = nextName("Invoker");
+        ClassWriter cw = begin(name, INVOKER);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke",
+                "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                null, new String[] { "java/lang/Throwable" });
+        mv.visitCode();
+        String owner = Type.getInternalName(executable.getDeclaringClass());
+        Class<?>[] parameterTypes = executable.getParameterTypes();
+        if (executable instanceof Constructor<?>) {
+            mv.visitTypeInsn(NEW, owner);
+            mv.visitInsn(DUP);
+            loadArguments(mv, parameterTypes);
+            mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>",
+                    Type.getConstructorDescriptor(
+                            (Constructor<?>) executable),
+                    false);
+        } else {
+            Method method = (Method) executable;
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            boolean isInterface = method.getDeclaringClass().isInterface();
+            if (!isStatic) {
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, owner);
+            }
+            loadArguments(mv, parameterTypes);
+            int opcode = isStatic ? INVOKESTATIC
+                    : isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL;
+            mv.visitMethodInsn(opcode, owner, method.getName(),
+                    Type.getMethodDescriptor(method), isInterface);
+            box(mv, method.getReturnType());
+        }
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return define(cw, name, loader);
+    }
+
+    private Class<?> generateSetter(Field field, ClassLoader loader) {
+        String name = nextName("FieldSetter");
+        ClassWriter cw = begin(name, FIELD_SETTER);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "set",
+                "(Ljava/lang/Object;Ljava/lang/Object;)V", null,
+                new String[] { "java/lang/Throwable" });
+        mv.visitCode();
+        String owner = Type.getInternalName(field.getDeclaringClass());
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        if (!isStatic) {
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, owner);
+        }
+        mv.visitVarInsn(ALOAD, 2);
+        unbox(mv, field.getType());
+        mv.visitFieldInsn(isStatic ? PUTSTATIC : PUTFIELD, owner,
+                field.getName(), Type.getDescriptor(field.getType()));
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return define(cw, name, loader);
+    }
+
+    private String nextName(String kind) {
+        return "com/chuan/simple/bean/core/build/invoker/Generated" + kind
+                + "$" + counter.incrementAndGet();
+    }
+
+    private ClassWriter begin(String name, String itf) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, name, null,
+                OBJECT, new String[] { itf });
+        MethodVisitor mv =
+                cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        return cw;
+    }
+
+    private Class<?> define(ClassWriter cw, String name, ClassLoader parent) {
+        cw.visitEnd();
+        byte[] bytes = cw.toByteArray();
+        return getGeneratedLoader(parent).define(name.replace('/', '.'),
+                bytes);
+    }
+
+    /**
+     * The loader of the classes generated for the parent, shared while one
+     * of them is used.
+     */
+    private GeneratedClassLoader getGeneratedLoader(ClassLoader parent) {
+        synchronized (generatedLoaders) {
+            Reference<GeneratedClassLoader> reference =
+                    generatedLoaders.get(parent);
+            GeneratedClassLoader loader =
+                    reference != null ? reference.get() : null;
+            if (loader == null) {
+                loader = new GeneratedClassLoader(parent);
+                generatedLoaders.put(parent, new WeakReference<>(loader));
+            }
+            return loader;
+        }
+    }
+
+    private void loadArguments(MethodVisitor mv, Class<?>[] parameterTypes) {
+        for (int i = 0; i < parameterTypes.length; i++) {
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(AALOAD);
+            unbox(mv, parameterTypes[i]);
+        }
+    }
+
+    private void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else {
+            mv.visitIntInsn(SIPUSH, value);
+        }
+    }
+
+    /**
+     * Cast the object on the stack to {@code type}, numbers are converted
+     * like the widening of reflective invocation.
+     */
+    private void unbox(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive()) {
+            if (type != Object.class) {
+                mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+            }
+        } else if (type == boolean.class) {
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean",
+                    "booleanValue", "()Z", false);
+        } else if (type == char.class) {
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Character");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Character",
+                    "charValue", "()C", false);
+        } else {
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number",
+                    type.getName() + "Value",
+                    "()" + Type.getDescriptor(type), false);
+        }
+    }
+
+    private void box(MethodVisitor mv, Class<?> type) {
+        if (type == void.class) {
+            mv.visitInsn(ACONST_NULL);
+        } else if (type.isPrimitive()) {
+            Type wrapper = Type.getType(wrapperOf(type));
+            mv.visitMethodInsn(INVOKESTATIC, wrapper.getInternalName(),
+                    "valueOf", "(" + Type.getDescriptor(type) + ")"
+                            + wrapper.getDescriptor(),
+                    false);
+        }
+    }
+
+    private Class<?> wrapperOf(Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == float.class) {
+            return Float.class;
+        }
+        return Double.class;
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.invoker;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invoke by accessible {@link java.lang.reflect} members, the default
+ * backend.
+ */
+public class ReflectiveInvokerFactory implements InvokerFactory {
+
+    public static final ReflectiveInvokerFactory INSTANCE =
+            new ReflectiveInvokerFactory();
+
+    @Override
+    public Invoker invoker(Executable executable) {
+        executable.setAccessible(true);
+        if (executable instanceof Constructor<?>) {
+            Constructor<?> constructor = (Constructor<?>) executable;
+            return (owner, args) -> {
+                try {
+                    return constructor.newInstance(args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+        }
+        Method method = (Method) executable;
+        return (owner, args) -> {
+            try {
+                return method.invoke(owner, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    @Override
+    public FieldSetter setter(Field field) {
+        field.setAccessible(true);
+        return field::set;
+    }
+
+}
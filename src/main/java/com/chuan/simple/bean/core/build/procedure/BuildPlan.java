@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.helper.field.FieldHelper;
+import com.chuan.simple.helper.method.MethodHelper;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.invoker.FieldSetter;
+import com.chuan.simple.bean.core.build.invoker.Invoker;
+import com.chuan.simple.bean.core.build.invoker.InvokerFactory;
+import com.chuan.simple.bean.core.element.entity.Element;
+import com.chuan.simple.bean.core.element.entity.FieldElement;
+import com.chuan.simple.bean.core.element.installer.ElementInstaller;
+import com.chuan.simple.bean.core.info.ExecutableInfo;
+import com.chuan.simple.bean.exception.SimpleBuildException;
+import com.chuan.simple.bean.exception.SimpleCompoundException;
+import com.chuan.simple.bean.exception.SimpleCreateException;
+import com.chuan.simple.bean.exception.SimplePopulateException;
+
+/**
+ * The build steps of a prototype builder which are fixed after its first
+ * build: the build executable, the source of each parameter and the fields
+ * to inject.
+ * <p>
+ * The executable and the fields are called through the
+ * {@link InvokerFactory} of the context while the values fit their types
+ * without conversion. A plan is immutable and dropped by
+ * {@link Builder#refresh()}.
+ */
+public class BuildPlan {
+
+    private final Builder<?> builder;
+
+    private final Executable executable;
+
+    private final Object owner;
+
+    private final Supplier<?>[] parameters;
+
+    private final Class<?>[] parameterTypes;
+
+    private final Invoker invoker;
+
+    private final Field[] fields;
+
+    private final FieldSetter[] setters;
+
+    private final Supplier<?>[] fieldValues;
+
+    private final Field[] autowiredFields;
+
+    private BuildPlan(Builder<?> builder, Executable executable, Object owner,
+            Supplier<?>[] parameters, Field[] fields,
+            Supplier<?>[] fieldValues, Field[] autowiredFields) {
+        InvokerFactory invokerFactory =
+                builder.getContext().getInvokerFactory();
+        this.builder = builder;
+        this.executable = executable;
+        this.owner = owner;
+        this.parameters = parameters;
+        this.parameterTypes = builder.getContext().getExecutableInfos()
+                .get(executable).getParameterTypes();
+        this.invoker = invokerFactory.invoker(executable);
+        this.fields = fields;
+        this.setters = new FieldSetter[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            this.setters[i] = invokerFactory.setter(fields[i]);
+        }
+        this.fieldValues = fieldValues;
+        this.autowiredFields = autowiredFields;
+    }
+
+    /**
+     * Compile the plan of the builder after it created a bean by
+     * {@code executable}.
+     */
+    public static BuildPlan compile(Builder<?> builder, Executable executable,
+            Object owner) {
+        Compiler compiler = new Compiler(builder);
+        ExecutableInfo executableInfo =
+                builder.getContext().getExecutableInfos().get(executable);
+        Parameter[] parameters = executableInfo.getParameters();
+        String[] parameterNames = executableInfo.getParameterNames();
+        List<Element> buildParameters = builder.getBuildParameters();
+        Supplier<?>[] suppliers = new Supplier<?>[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Element element =
+                    i < buildParameters.size() ? buildParameters.get(i) : null;
+            suppliers[i] = compiler.parameter(executable, parameters[i],
+                    parameterNames[i], element);
+        }
+        Class<?> builderClass = builder.getBuilderClass();
+        Map<String, FieldElement> fieldElements = builder.getFields();
+        List<Field> fields = new ArrayList<>();
+        List<Supplier<?>> fieldValues = new ArrayList<>();
+        for (Entry<String, FieldElement> entry : fieldElements.entrySet()) {
+            Field field = FieldHelper.getField(builderClass, entry.getKey());
+            if (field == null) {
+                // Let the populate procedure report it.
+                return null;
+            }
+            fields.add(field);
+            fieldValues.add(compiler.element(entry.getValue()));
+        }
+        List<Field> autowiredFields = new ArrayList<>();
+        if (builder.isAutowiredField()) {
+            for (Field field : FieldHelper.getFields(builderClass)) {
+                if (!fieldElements.containsKey(field.getName())) {
+                    autowiredFields.add(field);
+                }
+            }
+        }
+        return new BuildPlan(builder, executable, owner, suppliers,
+                fields.toArray(new Field[0]),
+                fieldValues.toArray(new Supplier<?>[0]),
+                autowiredFields.toArray(new Field[0]));
+    }
+
+    public Object instantiate() {
+        Object[] args = new Object[parameters.length];
+        boolean fit = true;
+        for (int i = 0; i < args.length; i++) {
+            args[i] = parameters[i].get();
+            fit = fit && fits(parameterTypes[i], args[i]);
+        }
+        if (!fit) {
+            // Leave the conversion to the helper.
+            if (executable instanceof Constructor<?>) {
+                return MethodHelper.invoke((Constructor<?>) executable, args);
+            }
+            return MethodHelper.invoke(owner, (Method) executable, args);
+        }
+        try {
+            return invoker.invoke(owner, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SimpleCreateException(
+                    "Invoke " + executable + " failed", e);
+        }
+    }
+
+    public void populate(Object bean, PopulateProcedure populateProcedure,
+            CompoundProcedure compoundProcedure) {
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            try {
+                Object value = fieldValues[i].get();
+                if (field.getType().isArray()) {
+                    value = populateProcedure.arrayCast(field.getType(), value);
+                }
+                if (fits(field.getType(), value)) {
+                    setters[i].set(bean, value);
+                } else {
+                    FieldHelper.setFieldValue(bean, field, value);
+                }
+            } catch (Throwable e) {
+                throw new SimplePopulateException("Set field '"
+                        + field.getName() + "' of bean '"
+                        + builder.getBuilderName() + "' failed", e);
+            }
+        }
+        for (Field field : autowiredFields) {
+            if (FieldHelper.getFieldValue(field, bean) == null) {
+                FieldHelper.setFieldValue(bean, field,
+                        compoundProcedure.compound(field));
+            }
+        }
+    }
+
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    static {
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(char.class, Character.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(double.class, Double.class);
+    }
+
+    /**
+     * Whether the value can be passed without conversion.
+     */
+    private static boolean fits(Class<?> type, Object value) {
+        if (type.isPrimitive()) {
+            return value != null && WRAPPERS.get(type) == value.getClass();
+        }
+        return value == null || type.isInstance(value);
+    }
+
+    private static class Compiler {
+
+        private final Builder<?> builder;
+
+        private final SimpleContext context;
+
+        private final CompoundProcedure compoundProcedure;
+
+        private Compiler(Builder<?> builder) {
+            this.builder = builder;
+            this.context = builder.getContext();
+            this.compoundProcedure =
+                    builder.getProcedure(CompoundProcedure.class);
+        }
+
+        private Supplier<?> parameter(Executable executable,
+                Parameter parameter, String parameterName, Element element) {
+            Supplier<?> supplier = element(element);
+            if (!builder.isAutowiredExecutable()) {
+                return supplier;
+            }
+            Supplier<?> autowired = autowired(parameter, parameterName);
+            return () -> {
+                Object value = supplier.get();
+                if (value == null) {
+                    value = autowired.get();
+                }
+                if (value == null) {
+                    throw new SimpleCompoundException("Compound parameter '"
+                            + parameter + "' of executable '" + executable
+                            + "' failed");
+                }
+                return value;
+            };
+        }
+
+        /**
+         * Resolve the builder on each call like
+         * {@link CompoundProcedure#compoundParameters}, the registry may
+         * change between builds.
+         */
+        private Supplier<?> autowired(Parameter parameter,
+                String parameterName) {
+            Class<?> type = parameter.getType();
+            boolean named = StringHelper.isNotEmpty(parameterName);
+            return () -> {
+                Object value = null;
+                if (named) {
+                    value = context.tryBuild(parameterName);
+                }
+                if (value == null) {
+                    value = compoundProcedure.tryCompound(type);
+                }
+                return value;
+            };
+        }
+
+        private Supplier<?> element(Element element) {
+            if (element == null) {
+                return () -> null;
+            }
+            @SuppressWarnings("unchecked")
+            ElementInstaller<Builder<?>, Element> installer =
+                    (ElementInstaller<Builder<?>, Element>) context
+                            .getElementInstaller(element.getClass());
+            if (installer == null) {
+                return () -> null;
+            }
+            if (!isStock(installer)) {
+                return () -> parse(installer, element);
+            }
+            Object value = element.getValue();
+            if (value != null && !(value instanceof Element)
+                    && !(value instanceof Element[])
+                    && !(value instanceof Collection)
+                    && !(value instanceof Map)) {
+                // Plain values are never changed by the stock parsing.
+                return () -> value;
+            }
+            Builder<?> elementBuilder = element.getBuilder();
+            if (value == null && elementBuilder != null) {
+                return () -> {
+                    Object bean = elementBuilder.build();
+                    if (bean == null && element.isRequired()) {
+                        throw new SimpleBuildException("Install required element "
+                                + element + " failed");
+                    }
+                    return bean;
+                };
+            }
+            return () -> parse(installer, element);
+        }
+
+        private Object parse(ElementInstaller<Builder<?>, Element> installer,
+                Element element) {
+            element.setParsedValue(null);
+            installer.parse(builder, element);
+            return element.getParsedValue();
+        }
+
+        /**
+         * Whether the installer parses elements like {@link ElementInstaller}
+         * does, then the parsing can be skipped for plain values and
+         * resolved builders.
+         */
+        private static boolean isStock(ElementInstaller<?, ?> installer) {
+            try {
+                Class<?> clazz = installer.getClass();
+                return clazz.getMethod("parse", Builder.class, Element.class)
+                        .getDeclaringClass() == ElementInstaller.class
+                        && clazz.getMethod("parseValue", Builder.class,
+                                Object.class)
+                                .getDeclaringClass() == ElementInstaller.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+    }
+
+}
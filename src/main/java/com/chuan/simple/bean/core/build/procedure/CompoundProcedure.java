@@ -33,9 +33,9 @@ import com.chuan.simple.helper.common.ObjectHelper;
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.generic.GenericType;
 import com.chuan.simple.helper.generic.GenericTypeHelper;
-import com.chuan.simple.helper.method.ParameterHelper;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.info.ExecutableInfo;
 import com.chuan.simple.bean.exception.SimpleCompoundException;
 
 public class CompoundProcedure extends BuildProcedure {
@@ -57,8 +57,8 @@ public class CompoundProcedure extends BuildProcedure {
     }
 
     public Object compound(Parameter parameter) {
-        return compound(parameter, parameter.getType(),
-                ParameterHelper.getParameterName(parameter));
+        return compound(parameter, parameter.getType(), builder.getContext()
+                .getExecutableInfos().getParameterName(parameter));
     }
 
     protected Object compound(Class<?> type, boolean errorOnFailed) {
@@ -89,8 +89,10 @@ public class CompoundProcedure extends BuildProcedure {
     public List<Object> compoundParameters(Executable executable,
             List<Object> paramValues) {
         SimpleContext context = builder.getContext();
-        String[] parameterNames = ParameterHelper.getParameterNames(executable);
-        Parameter[] parameters = ParameterHelper.getParameters(executable);
+        ExecutableInfo executableInfo =
+                context.getExecutableInfos().get(executable);
+        String[] parameterNames = executableInfo.getParameterNames();
+        Parameter[] parameters = executableInfo.getParameters();
         for (int i = 0; i < parameterNames.length; i++) {
             String parameterName = parameterNames[i];
             Object parameterValue = null;
@@ -21,19 +21,22 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.chuan.simple.helper.common.ObjectHelper;
 import com.chuan.simple.helper.common.StringHelper;
-import com.chuan.simple.helper.expression.ExpressionHelper;
 import com.chuan.simple.helper.method.MethodHelper;
 import com.chuan.simple.helper.method.ParameterHelper;
 import com.chuan.simple.bean.annotation.Autowired;
+import com.chuan.simple.bean.core.PlaceholderTemplate;
+import com.chuan.simple.bean.core.Registry;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
 import com.chuan.simple.bean.core.build.builder.ConstructorBuilder;
@@ -57,59 +60,112 @@ public class CreateProcedure extends BuildProcedure
 
     private ElementProcedure elementProcedure;
 
+    /**
+     * The plan of building prototypes without resolving the executable and
+     * the elements again, null until the first prototype is built.
+     */
+    protected volatile BuildPlan buildPlan;
+
     public CreateProcedure(Builder<?> builder) {
         super(builder);
     }
 
     public Object create() {
         initializeProcedure();
+        if (!builder.isSingleton()) {
+            return createBean();
+        }
+        Object bean = getSingleton();
+        if (bean == null) {
+            bean = createSingleton();
+        }
+        return bean;
+    }
+
+    protected Object createBean() {
         Object bean = null;
-        if ((bean = getSingleton()) == null)
-            try {
+        try {
+            BuildPlan plan = this.buildPlan;
 
-                bean = doCreate();
+            bean = plan != null ? plan.instantiate() : doCreate();
 
-                processAfterInstantiation(bean);
+            processAfterInstantiation(bean);
 
-                bean = populateProcedure.populate(bean);
+            bean = populateProcedure.populate(bean, plan);
 
-                processAfterInitialization(bean);
+            processAfterInitialization(bean);
 
-            } catch (Exception e) {
-                
-                clearExceptionState();
-                
-                throw new SimpleCreateException("Create bean error", e);
-            }
+        } catch (Exception e) {
+
+            clearExceptionState();
+
+            throw new SimpleCreateException("Create bean error", e);
+        }
         return bean;
     }
 
-    protected Object getSingleton() {
-        Object bean = null;
-        if (builder.isSingleton()) {
-            SimpleContext context = builder.getContext();
-            String builderName = builder.getBuilderName();
-            Map<String, Object> singletonMap = context.getSingletonMap();
-            Map<String, Object> singletonMapOnConstruction =
-                    context.getSingletonMapOnConstruction();
-            bean = singletonMap.get(builderName);
+    /**
+     * Create the singleton by the first thread asking for it, the other
+     * threads wait for the {@link SingletonCreation} of this builder.
+     */
+    protected Object createSingleton() {
+        Registry registry = builder.getRegistry();
+        String builderName = builder.getBuilderName();
+        Map<String, SingletonCreation> creations =
+                registry.getSingletonCreations();
+        SingletonCreation creation = new SingletonCreation();
+        SingletonCreation existing =
+                creations.putIfAbsent(builderName, creation);
+        if (existing != null) {
+            return awaitSingleton(existing);
+        }
+        try {
+            Object bean = registry.getSingletonMap().get(builderName);
             if (bean == null) {
-                bean = getSingletonOnConstruction(singletonMapOnConstruction);
+                bean = createBean();
             }
+            creation.complete(bean);
+            return bean;
+        } catch (Throwable e) {
+            creation.fail(e);
+            throw e;
+        } finally {
+            creations.remove(builderName, creation);
         }
-        return bean;
+    }
+
+    protected Object awaitSingleton(SingletonCreation creation) {
+        WaiterGraph waiters = builder.getRegistry().getSingletonWaiters();
+        // Re-entry of the creating thread or waiting for each other, fall
+        // back to the early reference.
+        if (creation.isOwner() || !waiters.await(creation.getOwner())) {
+            return getSingletonOnConstruction(
+                    builder.getRegistry().getSingletonMapOnConstruction());
+        }
+        try {
+            return creation.await();
+        } finally {
+            waiters.done();
+        }
+    }
+
+    protected Object getSingleton() {
+        return builder.getRegistry().getSingletonMap()
+                .get(builder.getBuilderName());
     }
     
     protected Object doCreate() {
-        putSingletonOnConstruction(ObjectHelper.EMPTY);
         resolvePlaceholder();
         buildDependsOn();
         elementProcedure.clearElementParsedValue();
         elementProcedure.installElement(ElementInstaller.PERIOD_BEFORE_CREATE);
         Object result = proxyProcedure.optionalProxy();
+        boolean proxied = result != null;
+        Object owner = null;
+        List<Object> paramValues = null;
         if (result == null)
             if (builder instanceof ConstructorBuilder<?>) {
-                List<Object> paramValues = setBuildConstructor();
+                paramValues = setBuildConstructor();
                 ConstructorBuilder<?> constructorBuilder =
                         (ConstructorBuilder<?>) builder;
                 Constructor<?> constructor = (Constructor<?>) constructorBuilder
@@ -119,28 +175,45 @@ public class CreateProcedure extends BuildProcedure
             } else if (builder instanceof MethodBuilder<?>) {
                 MethodBuilder<?> methodBuilder = (MethodBuilder<?>) builder;
                 setOwner(methodBuilder);
-                List<Object> paramValues = setBuildMethod();
+                owner = methodBuilder.getOwner();
+                paramValues = setBuildMethod();
                 Method method = (Method) methodBuilder.getBuildExecutable();
-            result = MethodHelper.invoke(methodBuilder.getOwner(), method,paramValues.toArray());
+            result = MethodHelper.invoke(owner, method,paramValues.toArray());
         }
         if (result==null){
             throw new SimpleCreateException("Couldn't create bean "+builder.getBuilderName());
         }
         elementProcedure.installElement(ElementInstaller.PERIOD_AFTER_CREATE);
         putSingletonOnConstruction(result);
+        if (!proxied && paramValues != null && !builder.isSingleton()) {
+            compileBuildPlan(owner);
+        }
         return result;
     }
 
+    protected void compileBuildPlan(Object owner) {
+        Executable executable = builder.getBuildExecutable();
+        if (executable == null || builder.getHandler() != null
+                || !ObjectHelper.isEmpty(builder.getAspects())) {
+            return;
+        }
+        this.buildPlan = BuildPlan.compile(builder, executable, owner);
+    }
+
+    public BuildPlan getBuildPlan() {
+        return buildPlan;
+    }
+
     protected void putSingletonOnConstruction(Object value) {
         if (builder.isSingleton() && value != null) {
-            builder.getContext().getSingletonMapOnConstruction()
+            builder.getRegistry().getSingletonMapOnConstruction()
                     .put(builder.getBuilderName(), value);
         }
     }
 
     protected void putSingleton(Object value) {
         if (builder.isSingleton()&&value!=null) {
-            builder.getContext().getSingletonMap().put(builder.getBuilderName(), value);
+            builder.getRegistry().getSingletonMap().put(builder.getBuilderName(), value);
         }
         if (!builder.isSingleton()
                 &&(value instanceof Manager)
@@ -151,7 +224,7 @@ public class CreateProcedure extends BuildProcedure
     }
 
     protected void removeSingletonOnConstruction() {
-        builder.getContext().getSingletonMapOnConstruction().remove(builder.getBuilderName());
+        builder.getRegistry().getSingletonMapOnConstruction().remove(builder.getBuilderName());
     }
     
     protected void clearExceptionState() {
@@ -159,13 +232,13 @@ public class CreateProcedure extends BuildProcedure
     }
     
     protected void processAfterInstantiation(Object bean) {
-        for (Processor processor : builder.getContext().getProcessors()) {
+        for (Processor processor : builder.getRegistry().getProcessors()) {
             processor.processAfterInstantiation(bean, builder);
         }
     }
 
     protected void processAfterInitialization(Object bean) {
-        for (Processor processor : builder.getContext().getProcessors()) {
+        for (Processor processor : builder.getRegistry().getProcessors()) {
             processor.processAfterInitialization(bean, builder);
         }
         if (bean instanceof Manager) {
@@ -214,12 +287,9 @@ public class CreateProcedure extends BuildProcedure
     protected Object getSingletonOnConstruction(
             Map<String, Object> singletonMapOnConstruction) {
         Object bean = singletonMapOnConstruction.get(builder.getBuilderName());
-        if (bean != null) {
-            if (ObjectHelper.EMPTY.equals(bean)
-                    || !builder.isAllowOnConstruction()) {
-                throw new SimpleCreateException("Bean "
-                        + builder.getBuilderName() + " is on construction");
-            }
+        if (bean == null || !builder.isAllowOnConstruction()) {
+            throw new SimpleCreateException("Bean "
+                    + builder.getBuilderName() + " is on construction");
         }
         return bean;
     }
@@ -352,8 +422,10 @@ public class CreateProcedure extends BuildProcedure
             return false;
         }
         Class<?>[] correspondingParamTypes = new Class<?>[paramValues.size()];
-        System.arraycopy(executable.getParameterTypes(), 0,
-                correspondingParamTypes, 0, paramValues.size());
+        System.arraycopy(
+                builder.getContext().getExecutableInfos().get(executable)
+                        .getParameterTypes(),
+                0, correspondingParamTypes, 0, paramValues.size());
         if (!ParameterHelper.paramsFit(paramValues.toArray(),
                 correspondingParamTypes)) {
             return false;
@@ -379,17 +451,11 @@ public class CreateProcedure extends BuildProcedure
         return result;
     }
 
-    protected Boolean dependsOnBuilt = false;
+    protected final Initialization dependsOnBuilding = new Initialization();
 
     protected void buildDependsOn() {
-        if (!dependsOnBuilt) {
-            synchronized (dependsOnBuilt) {
-                if (!dependsOnBuilt) {
-                    doBuildDependsOn();
-                    dependsOnBuilt = true;
-                }
-            }
-        }
+        dependsOnBuilding.initialize(this::doBuildDependsOn,
+                builder.getRegistry().getSingletonWaiters());
     }
 
     protected void doBuildDependsOn() {
@@ -406,58 +472,135 @@ public class CreateProcedure extends BuildProcedure
     }
 
     public void clear() {
+        this.buildPlan = null;
         this.elementProcedure.clear();
-        this.placeHolderResolved = false;
-        this.dependsOnBuilt = false;
+        this.placeholderResolving.reset();
+        this.dependsOnBuilding.reset();
     }
 
-    protected Boolean placeHolderResolved = false;
+    protected final Initialization placeholderResolving = new Initialization();
 
     protected void resolvePlaceholder() {
-        if (!placeHolderResolved) {
-            synchronized (placeHolderResolved) {
-                if (!placeHolderResolved) {
-                    doResolvePlaceholder();
-                    placeHolderResolved = true;
-                }
-            }
-        }
-
+        placeholderResolving.initialize(this::doResolvePlaceholder,
+                builder.getRegistry().getSingletonWaiters());
     }
 
+    /**
+     * The values of the builder with placeholders as configured, kept to
+     * resolve them again after an attribute they reference changed.
+     */
+    protected volatile List<Placeholder> placeholders;
+
     protected void doResolvePlaceholder() {
-        SimpleContext context = builder.getContext();
-        Map<String, String> properties = context.getAttributes();
+        if (placeholders == null) {
+            placeholders = bindPlaceholders();
+        }
+        Map<String, String> properties = builder.getContext().getAttributes();
+        for (Placeholder placeholder : placeholders) {
+            placeholder.resolve(properties);
+        }
+    }
+
+    protected List<Placeholder> bindPlaceholders() {
+        List<Placeholder> placeholders = new ArrayList<>();
         if (!ObjectHelper.isEmpty(builder.getDependsOn())) {
-            builder.setDependsOn(ExpressionHelper
-                    .resolvePlaceholders(builder.getDependsOn(), properties));
+            bind(placeholders, builder.getDependsOn().clone(),
+                    builder::setDependsOn);
         }
         if (StringHelper.isNotEmpty(builder.getDescription())) {
-            builder.setDescription(ExpressionHelper
-                    .resolvePlaceholders(builder.getDescription(), properties));
+            bind(placeholders, builder.getDescription(),
+                    builder::setDescription);
+        }
+        if (builder.getScope() != null) {
+            bind(placeholders, builder.getScope(), builder::setScope);
         }
-        builder.setScope(ExpressionHelper
-                .resolvePlaceholders(builder.getScope(), properties));
         for (Element element : builder.getElements()) {
             if (StringHelper.isNotEmpty(element.getBuilderName())) {
-                element.setBuilderName(ExpressionHelper.resolvePlaceholders(
-                        element.getBuilderName(), properties));
+                bind(placeholders, element.getBuilderName(),
+                        element::setBuilderName);
             }
             if (StringHelper.isNotEmpty(element.getName())) {
-                element.setName(ExpressionHelper
-                        .resolvePlaceholders(element.getName(), properties));
+                bind(placeholders, element.getName(), element::setName);
             }
             if (StringHelper.isNotEmpty(element.getTypeName())) {
-                element.setTypeName(ExpressionHelper.resolvePlaceholders(
-                        element.getTypeName(), properties));
+                bind(placeholders, element.getTypeName(),
+                        element::setTypeName);
             }
-            Object value = element.getValue();
-            if (value instanceof String) {
-                value = ExpressionHelper.resolvePlaceholders((String) value,
-                        properties);
-                element.setValue(value);
+            if (element.getValue() instanceof String) {
+                bind(placeholders, (String) element.getValue(),
+                        element::setValue);
             }
         }
+        return placeholders;
+    }
+
+    private static void bind(List<Placeholder> placeholders, String value,
+            Consumer<String> target) {
+        bind(placeholders, new String[] {value}, values -> target.accept(values[0]));
+    }
+
+    private static void bind(List<Placeholder> placeholders, String[] values,
+            Consumer<String[]> target) {
+        PlaceholderTemplate[] templates =
+                new PlaceholderTemplate[values.length];
+        boolean constant = true;
+        for (int i = 0; i < values.length; i++) {
+            templates[i] = PlaceholderTemplate.of(values[i]);
+            constant = constant && templates[i].isConstant();
+        }
+        if (!constant) {
+            placeholders.add(new Placeholder(templates, target));
+        }
+    }
+
+    /**
+     * Whether a resolved placeholder of the builder references one of the
+     * attributes.
+     */
+    public boolean referencesAttributes(Collection<String> attributeNames) {
+        List<Placeholder> placeholders = this.placeholders;
+        if (placeholders != null) {
+            for (Placeholder placeholder : placeholders) {
+                if (placeholder.references(attributeNames)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Values of the builder resolved from templates.
+     */
+    protected static class Placeholder {
+
+        private final PlaceholderTemplate[] templates;
+
+        private final Consumer<String[]> target;
+
+        protected Placeholder(PlaceholderTemplate[] templates,
+                Consumer<String[]> target) {
+            this.templates = templates;
+            this.target = target;
+        }
+
+        protected void resolve(Map<String, String> attributes) {
+            String[] values = new String[templates.length];
+            for (int i = 0; i < templates.length; i++) {
+                values[i] = templates[i].resolve(attributes);
+            }
+            target.accept(values);
+        }
+
+        protected boolean references(Collection<String> attributeNames) {
+            for (PlaceholderTemplate template : templates) {
+                if (template.references(attributeNames)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
     }
 
     protected static final ExecutableComparator defaultExecutableComparator =
@@ -17,10 +17,9 @@ package com.chuan.simple.bean.core.build.procedure;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.chuan.simple.helper.common.ObjectHelper;
 import com.chuan.simple.bean.core.build.builder.Builder;
@@ -41,26 +40,28 @@ public class ElementProcedure extends BuildProcedure
         super(builder);
     }
 
-    protected Set<String> periodsInstalled = new HashSet<>();
+    protected final Map<String, Initialization> periodsInstalled =
+            new ConcurrentHashMap<>();
 
     public void installElement(String period) {
-        if (periodsInstalled.contains(period)) {
-            return;
+        Initialization installation = periodsInstalled.get(period);
+        if (installation == null) {
+            installation = periodsInstalled.computeIfAbsent(period,
+                    key -> new Initialization());
         }
-        synchronized (periodsInstalled) {
-            if (periodsInstalled.contains(period)) {
-                return;
-            }
-            initElementsByInstaller();
-            for (Map.Entry<ElementInstaller<? extends Builder<?>, ? extends Element>, List<Element>> entry : elementsByInstaller
-                    .entrySet()) {
-                @SuppressWarnings("unchecked")
-                ElementInstaller<Builder<?>, Element> installer =
-                        (ElementInstaller<Builder<?>, Element>) entry.getKey();
-                List<Element> list = entry.getValue();
-                installer.install(builder, list, period);
-            }
-            periodsInstalled.add(period);
+        installation.initialize(() -> doInstallElement(period),
+                builder.getRegistry().getSingletonWaiters());
+    }
+
+    protected void doInstallElement(String period) {
+        initElementsByInstaller();
+        for (Map.Entry<ElementInstaller<? extends Builder<?>, ? extends Element>, List<Element>> entry : elementsByInstaller
+                .entrySet()) {
+            @SuppressWarnings("unchecked")
+            ElementInstaller<Builder<?>, Element> installer =
+                    (ElementInstaller<Builder<?>, Element>) entry.getKey();
+            List<Element> list = entry.getValue();
+            installer.install(builder, list, period);
         }
     }
 
@@ -100,7 +101,7 @@ public class ElementProcedure extends BuildProcedure
         }
     }
 
-    protected Map<ElementInstaller<? extends Builder<?>, ? extends Element>, List<Element>> elementsByInstaller =
+    protected volatile Map<ElementInstaller<? extends Builder<?>, ? extends Element>, List<Element>> elementsByInstaller =
             null;
 
     protected
@@ -134,13 +135,18 @@ public class ElementProcedure extends BuildProcedure
     }
     
     public void clearElementParsedValue() {
-        for (Element element:builder.privates.getParsedElements()) {
-            element.setParsedValue(null);
+        List<Element> parsedElements = builder.privates.getParsedElements();
+        synchronized (parsedElements) {
+            for (Element element : parsedElements) {
+                element.setParsedValue(null);
+            }
         }
     }
 
     public synchronized void clear() {
-        this.periodsInstalled.clear();
+        for (Initialization installation : this.periodsInstalled.values()) {
+            installation.reset();
+        }
         this.elementsByInstaller = null;
     }
     
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.chuan.simple.bean.exception.SimpleCreateException;
+
+/**
+ * A one-off initialization step of a builder.
+ * <p>
+ * The state moves from {@link #STATE_NEW} to {@link #STATE_RUNNING} by CAS,
+ * so only one thread runs the step and an initialized step costs only a
+ * volatile read. The running thread may re-enter the step, other threads
+ * park until it is done or failed.
+ * <p>
+ * Waiting threads are registered in the {@link WaiterGraph} of the registry,
+ * the same graph the waiters of {@link SingletonCreation}s are registered in.
+ */
+public class Initialization {
+
+    private static final int STATE_NEW = 0;
+
+    private static final int STATE_RUNNING = 1;
+
+    private static final int STATE_DONE = 2;
+
+    private static final int SPINS = 64;
+
+    private final AtomicInteger state = new AtomicInteger(STATE_NEW);
+
+    private volatile Thread owner;
+
+    /**
+     * The parked threads, unparked once the running thread leaves the step.
+     */
+    private final Queue<Thread> parked = new ConcurrentLinkedQueue<>();
+
+    public boolean isDone() {
+        return state.get() == STATE_DONE;
+    }
+
+    /**
+     * Run the step unless it is done, or wait for the thread running it.
+     * The waiting thread is registered in {@code waiters}, so threads
+     * running steps which wait for each other fail instead of waiting
+     * forever.
+     */
+    public void initialize(Runnable step, WaiterGraph waiters) {
+        Thread current = Thread.currentThread();
+        Thread awaited = null;
+        try {
+            for (int spins = 0; state.get() != STATE_DONE; spins++) {
+                if (state.compareAndSet(STATE_NEW, STATE_RUNNING)) {
+                    if (awaited != null) {
+                        waiters.done();
+                        awaited = null;
+                    }
+                    run(step);
+                    return;
+                }
+                Thread owner = this.owner;
+                if (owner == current) {
+                    return;
+                }
+                if (owner == null || spins < SPINS) {
+                    // The owner is about to be set, or the step is short.
+                    Thread.yield();
+                    continue;
+                }
+                if (owner != awaited) {
+                    if (awaited != null) {
+                        waiters.done();
+                        awaited = null;
+                    }
+                    if (!waiters.await(owner)) {
+                        throw new SimpleCreateException("Thread '"
+                                + current.getName() + "' and thread '"
+                                + owner.getName() + "' wait for each other "
+                                + "to initialize builders depending on "
+                                + "each other");
+                    }
+                    awaited = owner;
+                }
+                park(owner);
+            }
+        } finally {
+            if (awaited != null) {
+                waiters.done();
+            }
+        }
+    }
+
+    /**
+     * Park until {@code owner} leaves the step.
+     */
+    private void park(Thread owner) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        parked.add(current);
+        try {
+            while (state.get() == STATE_RUNNING && this.owner == owner) {
+                LockSupport.park(this);
+                interrupted |= Thread.interrupted();
+            }
+        } finally {
+            parked.remove(current);
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private void run(Runnable step) {
+        owner = Thread.currentThread();
+        try {
+            step.run();
+        } catch (Throwable e) {
+            leave(STATE_NEW);
+            throw e;
+        }
+        leave(STATE_DONE);
+    }
+
+    private void leave(int next) {
+        owner = null;
+        state.set(next);
+        for (Thread thread : parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Run the step again on the next {@link #initialize}, a running step is
+     * not reset.
+     */
+    public void reset() {
+        state.compareAndSet(STATE_DONE, STATE_NEW);
+    }
+
+}
@@ -39,8 +39,19 @@ public class PopulateProcedure extends BuildProcedure
     }
 
     public Object populate(Object object) {
+        return populate(object, null);
+    }
+
+    /**
+     * Populate the bean by the compiled plan if there is one.
+     */
+    public Object populate(Object object, BuildPlan plan) {
         initializeProcedure();
-        doPopulate(object);
+        if (plan != null) {
+            plan.populate(object, this, compoundProcedure);
+        } else {
+            doPopulate(object);
+        }
         object = proxyProcedure.optionalWrapBean(object);
         return object;
     }
@@ -28,7 +28,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import com.chuan.simple.helper.common.ObjectHelper;
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.method.MethodHelper;
-import com.chuan.simple.helper.method.ParameterHelper;
 import com.chuan.simple.helper.proxy.BaseProxy;
 import com.chuan.simple.helper.proxy.ProxyHelper;
 import com.chuan.simple.bean.core.build.builder.Builder;
@@ -103,12 +102,13 @@ public class ProxyProcedure extends BuildProcedure
     protected Object[] fitParameters(Method method, Object[] args,
             Map<Executable, Executable> correspondExecutableCache) {
         Executable originalExecutable = correspondExecutableCache.get(method);
-        Parameter[] parameters = ParameterHelper.getParameters(method);
-        if (method.getParameterCount() == 0) {
+        Parameter[] parameters = builder.getContext().getExecutableInfos()
+                .get(method).getParameters();
+        if (parameters.length == 0) {
             return args;
         }
         if (args == null) {
-            args = new Object[method.getParameterCount()];
+            args = new Object[parameters.length];
         }
         List<Object> parameterValues = null;
         if (originalExecutable != null) {
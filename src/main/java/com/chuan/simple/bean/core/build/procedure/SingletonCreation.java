@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.chuan.simple.bean.exception.SimpleCreateException;
+
+/**
+ * The creation of a singleton bean which is in progress.
+ * <p>
+ * Only the owner thread creates the singleton, other threads asking for the
+ * same singleton wait for the result instead of failing or creating it again.
+ */
+public class SingletonCreation {
+
+    private final Thread owner = Thread.currentThread();
+
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+    public Thread getOwner() {
+        return owner;
+    }
+
+    public boolean isOwner() {
+        return owner == Thread.currentThread();
+    }
+
+    public void complete(Object bean) {
+        future.complete(bean);
+    }
+
+    public void fail(Throwable cause) {
+        future.completeExceptionally(cause);
+    }
+
+    /**
+     * Wait until the owner thread finished the creation.
+     */
+    public Object await() {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SimpleCreateException("Create bean error", cause);
+        }
+    }
+
+}
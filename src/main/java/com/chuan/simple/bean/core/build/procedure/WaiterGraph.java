@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The threads waiting for another thread to finish a
+ * {@link SingletonCreation} or an {@link Initialization}, used to find
+ * threads which would wait for each other forever.
+ */
+public class WaiterGraph {
+
+    /**
+     * The thread each waiting thread waits for.
+     */
+    private final Map<Thread, Thread> waiting = new HashMap<>();
+
+    /**
+     * Register the current thread as waiting for {@code owner}, unless
+     * {@code owner} is waiting for the current thread, directly or through
+     * other waiting threads.
+     * @return false if the threads would wait for each other
+     */
+    public synchronized boolean await(Thread owner) {
+        Thread current = Thread.currentThread();
+        Set<Thread> visited = new HashSet<>();
+        for (Thread thread = owner; thread != null && visited.add(thread);
+                thread = waiting.get(thread)) {
+            if (thread == current) {
+                waiting.remove(current);
+                return false;
+            }
+        }
+        waiting.put(current, owner);
+        return true;
+    }
+
+    /**
+     * The current thread stopped waiting.
+     */
+    public synchronized void done() {
+        waiting.remove(Thread.currentThread());
+    }
+
+    public synchronized boolean isWaiting(Thread thread) {
+        return waiting.containsKey(thread);
+    }
+
+}
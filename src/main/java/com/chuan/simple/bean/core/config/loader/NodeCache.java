@@ -0,0 +1,360 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.config.node.Node;
+
+/**
+ * The parsed configs kept by {@link SimpleLoader}.
+ * <p>
+ * The cache is bounded by the total weight of its nodes, which is the
+ * number of nodes and attributes, and evicts the least recently used
+ * configs first. A config is parsed again once its file, or the jar it is
+ * packed in, changed its modification time or size. Other resources are
+ * compared by the checksum of their content, so they are read again on
+ * every hit.
+ * <p>
+ * {@link #shared()} is used by all contexts unless a context is given its
+ * own cache.
+ */
+public class NodeCache {
+
+    public static final long DEFAULT_MAX_WEIGHT = 1_000_000L;
+
+    private static final NodeCache SHARED = new NodeCache(DEFAULT_MAX_WEIGHT);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String JAR_PREFIX = "jar:";
+
+    private static final String JAR_SEPARATOR = "!/";
+
+    private final long maxWeight;
+
+    private final Map<Resource, Entry> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public NodeCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * The cache shared by every context in the JVM.
+     */
+    public static NodeCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the parsed config of the resource, it is parsed by {@code parser}
+     * if it is not cached or changed since.
+     */
+    public Node get(Resource resource, Parser parser) throws IOException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(resource);
+        }
+        if (entry != null) {
+            if (entry.isValid(resource)) {
+                hits.increment();
+                return entry.node;
+            }
+            invalidations.increment();
+            remove(resource, entry);
+        }
+        misses.increment();
+        return parse(resource, parser);
+    }
+
+    private Node parse(Resource resource, Parser parser) throws IOException {
+        File file = stampFile(resource);
+        Entry entry = new Entry();
+        Node node;
+        if (file != null) {
+            // Stamped before reading, so a change while reading is noticed.
+            entry.lastModified = file.lastModified();
+            entry.length = file.length();
+            try (InputStream in = resource.getInputStream()) {
+                node = parser.parse(in);
+            }
+        } else {
+            try (CheckedInputStream in = new CheckedInputStream(
+                    resource.getInputStream(), new CRC32())) {
+                node = parser.parse(in);
+                // Consume what the parser left.
+                drain(in);
+                entry.checksum = in.getChecksum().getValue();
+            }
+        }
+        entry.file = file;
+        entry.node = node;
+        entry.weight = weigh(node);
+        put(resource, entry);
+        return node;
+    }
+
+    private void put(Resource resource, Entry entry) {
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(resource, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+            Iterator<Entry> it = entries.values().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest == entry) {
+                    continue;
+                }
+                it.remove();
+                weight -= eldest.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private void remove(Resource resource, Entry entry) {
+        synchronized (entries) {
+            if (entries.remove(resource, entry)) {
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Forget all parsed configs.
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            invalidations.add(entries.size());
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Forget the parsed config of the resource.
+     */
+    public void invalidate(Resource resource) {
+        synchronized (entries) {
+            Entry entry = entries.remove(resource);
+            if (entry != null) {
+                weight -= entry.weight;
+                invalidations.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(),
+                invalidations.sum());
+    }
+
+    private static long weigh(Node node) {
+        long weight = 1 + node.attrs().size();
+        for (Node child : node.getChilds()) {
+            weight += weigh(child);
+        }
+        return weight;
+    }
+
+    private static long checksum(InputStream in) throws IOException {
+        try (CheckedInputStream checked =
+                new CheckedInputStream(in, new CRC32())) {
+            drain(checked);
+            return checked.getChecksum().getValue();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (in.read(buffer) != -1) {
+            // Only the checksum is of interest.
+        }
+    }
+
+    static File toFile(Resource resource) {
+        return toFile(resource.getPath());
+    }
+
+    /**
+     * The file whose modification time and size change with the content of
+     * the resource, the config file itself or the outermost jar it is
+     * packed in.
+     */
+    static File stampFile(Resource resource) {
+        String path = resource.getPath();
+        File file = toFile(path);
+        if (file == null && path != null && path.startsWith(JAR_PREFIX)) {
+            int separator = path.indexOf(JAR_SEPARATOR);
+            if (separator > 0) {
+                file = toFile(path.substring(JAR_PREFIX.length(), separator));
+            }
+        }
+        return file;
+    }
+
+    private static File toFile(String path) {
+        if (path == null) {
+            return null;
+        }
+        try {
+            File file = new File(path);
+            if (file.isFile()) {
+                return file;
+            }
+            URL url = new URL(path);
+            if ("file".equals(url.getProtocol())) {
+                return Paths.get(url.toURI()).toFile();
+            }
+        } catch (Exception e) {
+            // Neither a file nor a file URL.
+        }
+        return null;
+    }
+
+    /**
+     * Parse the content of a config.
+     */
+    @FunctionalInterface
+    public interface Parser {
+
+        Node parse(InputStream in) throws IOException;
+
+    }
+
+    private static class Entry {
+
+        private Node node;
+
+        private long weight;
+
+        private File file;
+
+        private long lastModified;
+
+        private long length;
+
+        private long checksum;
+
+        private boolean isValid(Resource resource) {
+            if (file != null) {
+                return file.lastModified() == lastModified
+                        && file.length() == length;
+            }
+            try {
+                return checksum(resource.getInputStream()) == checksum;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+    }
+
+    /**
+     * A snapshot of the counters of a {@link NodeCache}.
+     */
+    public static class Stats {
+
+        private final long hits;
+
+        private final long misses;
+
+        private final long evictions;
+
+        private final long invalidations;
+
+        public Stats(long hits, long misses, long evictions,
+                long invalidations) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Configs dropped to stay within the maximum weight.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Configs dropped because they changed or were invalidated.
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        @Override
+        public String toString() {
+            return "hits " + hits + ", misses " + misses + ", evictions "
+                    + evictions + ", invalidations " + invalidations;
+        }
+
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.config.node.Node;
+
+/**
+ * Compile configs into a binary node tree which {@link SimpleLoader} reads
+ * without tokenizing.
+ * <p>
+ * The compiled config of {@code a.sp} is {@code a.spc} next to it, laid out
+ * as
+ * <pre>
+ * magic, version, CRC32 and length of the source
+ * string count, each string as UTF-8 length and bytes
+ * root node: name index, attribute count, (name index, value index)...,
+ *            child count, child nodes...
+ * </pre>
+ * Every name and value is stored once in the string table, so equal
+ * strings are shared by the loaded nodes. A compiled config whose source
+ * hash differs from the source is ignored.
+ * <p>
+ * {@link #main(String[])} compiles the given configs, e.g. at build time.
+ */
+public final class NodeCompiler {
+
+    private static final Log log = LogFactory.getLog(NodeCompiler.class);
+
+    public static final String SOURCE_SUFFIX = ".sp";
+
+    public static final String COMPILED_SUFFIX = ".spc";
+
+    private static final int MAGIC = 0x53504300;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private NodeCompiler() {
+    }
+
+    /**
+     * Compile each given config file next to it.
+     */
+    public static void main(String[] args) throws IOException {
+        for (String path : args) {
+            File compiled = compile(new File(path));
+            log.info("Compiled " + path + " to " + compiled);
+        }
+    }
+
+    /**
+     * Compile the config file next to it.
+     * @return the compiled file
+     */
+    public static File compile(File source) throws IOException {
+        byte[] content = Files.readAllBytes(source.toPath());
+        Node root = new SimpleLoader(null)
+                .load(new Resource(source.getPath())).getNode();
+        File compiled = new File(compiledPath(source.getPath()));
+        try (OutputStream out = new FileOutputStream(compiled)) {
+            write(root, checksum(content), content.length, out);
+        }
+        return compiled;
+    }
+
+    /**
+     * Write the node tree with the hash and length of its source.
+     */
+    public static void write(Node root, long checksum, long length,
+            OutputStream out) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        writeNode(root, new DataOutputStream(tree), indexes, strings);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(checksum);
+        data.writeLong(length);
+        data.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        tree.writeTo(data);
+        data.flush();
+    }
+
+    private static void writeNode(Node node, DataOutputStream out,
+            Map<String, Integer> indexes, List<String> strings)
+            throws IOException {
+        out.writeInt(index(node.getName(), indexes, strings));
+        out.writeInt(node.attrs().size());
+        for (Entry<String, Object> attr : node.attrs().entrySet()) {
+            if (!(attr.getValue() instanceof String)) {
+                throw new IOException("Attribute '" + attr.getKey()
+                        + "' of node '" + node.getName()
+                        + "' is no string: " + attr.getValue());
+            }
+            out.writeInt(index(attr.getKey(), indexes, strings));
+            out.writeInt(index((String) attr.getValue(), indexes, strings));
+        }
+        out.writeInt(node.getChilds().size());
+        for (Node child : node.getChilds()) {
+            writeNode(child, out, indexes, strings);
+        }
+    }
+
+    private static int index(String string, Map<String, Integer> indexes,
+            List<String> strings) {
+        Integer index = indexes.get(string);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Read a compiled node tree.
+     * @return null if it is not compiled from a source of the given hash
+     *         and length, or is no compiled config at all
+     */
+    public static Node read(ByteBuffer buffer, long checksum, long length) {
+        try {
+            if (buffer.remaining() < HEADER_SIZE
+                    || buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION) {
+                return null;
+            }
+            if (buffer.getLong() != checksum || buffer.getLong() != length) {
+                log.debug("Ignored compiled config of a changed source");
+                return null;
+            }
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[BUFFER_SIZE];
+            for (int i = 0; i < strings.length; i++) {
+                int size = buffer.getInt();
+                if (size > bytes.length) {
+                    bytes = new byte[size];
+                }
+                buffer.get(bytes, 0, size);
+                strings[i] = new String(bytes, 0, size, StandardCharsets.UTF_8);
+            }
+            return readNode(buffer, strings, null);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            log.warn("Ignored corrupt compiled config", e);
+            return null;
+        }
+    }
+
+    private static Node readNode(ByteBuffer buffer, String[] strings,
+            Node parent) {
+        Node node = new Node(strings[buffer.getInt()]);
+        node.setParent(parent);
+        for (int i = buffer.getInt(); i > 0; i--) {
+            String name = strings[buffer.getInt()];
+            node.attr(name, strings[buffer.getInt()]);
+        }
+        for (int i = buffer.getInt(); i > 0; i--) {
+            node.addChild(readNode(buffer, strings, node));
+        }
+        return node;
+    }
+
+    /**
+     * The compiled config of the resource, mapped into memory if it is a
+     * file.
+     * @return null if there is none
+     */
+    static ByteBuffer compiled(Resource resource) {
+        try {
+            File file = NodeCache.toFile(resource);
+            if (file != null) {
+                File compiled = new File(compiledPath(file.getPath()));
+                if (!compiled.isFile()) {
+                    return null;
+                }
+                try (FileChannel channel = FileChannel.open(compiled.toPath(),
+                        StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            channel.size());
+                }
+            }
+            URL url = compiledUrl(resource);
+            if (url == null) {
+                return null;
+            }
+            try (InputStream in = url.openStream()) {
+                return ByteBuffer.wrap(readAll(in));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The compiled config of a resource within a jar.
+     */
+    private static URL compiledUrl(Resource resource) throws IOException {
+        String path = resource.getPath();
+        if (path == null || !path.startsWith("jar:")) {
+            return null;
+        }
+        return new URL(compiledPath(path));
+    }
+
+    private static String compiledPath(String path) {
+        if (path.endsWith(SOURCE_SUFFIX)) {
+            return path.substring(0, path.length() - SOURCE_SUFFIX.length())
+                    + COMPILED_SUFFIX;
+        }
+        return path + COMPILED_SUFFIX;
+    }
+
+    static long checksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
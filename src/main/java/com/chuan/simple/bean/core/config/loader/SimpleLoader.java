@@ -15,14 +15,19 @@
  */
 package com.chuan.simple.bean.core.config.loader;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.resource.Resource;
-import com.chuan.simple.helper.resource.StreamHelper;
 import com.chuan.simple.bean.core.config.node.Node;
 import com.chuan.simple.bean.core.config.node.NodeWrapper;
 
@@ -31,19 +36,42 @@ import com.chuan.simple.bean.core.config.node.NodeWrapper;
  */
 public class SimpleLoader implements Loader<Resource, NodeWrapper> {
 
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int LINE_SIZE = 256;
+
+    private final NodeCache cache;
+
+    /**
+     * Create a loader keeping its configs in {@link NodeCache#shared()}.
+     */
+    public SimpleLoader() {
+        this(NodeCache.shared());
+    }
+
+    /**
+     * Create a loader keeping its configs in the given cache, or reading
+     * them on every load if it is {@code null}.
+     */
+    public SimpleLoader(NodeCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * We use a way to show level iteration by '\t' character.
      * @param resource
      *            file
      * @return {@link Node}
      */
-    private static final Map<Resource, Node> cache = new HashMap<>();
     public NodeWrapper load(Resource resource) {
         try {
-            Node node = cache.get(resource);
-            if (node ==null) {
-                node = load(StreamHelper.toString(resource.getInputStream()));
-                cache.put(resource, node);
+            Node node;
+            if (cache != null) {
+                node = cache.get(resource, in -> load(resource, in));
+            } else {
+                try (InputStream in = resource.getInputStream()) {
+                    node = load(resource, in);
+                }
             }
             return new NodeWrapper(node, resource);
         } catch (IOException e) {
@@ -52,65 +80,148 @@ public class SimpleLoader implements Loader<Resource, NodeWrapper> {
     }
 
     /**
-     * @param config
-     *            the config {@link String}
+     * Forget all configs of the shared cache, they will be read again on
+     * next load.
+     */
+    public static void invalidate() {
+        NodeCache.shared().invalidate();
+    }
+
+    /**
+     * Forget the config of the resource in the shared cache, it will be
+     * read again on next load.
+     */
+    public static void invalidate(Resource resource) {
+        NodeCache.shared().invalidate(resource);
+    }
+
+    /**
+     * Take the compiled config of the resource while it is compiled from the
+     * same content, see {@link NodeCompiler}.
+     */
+    private Node load(Resource resource, InputStream in) throws IOException {
+        ByteBuffer compiled = NodeCompiler.compiled(resource);
+        if (compiled == null) {
+            return load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        byte[] content = NodeCompiler.readAll(in);
+        Node node = NodeCompiler.read(compiled,
+                NodeCompiler.checksum(content), content.length);
+        if (node == null) {
+            node = load(new InputStreamReader(
+                    new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        }
+        return node;
+    }
+
+    /**
+     * Build the nodes while reading the config. Each line is collected in a
+     * reused buffer and tokenized there, so only the names and values
+     * become strings.
+     * @param reader
+     *            the config
      * @return node correspond to the config
      */
-    private Node load(String config) {
-        config += "\n";
-        StringBuffer line = new StringBuffer();
+    private Node load(Reader reader) throws IOException {
         Node root = new Node("root");
         Status status = new Status(root);
+        char[] buffer = new char[BUFFER_SIZE];
+        char[] line = new char[LINE_SIZE];
+        int length = 0;
         // Level of each line
-        for (int i = 0,level = 0; i < config.length(); i++) {
-            char c = config.charAt(i);
-            if (c == '\n') {
-                String ln = line.toString().trim();
-                if (StringHelper.isEmpty(ln) || ln.charAt(0) == '#') {
+        int level = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    line(status, line, length, level);
+                    length = 0;
                     level = 0;
-                    line.delete(0, line.length());
                     continue;
+                } else if (c == '\t') {
+                    level++;
                 }
-                if (level > status.curLevel) {
-                    throw new IllegalConfigException(line.toString());
-                }
-                for (; level < status.curLevel; status.curLevel--) {
-                    status.node = status.node.getParent();
-                }
-                if (ln.indexOf(":") >= 0) {
-                    attr(status, ln);
-                } else {
-                    addChild(status, ln);
-                    status.curLevel++;
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
                 }
-                line.delete(0, line.length());
-                level = 0;
-                continue;
-            } else if (c == '\t') {
-                level++;
+                line[length++] = c;
             }
-            line.append(c);
         }
+        line(status, line, length, level);
         return root;
     }
 
-    private void attr(Status status, String line) {
-        String[] attr = line.toString().split(":");
-        if (attr.length == 0) {
-            throw new IllegalConfigException(line.toString());
+    private void line(Status status, char[] line, int length, int level) {
+        int start = 0;
+        int end = length;
+        // Trimmed the same as String#trim()
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end || line[start] == '#') {
+            return;
+        }
+        if (level > status.curLevel) {
+            throw new IllegalConfigException(new String(line, 0, length));
         }
-        String name = attr[0];
+        for (; level < status.curLevel; status.curLevel--) {
+            status.node = status.node.getParent();
+        }
+        int colon = indexOf(line, ':', start, end);
+        if (colon >= 0) {
+            attr(status, line, start, colon, end);
+        } else {
+            addChild(status, new String(line, start, end - start));
+            status.curLevel++;
+        }
+    }
+
+    /**
+     * Take the text before the first ':' as name and the text up to the
+     * next ':' as value.
+     */
+    private void attr(Status status, char[] line, int start, int colon,
+            int end) {
+        if (indexOfOther(line, ':', start, end) < 0) {
+            throw new IllegalConfigException(
+                    new String(line, start, end - start));
+        }
+        String name = new String(line, start, colon - start);
+        int valueEnd = indexOf(line, ':', colon + 1, end);
+        if (valueEnd < 0) {
+            valueEnd = end;
+        }
+        String value = new String(line, colon + 1, valueEnd - colon - 1);
         int p;
         if ((p = name.lastIndexOf('.')) >= 0) {
             nestedChild(status, name.substring(0, p));
             name = name.substring(p + 1);
             status.node = status.node.getParent();
         }
-        if (attr.length == 1) {
-            status.end.attr(name, "");
-        } else {
-            status.end.attr(name, attr[1]);
+        status.end.attr(name, value);
+    }
+
+    private static int indexOf(char[] chars, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfOther(char[] chars, char c, int start,
+            int end) {
+        for (int i = start; i < end; i++) {
+            if (chars[i] != c) {
+                return i;
+            }
         }
+        return -1;
     }
 
     private void nestedChild(Status status, String nestedName) {
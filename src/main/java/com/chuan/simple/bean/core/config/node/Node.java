@@ -104,6 +104,45 @@ public class Node implements Serializable {
         this.name = name;
     }
 
+    /**
+     * A 64 bit hash of the name, attributes and childs, the parent is not
+     * hashed. Nodes of equal content have equal hashes, so it stands for the
+     * content when comparing configs across refreshes.
+     */
+    public long contentHash() {
+        long hash = mix(hash(this.name));
+        long attrs = 0;
+        // Summed, so the order of the attributes does not matter.
+        for (Entry<String, Object> attribute : this.attributes.entrySet()) {
+            attrs += mix(hash(attribute.getKey()) * 31
+                    + hash(String.valueOf(attribute.getValue())));
+        }
+        hash = mix(hash ^ attrs);
+        for (Node child : this.childs) {
+            hash = mix(hash * 31 + child.contentHash());
+        }
+        return hash;
+    }
+
+    private static long hash(String s) {
+        if (s == null) {
+            return 0;
+        }
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
     @Override
     public String toString() {
         return toString(StringHelper.EMPTY);
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.parser;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+
+/**
+ * An import marked {@code lazy}, parsed once one of its builders is asked
+ * for. The imported configs are not read before a lookup misses the
+ * registry, then only the builder names, aliases and class names are
+ * collected from them.
+ */
+public class LazyImport {
+
+    private final Resource resource;
+
+    private final Set<String> names = new HashSet<>();
+
+    private final Set<String> classNames = new HashSet<>();
+
+    /**
+     * The names of the super classes and interfaces of {@link #classNames},
+     * read once asked for by type.
+     */
+    private volatile Set<String> typeNames;
+
+    private final Consumer<LazyImport> manifest;
+
+    private volatile boolean collected;
+
+    /**
+     * @param manifest adds the names and class names of the imported configs
+     *        to the lazy import, called once they are asked for
+     */
+    public LazyImport(Resource resource, Consumer<LazyImport> manifest) {
+        this.resource = resource;
+        this.manifest = manifest;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public void addName(String name) {
+        this.names.add(name);
+    }
+
+    public void addClassName(String className) {
+        this.classNames.add(className);
+    }
+
+    /**
+     * Whether the names and class names are collected, until then any lookup
+     * may match.
+     */
+    public boolean isCollected() {
+        return collected;
+    }
+
+    /**
+     * Collect the names and class names of the imported configs unless
+     * collected already.
+     */
+    public synchronized void collect() {
+        if (!collected) {
+            try {
+                manifest.accept(this);
+            } finally {
+                collected = true;
+            }
+        }
+    }
+
+    public boolean hasName(String name) {
+        collect();
+        return names.contains(name);
+    }
+
+    /**
+     * Whether one of the builders may be of the type, the class files are
+     * read but the classes are not loaded.
+     */
+    public boolean hasType(String typeName, ClassInfoCache classInfos) {
+        collect();
+        Set<String> typeNames = this.typeNames;
+        if (typeNames == null) {
+            typeNames = new HashSet<>();
+            for (String className : classNames) {
+                Set<String> types = classInfos.getTypeNames(className);
+                if (types == null) {
+                    // Unknown hierarchy, it may be of any type.
+                    typeNames = null;
+                    break;
+                }
+                typeNames.addAll(types);
+            }
+            if (typeNames == null) {
+                return true;
+            }
+            this.typeNames = typeNames;
+        }
+        return typeNames.contains(typeName);
+    }
+
+    @Override
+    public String toString() {
+        return "lazy import " + resource.getPath();
+    }
+
+}
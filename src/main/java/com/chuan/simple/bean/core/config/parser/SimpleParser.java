@@ -27,13 +27,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import com.chuan.simple.helper.clazz.BuilderNameHelper;
-import com.chuan.simple.helper.clazz.ClassHelper;
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.resource.PathHelper;
 import com.chuan.simple.helper.resource.Resource;
 import com.chuan.simple.helper.resource.ResourceHelper;
+import com.chuan.simple.bean.core.BuilderCondition;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
 import com.chuan.simple.bean.core.build.builder.ConstructorBuilder;
@@ -46,6 +55,7 @@ import com.chuan.simple.bean.core.element.entity.Element;
 import com.chuan.simple.bean.core.element.entity.FieldElement;
 import com.chuan.simple.bean.core.element.entity.MethodParameterElement;
 import com.chuan.simple.bean.core.element.installer.BuildParameterInstaller;
+import com.chuan.simple.bean.core.element.installer.ElementInstaller;
 import com.chuan.simple.bean.core.element.installer.FieldInstaller;
 import com.chuan.simple.bean.core.element.installer.MethodParameterInstaller;
 import com.chuan.simple.bean.core.handler.HandlerManager;
@@ -57,6 +67,10 @@ import com.chuan.simple.constant.Constant;
  */
 public class SimpleParser implements Parser<Object> {
 
+    private static final Log log = LogFactory.getLog(SimpleParser.class);
+
+    private static final String ATTR_LAZY = "lazy";
+
     private final Set<String> usedNames = new HashSet<>();
 
     private final SimpleContext context;
@@ -67,30 +81,183 @@ public class SimpleParser implements Parser<Object> {
     
     private final Set<Resource> parsed = Collections.synchronizedSet(new HashSet<>());
 
+    /**
+     * The configs being loaded ahead of parsing.
+     */
+    private final Map<Resource, CompletableFuture<NodeWrapper>> loading =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The depth of the running {@link #parse(Object)} calls, the configs
+     * still loading ahead are dropped once the outermost one returns.
+     */
+    private final AtomicInteger parsing = new AtomicInteger();
+
+    /**
+     * The resources of each import node, resolved once for preloading and
+     * parsing.
+     */
+    private final Map<Node, Set<Resource>> imports = new ConcurrentHashMap<>();
+
+    private final Set<Resource> lazyImported =
+            Collections.synchronizedSet(new HashSet<>());
+
     public SimpleParser(SimpleContext context) {
         this.context = context;
-        this.loader = new SimpleLoader();
+        this.loader = new SimpleLoader(context.getConfigCache());
         handlerManager = new HandlerManager(this.context);
         addDefaultElementInstaller();
     }
 
+    /**
+     * Add the default installers unless set already, installers set on the
+     * context are kept by the parsers of later refreshes.
+     */
     private void addDefaultElementInstaller() {
-        this.context.addElementInstaller(BuildParameterElement.class,
+        Map<Class<? extends Element>, ElementInstaller<? extends Builder<?>, ? extends Element>> installers =
+                this.context.getElementInstallers();
+        installers.putIfAbsent(BuildParameterElement.class,
                 new BuildParameterInstaller());
-        this.context.addElementInstaller(FieldElement.class,
-                new FieldInstaller());
-        this.context.addElementInstaller(MethodParameterElement.class,
+        installers.putIfAbsent(FieldElement.class, new FieldInstaller());
+        installers.putIfAbsent(MethodParameterElement.class,
                 new MethodParameterInstaller());
     }
 
     @Override
     public void parse(Object resource) {
-        if (resource instanceof Resource) {
-            if (parsed.add((Resource) resource)) {
-                parseNode(loader.load((Resource) resource));
+        parsing.incrementAndGet();
+        try {
+            if (resource instanceof Resource) {
+                if (parsed.add((Resource) resource)) {
+                    parseNode(load((Resource) resource));
+                }
+            } else if (resource instanceof Node) {
+                parseNode((Node) resource, null);
+            }
+        } finally {
+            if (parsing.decrementAndGet() == 0) {
+                dropPreloads();
+            }
+        }
+    }
+
+    /**
+     * Load the configs ahead and parse them in order, configs loaded ahead
+     * but not parsed are dropped at the end.
+     */
+    public void parseAll(List<?> configs) {
+        parsing.incrementAndGet();
+        try {
+            for (Object config : configs) {
+                if (config instanceof Resource) {
+                    preload((Resource) config);
+                }
+            }
+            for (Object config : configs) {
+                parse(config);
+            }
+        } finally {
+            if (parsing.decrementAndGet() == 0) {
+                dropPreloads();
+            }
+        }
+    }
+
+    /**
+     * Drop the configs loaded ahead but never parsed, such as the imports
+     * behind a failed config or imports parsed through another path.
+     */
+    private void dropPreloads() {
+        for (Resource resource : new ArrayList<>(loading.keySet())) {
+            CompletableFuture<NodeWrapper> future = loading.remove(resource);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The configs loading ahead and not parsed yet.
+     */
+    Set<Resource> getPreloading() {
+        return loading.keySet();
+    }
+
+    /**
+     * Start loading the resource and, once loaded, its imports on the
+     * config executor of the context. {@link #parse(Object)} still
+     * registers the builders in declaration order, it only waits for the
+     * configs not loaded yet.
+     */
+    public void preload(Resource resource) {
+        Executor executor = this.context.getConfigExecutor();
+        if (executor == null || parsed.contains(resource)) {
+            return;
+        }
+        CompletableFuture<NodeWrapper> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(resource, future) != null) {
+            return;
+        }
+        ClassLoader classLoader =
+                Thread.currentThread().getContextClassLoader();
+        try {
+            executor.execute(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader outer = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    NodeWrapper cfg = loader.load(resource);
+                    // Dropped configs don't load their imports.
+                    if (future.complete(cfg)) {
+                        preloadImports(cfg);
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    thread.setContextClassLoader(outer);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loading.remove(resource, future);
+        }
+    }
+
+    private void preloadImports(NodeWrapper cfg) {
+        for (Node child : cfg.getNode().getChilds()) {
+            if (!Constant.DOC_IMPORT.equals(child.getName())
+                    || Constant.TRUE_VALUE.equals(child.attrString(ATTR_LAZY))) {
+                continue;
+            }
+            try {
+                for (Resource resource : resolveImport(child,
+                        cfg.getResource())) {
+                    preload(resource);
+                }
+            } catch (RuntimeException e) {
+                // Reported when the import is parsed.
+            }
+        }
+    }
+
+    private NodeWrapper load(Resource resource) {
+        CompletableFuture<NodeWrapper> future = loading.remove(resource);
+        if (future == null || future.isCancelled()) {
+            NodeWrapper cfg = loader.load(resource);
+            preloadImports(cfg);
+            return cfg;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-        } else if (resource instanceof Node) {
-            parseNode((Node) resource, null);
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SimpleParseException("Load " + resource + " failed",
+                    cause);
         }
     }
 
@@ -106,25 +273,40 @@ public class SimpleParser implements Parser<Object> {
                 parseBuilderNode(child);
                 break;
             case Constant.DOC_ALIAS:
+                this.context.getRegistry().addStructure(child);
                 processAliasNode(child);
                 break;
             case Constant.DOC_IMPORT:
+                this.context.getRegistry().addStructure(child);
                 importBeanDefinitionResource(child, resource);
                 break;
             default:
+                this.context.getRegistry().addStructure(child);
                 parseCustomNode(child);
                 break;
             }
         }
     }
 
+    /**
+     * @return null if the conditions of the builder fail
+     */
     protected Builder<?> parseBuilderNode(Node cfg) {
         String className = cfg.attrString(Constant.ATTR_CLASS).trim();
+        BuilderCondition condition = BuilderCondition.from(cfg);
+        if (condition != null && !condition.matches(this.context)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Skipped builder of " + className + " for "
+                        + condition);
+            }
+            return null;
+        }
         Builder<?> builder = createBeanBuilder(cfg, className);
         generateBuilderName(cfg, builder, className);
         parseBuilderAttributes(cfg, builder);
         parseBuilderChilds(cfg, builder);
         this.context.addBuilder(builder.getBuilderName(), builder);
+        this.context.addDefinition(builder.getBuilderName(), cfg);
         return builder;
     }
 
@@ -237,18 +419,17 @@ public class SimpleParser implements Parser<Object> {
         }
         String parameterTypeStr = cfg.attrString(Constant.ATTR_BUILD_PARAMETER_TYPES);
         if (StringHelper.isNotEmpty(parameterTypeStr)) {
-            Class<?>[] parameterTypes = parseParameterTypes(parameterTypeStr);
-            builder.setBuildParameterTypes(parameterTypes);
+            builder.setBuildParameterTypeNames(
+                    parseParameterTypeNames(parameterTypeStr));
         }
-        builder.setBuilderClass(ClassHelper.forName(className));
+        // The classes are loaded when the builder is first used.
         builder.setClassName(className);
         return builder;
     }
 
-    protected Class<?>[] parseParameterTypes(String parameterTypeStr) {
-        String[] typeStrs = StringHelper.splitByDelimiter(parameterTypeStr,
+    protected String[] parseParameterTypeNames(String parameterTypeStr) {
+        return StringHelper.splitByDelimiter(parameterTypeStr,
                 StringHelper.COMMA);
-        return ClassHelper.forName(typeStrs);
     }
 
     protected void parseBuildParameterNode(Node cfg, Builder<?> bd) {
@@ -412,11 +593,139 @@ public class SimpleParser implements Parser<Object> {
     }
 
     protected void importBeanDefinitionResource(Node node, Resource resource) {
-        String path = node.attrString(Constant.ATTR_RESOURCE);
-        if (!StringHelper.hasText(path)) {
+        Set<Resource> resources = resolveImport(node, resource);
+        if (Constant.TRUE_VALUE.equals(node.attrString(ATTR_LAZY))) {
+            for (Resource r : resources) {
+                importLazily(r);
+            }
             return;
         }
+        for (Resource r : resources) {
+            preload(r);
+        }
+        for (Resource r : resources) {
+            parse(r);
+        }
+    }
+
+    /**
+     * Register the resource as a lazy import without reading it, it is parsed
+     * once one of its builders is asked for.
+     */
+    protected void importLazily(Resource resource) {
+        if (parsed.contains(resource) || !lazyImported.add(resource)) {
+            return;
+        }
+        this.context.getRegistry().addLazyImport(
+                new LazyImport(resource, this::collectManifest));
+    }
+
+    /**
+     * Parse a lazy import. The resources parsed meanwhile are forgotten if
+     * it fails, so parsing it can be retried.
+     */
+    public void parseLazily(LazyImport lazyImport) {
+        Set<Resource> parsedBefore;
+        Set<Resource> lazyImportedBefore;
+        synchronized (parsed) {
+            parsedBefore = new HashSet<>(parsed);
+        }
+        synchronized (lazyImported) {
+            lazyImportedBefore = new HashSet<>(lazyImported);
+        }
+        try {
+            parse(lazyImport.getResource());
+        } catch (RuntimeException | Error e) {
+            parsed.retainAll(parsedBefore);
+            lazyImported.retainAll(lazyImportedBefore);
+            throw e;
+        }
+    }
+
+    /**
+     * Add the builder names, aliases and classes of the lazy import and the
+     * resources it imports. The configs read here are kept by the config
+     * cache of the context, if any, for parsing the import.
+     */
+    private void collectManifest(LazyImport lazyImport) {
+        try {
+            collectManifest(lazyImport, lazyImport.getResource(),
+                    new HashSet<>());
+        } catch (RuntimeException e) {
+            log.warn("Couldn't read the builders of " + lazyImport, e);
+        }
+    }
+
+    private void collectManifest(LazyImport lazyImport, Resource resource,
+            Set<Resource> visited) {
+        if (!visited.add(resource)) {
+            return;
+        }
+        NodeWrapper cfg = load(resource);
+        Map<String, String> attributes = this.context.getAttributes();
+        for (Node child : cfg.getNode().getChilds()) {
+            switch (child.getName()) {
+            case Constant.DOC_BUILDER:
+                String className = child.attrString(Constant.ATTR_CLASS).trim();
+                lazyImport.addClassName(className);
+                String name = child.attrString(Constant.ATTR_NAME);
+                String aliases = child.attrString(Constant.ATTR_ALIAS);
+                if (!StringHelper.hasText(name) && !StringHelper.hasText(aliases)) {
+                    name = BuilderNameHelper.generateBuilderName(className);
+                }
+                addManifestNames(lazyImport, name, attributes);
+                addManifestNames(lazyImport, aliases, attributes);
+                break;
+            case Constant.DOC_ALIAS:
+                addManifestNames(lazyImport,
+                        child.attrString(Constant.ATTR_ALIAS), attributes);
+                break;
+            case Constant.DOC_IMPORT:
+                for (Resource r : resolveImport(child, cfg.getResource())) {
+                    collectManifest(lazyImport, r, visited);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private void addManifestNames(LazyImport lazyImport, String names,
+            Map<String, String> attributes) {
+        if (!StringHelper.hasText(names)) {
+            return;
+        }
+        for (String name : StringHelper.splitByDelimiters(names,
+                Constant.MULTI_VALUE_ATTRIBUTE_DELIMITERS)) {
+            if (StringHelper.hasText(name)) {
+                lazyImport.addName(context.getPlaceholderTemplates()
+                        .resolve(name, attributes));
+            }
+        }
+    }
+
+    /**
+     * The resources an import node refers to.
+     */
+    protected Set<Resource> resolveImport(Node node, Resource resource) {
+        Set<Resource> resources = imports.get(node);
+        if (resources == null) {
+            resources = resolveImportPath(node, resource);
+            Set<Resource> previous = imports.putIfAbsent(node, resources);
+            if (previous != null) {
+                resources = previous;
+            }
+        }
+        return resources;
+    }
+
+    private Set<Resource> resolveImportPath(Node node, Resource resource) {
+        String path = node.attrString(Constant.ATTR_RESOURCE);
         Set<Resource> resources = new HashSet<>();
+        if (!StringHelper.hasText(path)) {
+            return resources;
+        }
         if (path.startsWith(PathHelper.CURRENT_PATH)) {
             if (resource == null) {
                 throw new SimpleParseException(
@@ -428,9 +737,7 @@ public class SimpleParser implements Parser<Object> {
                 && !addAbsoluteResource(path, resources)) {
             resources.addAll(ResourceHelper.resources(path));
         }
-        for (Resource r : resources) {
-            parse(r);
-        }
+        return resources;
     }
 
     protected boolean addUrlResource(String path, Set<Resource> resources) {
@@ -459,8 +766,26 @@ public class SimpleParser implements Parser<Object> {
         this.handlerManager.parse(cfg);
     }
 
+    /**
+     * The resources parsed so far, including the imported ones and the lazy
+     * imports not parsed yet.
+     */
+    public Set<Resource> getParsed() {
+        Set<Resource> resources;
+        synchronized (parsed) {
+            resources = new HashSet<>(parsed);
+        }
+        synchronized (lazyImported) {
+            resources.addAll(lazyImported);
+        }
+        return resources;
+    }
+
     public void clear() {
         this.parsed.clear();
         this.usedNames.clear();
+        this.loading.clear();
+        this.imports.clear();
+        this.lazyImported.clear();
     }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.watcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.RefreshReport;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.exception.SimpleParseException;
+
+/**
+ * Watch the config files of a {@link SimpleContext} and reload the changed
+ * ones by {@link SimpleContext#refreshIncrementally(Collection)}.
+ * <p>
+ * Changes are collected until no further change arrives within the debounce
+ * time, so saving several files at once causes only one reload. Resources
+ * which are not plain files (e.g. inside a jar) are not watched.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private static final Log log = LogFactory.getLog(ConfigWatcher.class);
+
+    private final SimpleContext context;
+
+    private final long debounceMillis;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    /**
+     * Watched files and the resources they back.
+     */
+    private volatile Map<Path, Set<Resource>> files = new HashMap<>();
+
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+
+    private volatile boolean closed;
+
+    public ConfigWatcher(SimpleContext context, long debounceMillis) {
+        this.context = context;
+        this.debounceMillis = debounceMillis;
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new SimpleParseException("Couldn't watch configs", e);
+        }
+        this.thread = new Thread(this::run, "simple-config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Watch exactly the files of {@code resources} from now on.
+     */
+    public synchronized void watch(Collection<Resource> resources) {
+        if (closed) {
+            return;
+        }
+        Map<Path, Set<Resource>> files = new HashMap<>();
+        for (Resource resource : resources) {
+            Path file = toPath(resource);
+            if (file != null) {
+                files.computeIfAbsent(file, k -> new HashSet<>()).add(resource);
+            }
+        }
+        Set<Path> dirs = new HashSet<>();
+        for (Path file : files.keySet()) {
+            Path dir = file.getParent();
+            if (dir != null && dirs.add(dir) && !directories.containsKey(dir)) {
+                try {
+                    directories.put(dir, dir.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE));
+                } catch (IOException e) {
+                    log.warn("Couldn't watch config directory " + dir, e);
+                }
+            }
+        }
+        directories.entrySet().removeIf(entry -> {
+            if (dirs.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().cancel();
+            return true;
+        });
+        this.files = files;
+    }
+
+    public Set<Path> getWatchedFiles() {
+        return files.keySet();
+    }
+
+    protected Path toPath(Resource resource) {
+        String path = resource.getPath();
+        if (path == null) {
+            return null;
+        }
+        try {
+            File file = new File(path);
+            if (file.isFile()) {
+                return file.toPath().toAbsolutePath().normalize();
+            }
+            URL url = new URL(path);
+            if ("file".equals(url.getProtocol())) {
+                return Paths.get(url.toURI()).toAbsolutePath().normalize();
+            }
+        } catch (Exception e) {
+            log.debug("Skip watching config " + path, e);
+        }
+        return null;
+    }
+
+    private void run() {
+        Set<Path> changed = new HashSet<>();
+        while (!closed) {
+            WatchKey key;
+            try {
+                if (changed.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    key = watchService.poll(debounceMillis,
+                            TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            if (key == null) {
+                if (reload(changed)) {
+                    changed.clear();
+                }
+                continue;
+            }
+            Path dir = (Path) key.watchable();
+            Map<Path, Set<Resource>> files = this.files;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    changed.addAll(files.keySet());
+                    continue;
+                }
+                Path file = dir.resolve((Path) event.context());
+                if (files.containsKey(file)) {
+                    changed.add(file);
+                }
+            }
+            key.reset();
+        }
+    }
+
+    /**
+     * @return false if the reload has to be retried
+     */
+    protected boolean reload(Set<Path> changed) {
+        List<Resource> resources = new ArrayList<>();
+        Map<Path, Set<Resource>> files = this.files;
+        for (Path file : changed) {
+            Set<Resource> fileResources = files.get(file);
+            if (fileResources != null) {
+                resources.addAll(fileResources);
+            }
+        }
+        if (resources.isEmpty()) {
+            return true;
+        }
+        try {
+            RefreshReport report = context.refreshIncrementally(resources);
+            if (report == null) {
+                // Another refresh is running, try again later.
+                return false;
+            }
+            if (log.isInfoEnabled()) {
+                log.info("Reloaded changed configs " + changed + ": " + report);
+            }
+        } catch (RuntimeException e) {
+            log.error("Reload changed configs " + changed + " failed", e);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("Close config watcher failed", e);
+        }
+        thread.interrupt();
+    }
+
+}
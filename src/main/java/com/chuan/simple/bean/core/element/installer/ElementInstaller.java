@@ -60,7 +60,7 @@ public abstract class ElementInstaller<B extends Builder<?>, T extends Element>
             value = parseValue(owner, value);
         }
         if (value!=null) {
-            owner.privates.getParsedElements().add(element);
+            owner.privates.addParsedElement(element);
             element.setParsedValue(value);
             return;
         }
@@ -84,7 +84,7 @@ public abstract class ElementInstaller<B extends Builder<?>, T extends Element>
             throw new SimpleBuildException(
                     "Install required element " + element + " failed");
         }
-        owner.privates.getParsedElements().add(element);
+        owner.privates.addParsedElement(element);
         element.setParsedValue(value);
     }
 
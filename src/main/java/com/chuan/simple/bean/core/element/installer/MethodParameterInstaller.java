@@ -31,6 +31,7 @@ import com.chuan.simple.helper.method.ParameterHelper;
 import com.chuan.simple.bean.core.build.builder.ConstructorBuilder;
 import com.chuan.simple.bean.core.element.entity.Element;
 import com.chuan.simple.bean.core.element.entity.MethodParameterElement;
+import com.chuan.simple.bean.core.info.ExecutableInfoCache;
 
 public class MethodParameterInstaller extends
         ParameterInstaller<ConstructorBuilder<?>, MethodParameterElement> {
@@ -123,11 +124,16 @@ public class MethodParameterInstaller extends
                     (List<Object>) parseValue(builder, params);
             Class<?>[] currentParamTypes =
                     ParameterHelper.getParameterTypes(paramValues.toArray());
+            ExecutableInfoCache executableInfos =
+                    builder.getContext().getExecutableInfos();
+            Class<?>[] methodParamTypes = null;
             for (Executable m : currentMethods) {
                 if (m.getParameterCount() >= paramValues.size()) {
+                    Class<?>[] mParamTypes =
+                            executableInfos.get(m).getParameterTypes();
                     Class<?>[] correspondingParamTypes =
                             new Class<?>[paramValues.size()];
-                    System.arraycopy(m.getParameterTypes(), 0,
+                    System.arraycopy(mParamTypes, 0,
                             correspondingParamTypes, 0, paramValues.size());
                     if (ParameterHelper.paramsFit(currentParamTypes,
                             correspondingParamTypes)) {
@@ -137,14 +143,14 @@ public class MethodParameterInstaller extends
                                 || (m.getParameterCount() == method
                                         .getParameterCount()
                                         && !ParameterHelper.paramsEqual(
-                                                m.getParameterTypes(),
-                                                method.getParameterTypes())
+                                                mParamTypes, methodParamTypes)
                                         && ParameterHelper.paramsFit(
-                                                m.getParameterTypes(),
-                                                method.getParameterTypes()))) {
+                                                mParamTypes,
+                                                methodParamTypes))) {
                             // Use the method whose parameter count and 
                         	// parameter types nearer the parameter values.
                             method = m;
+                            methodParamTypes = mParamTypes;
                         }
                     }
                 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the descriptors of the class annotations straight from the bytes of
+ * a class file. Only the constant pool is decoded, the fields and methods
+ * are skipped by their lengths, so rejecting a class costs far less than
+ * visiting it.
+ */
+public final class ClassFilePrefilter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final String VISIBLE_ANNOTATIONS =
+            "RuntimeVisibleAnnotations";
+
+    private static final String INVISIBLE_ANNOTATIONS =
+            "RuntimeInvisibleAnnotations";
+
+    private final byte[] bytes;
+
+    private int position;
+
+    /**
+     * Offsets of the constant pool entries.
+     */
+    private int[] entries;
+
+    private ClassFilePrefilter(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * The descriptors of the annotations on the class, e.g.
+     * 'Lcom/chuan/simple/bean/annotation/Component;'.
+     * @return null if the bytes are no class file this filter understands
+     */
+    public static List<String> getClassAnnotations(byte[] bytes) {
+        try {
+            return new ClassFilePrefilter(bytes).readClassAnnotations();
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private List<String> readClassAnnotations() {
+        if (readInt() != MAGIC) {
+            return null;
+        }
+        position += 4;
+        readConstantPool();
+        // access flags, this class, super class
+        position += 6;
+        int interfaces = readShort();
+        position += 2 * interfaces;
+        skipMembers();
+        skipMembers();
+        List<String> annotations = new ArrayList<>();
+        int attributes = readShort();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8(readShort());
+            int length = readInt();
+            int end = position + length;
+            if (VISIBLE_ANNOTATIONS.equals(name)
+                    || INVISIBLE_ANNOTATIONS.equals(name)) {
+                int count = readShort();
+                for (int j = 0; j < count; j++) {
+                    annotations.add(utf8(readShort()));
+                    skipAnnotationValues();
+                }
+            }
+            position = end;
+        }
+        return annotations;
+    }
+
+    private void readConstantPool() {
+        int count = readShort();
+        entries = new int[count];
+        for (int i = 1; i < count; i++) {
+            entries[i] = position;
+            int tag = bytes[position++];
+            switch (tag) {
+            case 1:
+                int length = readShort();
+                position += length;
+                break;
+            case 5:
+            case 6:
+                position += 8;
+                i++;
+                break;
+            case 3:
+            case 4:
+            case 9:
+            case 10:
+            case 11:
+            case 12:
+            case 17:
+            case 18:
+                position += 4;
+                break;
+            case 15:
+                position += 3;
+                break;
+            case 7:
+            case 8:
+            case 16:
+            case 19:
+            case 20:
+                position += 2;
+                break;
+            default:
+                throw new IndexOutOfBoundsException(
+                        "Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void skipMembers() {
+        int count = readShort();
+        for (int i = 0; i < count; i++) {
+            // access flags, name, descriptor
+            position += 6;
+            int attributes = readShort();
+            for (int j = 0; j < attributes; j++) {
+                position += 2;
+                int length = readInt();
+                position += length;
+            }
+        }
+    }
+
+    private void skipAnnotationValues() {
+        int pairs = readShort();
+        for (int i = 0; i < pairs; i++) {
+            position += 2;
+            skipElementValue();
+        }
+    }
+
+    private void skipElementValue() {
+        int tag = bytes[position++];
+        switch (tag) {
+        case 'e':
+            position += 4;
+            break;
+        case '@':
+            position += 2;
+            skipAnnotationValues();
+            break;
+        case '[':
+            int count = readShort();
+            for (int i = 0; i < count; i++) {
+                skipElementValue();
+            }
+            break;
+        default:
+            position += 2;
+            break;
+        }
+    }
+
+    private String utf8(int index) {
+        int offset = entries[index];
+        int length = ((bytes[offset + 1] & 0xFF) << 8)
+                | (bytes[offset + 2] & 0xFF);
+        return new String(bytes, offset + 3, length, StandardCharsets.UTF_8);
+    }
+
+    private int readShort() {
+        int value = ((bytes[position] & 0xFF) << 8)
+                | (bytes[position + 1] & 0xFF);
+        position += 2;
+        return value;
+    }
+
+    private int readInt() {
+        int value = ((bytes[position] & 0xFF) << 24)
+                | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8)
+                | (bytes[position + 3] & 0xFF);
+        position += 4;
+        return value;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.bean.exception.SimpleParseException;
+
+/**
+ * Find the class files matching a {@link PathPattern} in the folders and
+ * jars of a class loader.
+ * <p>
+ * Jars are searched by the entries of their central directory and the
+ * classes are read straight from the jar. The jars opened by a scan are
+ * kept until the scanner is closed. Like
+ * {@link ClassLoader#getResources(String)}, a pattern without a package
+ * folder finds the class folders only.
+ */
+public class ClassPathScanner implements Closeable {
+
+    private static final Log log = LogFactory.getLog(ClassPathScanner.class);
+
+    private final ClassLoader classLoader;
+
+    private final Map<String, JarFile> jarFiles = new HashMap<>();
+
+    public ClassPathScanner(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * The matching class files in class path order, a class found in
+     * several roots is taken from the first one.
+     */
+    public List<ClassResource> scan(String pathPattern) {
+        return scan(pathPattern, Collections.emptySet());
+    }
+
+    /**
+     * Like {@link #scan(String)}, but the class path roots in
+     * {@code skippedRoots} are not searched, see {@link #rootOf(URL, String)}.
+     */
+    public List<ClassResource> scan(String pathPattern,
+            Set<String> skippedRoots) {
+        PathPattern pattern = new PathPattern(pathPattern);
+        String root = pattern.getRoot();
+        Map<String, ClassResource> resources = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(root);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if (skippedRoots.contains(rootOf(url, root))) {
+                    continue;
+                }
+                if ("file".equals(url.getProtocol())) {
+                    scanFolder(url, root, pattern, resources);
+                } else {
+                    scanJar(url, root, pattern, resources);
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new SimpleParseException(
+                    "Scan class path '" + pathPattern + "' failed", e);
+        }
+        return new ArrayList<>(resources.values());
+    }
+
+    /**
+     * The class path root, i.e. the folder or the jar, the resource
+     * {@code path} is found in by {@code url}, e.g. 'file:/app/classes/' or
+     * 'jar:file:/app/lib/a.jar!/'.
+     */
+    public static String rootOf(URL url, String path) {
+        String root = url.toString();
+        if (root.endsWith(path)) {
+            root = root.substring(0, root.length() - path.length());
+        }
+        return root;
+    }
+
+    private void scanFolder(URL url, String root, PathPattern pattern,
+            Map<String, ClassResource> resources)
+            throws IOException, URISyntaxException {
+        Path folder = Paths.get(url.toURI());
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String path = root + folder.relativize(file).toString()
+                        .replace(File.separatorChar, '/');
+                if (pattern.matches(path)) {
+                    resources.putIfAbsent(path,
+                            new ClassResource(path, file.toFile(), null, null));
+                }
+            });
+        }
+    }
+
+    private void scanJar(URL url, String root, PathPattern pattern,
+            Map<String, ClassResource> resources) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            log.debug("Skip scanning unsupported class path " + url);
+            return;
+        }
+        JarURLConnection jarConnection = (JarURLConnection) connection;
+        jarConnection.setUseCaches(false);
+        String prefix = jarConnection.getEntryName();
+        if (prefix == null) {
+            prefix = "";
+        } else if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        JarFile jarFile = jarFiles.get(jarConnection.getJarFileURL().toString());
+        if (jarFile == null) {
+            jarFile = jarConnection.getJarFile();
+            jarFiles.put(jarConnection.getJarFileURL().toString(), jarFile);
+        }
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory() || !name.startsWith(prefix)) {
+                continue;
+            }
+            String path = root + name.substring(prefix.length());
+            if (pattern.matches(path)) {
+                resources.putIfAbsent(path,
+                        new ClassResource(path, null, jarFile, entry));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (JarFile jarFile : jarFiles.values()) {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                log.debug("Close jar " + jarFile.getName() + " failed", e);
+            }
+        }
+        jarFiles.clear();
+    }
+
+    /**
+     * A class file in a folder or a jar.
+     */
+    public static class ClassResource {
+
+        private final String path;
+
+        private final File file;
+
+        private final JarFile jarFile;
+
+        private final JarEntry entry;
+
+        private ClassResource(String path, File file, JarFile jarFile,
+                JarEntry entry) {
+            this.path = path;
+            this.file = file;
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+
+        /**
+         * The path relative to the class path root, e.g.
+         * 'com/chuan/Foo.class'.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return file != null ? file.length() : entry.getSize();
+        }
+
+        /**
+         * The modification time of a file or the CRC of a jar entry, which
+         * both change with the content.
+         */
+        public long getStamp() {
+            return file != null ? file.lastModified() : entry.getCrc();
+        }
+
+        public InputStream open() throws IOException {
+            if (file != null) {
+                return new FileInputStream(file);
+            }
+            return jarFile.getInputStream(entry);
+        }
+
+        @Override
+        public String toString() {
+            return file != null ? file.toString()
+                    : jarFile.getName() + "!/" + entry.getName();
+        }
+
+    }
+
+}
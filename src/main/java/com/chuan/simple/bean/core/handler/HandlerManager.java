@@ -15,6 +15,7 @@
  */
 package com.chuan.simple.bean.core.handler;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -58,7 +59,12 @@ public class HandlerManager {
     private final Map<String, Handler> handlers =
             new ConcurrentHashMap<String, Handler>();
 
-    private void init(SimpleContext context) {
+    /**
+     * Read the handler classes of META-INF/simple.handlers by their config
+     * node names, once per context.
+     */
+    public static Map<String, Class<?>> loadHandlerClasses() {
+        Map<String, Class<?>> handlerClasses = new HashMap<>();
         Properties props = ResourceHelper.loadProperties(handlerConfigLocation);
         for (Entry<Object, Object> entry : props.entrySet()) {
             String key = StringHelper.toString(entry.getKey());
@@ -67,9 +73,7 @@ public class HandlerManager {
                 Class<?> handlerClass = ClassHelper.forName(value);
                 if (handlerClass != null
                         && Handler.class.isAssignableFrom(handlerClass)) {
-                    Handler handler = (Handler) handlerClass.newInstance();
-                    handler.setContext(context);
-                    handlers.put(key, handler);
+                    handlerClasses.put(key, handlerClass);
                 } else {
                     log.error("Skip simple handler " + entry + " as the value "
                             + value
@@ -80,11 +84,25 @@ public class HandlerManager {
                         "Key '" + key + "' of simple.handlers parsed error", e);
             }
         }
-
+        return handlerClasses;
     }
 
+    /**
+     * Create the handlers of a registry generation, they register their
+     * processors into the registry they parse into.
+     */
     public HandlerManager(SimpleContext context) {
-        init(context);
+        for (Entry<String, Class<?>> entry : context.getHandlerClasses()
+                .entrySet()) {
+            try {
+                Handler handler = (Handler) entry.getValue().newInstance();
+                handler.setContext(context);
+                handlers.put(entry.getKey(), handler);
+            } catch (Exception e) {
+                throw new SimpleParseException("Key '" + entry.getKey()
+                        + "' of simple.handlers parsed error", e);
+            }
+        }
     }
 
     public void parse(Node cfg) {
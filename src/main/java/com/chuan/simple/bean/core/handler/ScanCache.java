@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.chuan.simple.bean.core.handler.ClassPathScanner.ClassResource;
+import com.chuan.simple.bean.index.ComponentIndex.IndexedComponent;
+
+/**
+ * A file keeping what the scans found out about each class file, so
+ * unchanged class files are not read again on the next start.
+ * <p>
+ * The entries are keyed by the location of the class file and valid while
+ * its size and modification time (or the CRC of a jar entry) are unchanged.
+ * The file is memory mapped for reading and replaced atomically on
+ * {@link #save()}, which keeps the entries used since this cache was
+ * loaded.
+ */
+public class ScanCache {
+
+    private static final Log log = LogFactory.getLog(ScanCache.class);
+
+    private static final int MAGIC = 0x53534331;
+
+    private static final int VERSION = 1;
+
+    private final Path path;
+
+    private final Map<String, Entry> loaded;
+
+    private final Map<String, Entry> used = new ConcurrentHashMap<>();
+
+    private volatile boolean changed;
+
+    public ScanCache(Path path) {
+        this.path = path;
+        this.loaded = load(path);
+    }
+
+    /**
+     * The cached result of the class file.
+     * @return null if the class file is not cached or changed, an entry
+     *         whose {@link Entry#getComponent()} is null if the class is no
+     *         component
+     */
+    public Entry get(ClassResource resource) {
+        String key = resource.toString();
+        Entry entry = loaded.get(key);
+        if (entry == null || entry.size != resource.getSize()
+                || entry.stamp != resource.getStamp()) {
+            return null;
+        }
+        used.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * @param component
+     *            null if the class is no component
+     */
+    public void put(ClassResource resource, IndexedComponent component) {
+        used.put(resource.toString(), new Entry(resource.getSize(),
+                resource.getStamp(), component));
+        changed = true;
+    }
+
+    /**
+     * Write the used entries if any of them changed.
+     */
+    public synchronized void save() {
+        if (!changed && used.size() == loaded.size()) {
+            return;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = Files.createTempFile(parent,
+                    path.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(temp))) {
+                write(new DataOutputStream(out), new HashMap<>(used));
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            changed = false;
+        } catch (IOException e) {
+            log.warn("Couldn't save scan cache " + path, e);
+        }
+    }
+
+    private static void write(DataOutputStream out, Map<String, Entry> entries)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            writeString(out, e.getKey());
+            out.writeLong(entry.size);
+            out.writeLong(entry.stamp);
+            IndexedComponent component = entry.component;
+            out.writeBoolean(component != null);
+            if (component == null) {
+                continue;
+            }
+            writeString(out, component.getClassName());
+            writeString(out, component.getBuilderName());
+            out.writeInt(component.getAnnotationNames().size());
+            for (String annotationName : component.getAnnotationNames()) {
+                writeString(out, annotationName);
+            }
+            out.writeInt(component.getBeanMethods().size());
+            for (String[] method : component.getBeanMethods()) {
+                writeString(out, method[0]);
+                writeString(out, method[1]);
+            }
+        }
+    }
+
+    private static Map<String, Entry> load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return Collections.emptyMap();
+        }
+        try (FileChannel channel =
+                FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.info("Ignore scan cache " + path + " of another version");
+                return Collections.emptyMap();
+            }
+            int count = buffer.getInt();
+            Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String key = readString(buffer);
+                long size = buffer.getLong();
+                long stamp = buffer.getLong();
+                IndexedComponent component = null;
+                if (buffer.get() != 0) {
+                    component = new IndexedComponent(readString(buffer),
+                            readString(buffer));
+                    int annotations = buffer.getInt();
+                    for (int j = 0; j < annotations; j++) {
+                        component.addAnnotationName(readString(buffer));
+                    }
+                    int methods = buffer.getInt();
+                    for (int j = 0; j < methods; j++) {
+                        component.addBeanMethod(readString(buffer),
+                                readString(buffer));
+                    }
+                }
+                entries.put(key, new Entry(size, stamp, component));
+            }
+            return entries;
+        } catch (IOException | BufferUnderflowException e) {
+            log.warn("Ignore broken scan cache " + path, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Strings are written as length and UTF-8 bytes, -1 for null.
+     */
+    private static void writeString(DataOutputStream out, String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static class Entry {
+
+        private final long size;
+
+        private final long stamp;
+
+        private final IndexedComponent component;
+
+        private Entry(long size, long stamp, IndexedComponent component) {
+            this.size = size;
+            this.stamp = stamp;
+            this.component = component;
+        }
+
+        public IndexedComponent getComponent() {
+            return component;
+        }
+
+    }
+
+}
@@ -15,47 +15,83 @@
  */
 package com.chuan.simple.bean.core.handler;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.lang.annotation.Annotation;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
 
-import com.chuan.simple.helper.annotation.AnnotationAttribute;
-import com.chuan.simple.helper.annotation.AnnotationAttributeHelper;
 import com.chuan.simple.helper.clazz.BuilderNameHelper;
 import com.chuan.simple.helper.clazz.ClassHelper;
 import com.chuan.simple.helper.common.PatternHelper;
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.resource.PathHelper;
 import com.chuan.simple.helper.resource.ResourceHelper;
+import com.chuan.simple.annotation.SameAs;
+import com.chuan.simple.bean.annotation.Bean;
 import com.chuan.simple.bean.annotation.Component;
+import com.chuan.simple.bean.annotation.Conditional;
+import com.chuan.simple.bean.core.BuilderCondition;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
 import com.chuan.simple.bean.core.build.builder.ConstructorBuilder;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
 import com.chuan.simple.bean.core.config.node.Node;
+import com.chuan.simple.bean.core.handler.ClassPathScanner.ClassResource;
 import com.chuan.simple.bean.core.info.AnnotationInfo;
 import com.chuan.simple.bean.core.info.ClassInfo;
+import com.chuan.simple.bean.core.info.ClassInfoCache;
+import com.chuan.simple.bean.core.info.MethodInfo;
 import com.chuan.simple.bean.core.processor.AutowiredProcessor;
 import com.chuan.simple.bean.core.processor.ConfigurationProcessor;
 import com.chuan.simple.bean.core.processor.ScanProcessor;
 import com.chuan.simple.bean.exception.SimpleParseException;
+import com.chuan.simple.bean.index.ComponentIndex;
+import com.chuan.simple.bean.index.ComponentIndex.IndexedComponent;
 import com.chuan.simple.constant.Constant;
 
 /**
  * Handler to deal with {@link Node} 'scan'.
  * <p>
  * The function of {@link Node} 'scan' is scanning and parsing the the class
- * with right annotation automatically.
+ * with right annotation automatically. The classes listed in the
+ * {@link ComponentIndex} are taken instead of reading the class files of
+ * the class path roots with an index, the other roots are scanned.
  */
 public class ScanHandler implements Handler {
 
+    private static final Log log = LogFactory.getLog(ScanHandler.class);
+
+    private static final String ATTR_INDEX = "index";
+
+    private static final String ATTR_CACHE = "cache";
+
+    /**
+     * Scans with fewer classes are not worth starting threads.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The classes read by one task of a parallel scan.
+     */
+    private static final int CHUNK_SIZE = 32;
+
     private SimpleContext context;
 
     private ConfigurationProcessor configurationProcessor;
@@ -64,6 +100,8 @@ public class ScanHandler implements Handler {
 
     private ScanProcessor scanProcessor;
 
+    private volatile Optional<ComponentIndex> componentIndex;
+
     public ScanHandler() {
     }
 
@@ -79,50 +117,352 @@ public class ScanHandler implements Handler {
         String basePackage = getBasePackage(element);
         String packageSearchPath = basePackage + PathHelper.FOLDER_SEPARATOR
                 + ResourceHelper.DEFAULT_CLASS_RESOURCE_PATTERN;
-        Set<File> resources = ResourceHelper.matchResources(packageSearchPath);
+        List<ScannedClass> scanned = new ArrayList<>();
+        Set<String> indexedRoots = Collections.emptySet();
+        ComponentIndex index = getComponentIndex(element);
+        if (index != null) {
+            scanned.addAll(doScan(index, packageSearchPath));
+            indexedRoots = index.getRoots();
+        }
+        ScanCache cache = getScanCache(element);
+        try (ClassPathScanner scanner =
+                new ClassPathScanner(getClassLoader())) {
+            List<ClassResource> resources =
+                    scanner.scan(packageSearchPath, indexedRoots);
+            if (index != null) {
+                // Taken from the index of an earlier root.
+                resources.removeIf(
+                        resource -> index.contains(getClassName(resource)));
+            }
+            scanned.addAll(parallelMap(resources,
+                    resource -> scanClass(resource, cache)));
+            if (cache != null) {
+                cache.save();
+            }
+        }
+        return createBuilders(scanned);
+    }
+
+    /**
+     * Take the class from the cache if it is unchanged, runs on the
+     * scanning threads.
+     */
+    protected ScannedClass scanClass(ClassResource resource,
+            ScanCache cache) {
+        if (cache == null) {
+            return scanClass(resource);
+        }
+        ScanCache.Entry entry = cache.get(resource);
+        if (entry != null) {
+            IndexedComponent component = entry.getComponent();
+            return component == null ? null : scanIndexed(component);
+        }
+        ScannedClass scanned = scanClass(resource);
+        cache.put(resource,
+                scanned == null ? null : scanned.toIndexedComponent());
+        return scanned;
+    }
+
+    private static String getClassName(ClassResource resource) {
+        String path = resource.getPath();
+        return path.substring(0, path.lastIndexOf('.')).replace('/', '.');
+    }
+
+    /**
+     * Take the components from the compile time index instead of reading
+     * the class files.
+     */
+    protected List<ScannedClass> doScan(ComponentIndex index,
+            String packageSearchPath) {
+        return parallelMap(index.getComponents(packageSearchPath),
+                this::scanIndexed);
+    }
+
+    /**
+     * Read the class file, runs on the scanning threads.
+     * @return null if the class is no component
+     */
+    protected ScannedClass scanClass(ClassResource resource) {
+        try (InputStream inputStream = resource.open()) {
+            byte[] bytes = ClassFilePrefilter.readAll(inputStream);
+            List<String> annotations =
+                    ClassFilePrefilter.getClassAnnotations(bytes);
+            if (annotations != null && !isComponent(annotations)) {
+                return null;
+            }
+            ClassReader classReader = new ClassReader(bytes);
+            ClassInfo classInfo = new ClassInfo();
+            // Only the annotations are collected.
+            classReader.accept(classInfo, ClassReader.SKIP_CODE
+                    | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            if (!isComponent(classInfo)) {
+                return null;
+            }
+            return new ScannedClass(classInfo, getComponentName(classInfo),
+                    null);
+        } catch (Exception e) {
+            throw new SimpleParseException(
+                    "Scan file  '" + resource + "'  error", e);
+        }
+    }
+
+    /**
+     * Resolve the indexed component, runs on the scanning threads.
+     */
+    protected ScannedClass scanIndexed(IndexedComponent component) {
+        try {
+            Constructor<?> generatedBuilder = null;
+            if (component.getGeneratedBuilderName() != null) {
+                generatedBuilder = ClassHelper
+                        .forName(component.getGeneratedBuilderName())
+                        .getConstructor(SimpleContext.class);
+            }
+            return new ScannedClass(component.toClassInfo(),
+                    component.getBuilderName(), generatedBuilder);
+        } catch (Exception e) {
+            throw new SimpleParseException("Scan indexed component '"
+                    + component.getClassName() + "'  error", e);
+        }
+    }
+
+    /**
+     * Create and register the builders in the scanning order on the calling
+     * thread, so the names are assigned deterministically.
+     */
+    private List<Builder<?>> createBuilders(List<ScannedClass> scanned) {
         List<Builder<?>> builders = new ArrayList<>();
-        for (File file : resources) {
-            try (FileInputStream inputStream = new FileInputStream(file)) {
-                ClassReader classReader = new ClassReader(inputStream);
-                ClassInfo classInfo = new ClassInfo();
-                classReader.accept(classInfo, ClassReader.SKIP_DEBUG);
-                if (!isComponent(classInfo)) {
-                    continue;
-                }
-                ConstructorBuilder<?> builder =
-                        new ConstructorBuilder<>(context);
-                builder.setClassInfo(classInfo);
-                builder.setClassName(classInfo.getClassName());
-                Class<?> builderClass =
-                        ClassHelper.forName(classInfo.getClassName());
-                builder.setBuilderClass(builderClass);
-                Map<Class<? extends Annotation>, AnnotationAttribute> annotationAttributes =
-                        AnnotationAttributeHelper.from(builderClass);
-                AnnotationAttribute componentAttribute =
-                        annotationAttributes.get(Component.class);
-                String builderName = null;
-                if (componentAttribute != null) {
-                    builderName = (String) componentAttribute
-                            .getAttribute(Constant.ATTR_VALUE);
-                }
-                if (StringHelper.isEmpty(builderName)) {
-                    builderName =
-                            BuilderNameHelper.generateAnnotatedBuilderName(
-                                    builder.getBuilderClass());
-                    builderName = BuilderNameHelper.satisfiedName(builderName,
-                            context::checkAndUseName);
-                }
-                builder.setBuilderName(builderName);
-                builders.add(builder);
-                this.context.addBuilder(builderName, builder);
+        for (ScannedClass scannedClass : scanned) {
+            if (scannedClass == null
+                    || !matchesCondition(scannedClass.classInfo)) {
+                continue;
+            }
+            try {
+                builders.add(createBuilder(scannedClass));
             } catch (Exception e) {
-                throw new SimpleParseException(
-                        "Scan file  '" + file + "'  error", e);
+                throw new SimpleParseException("Create builder of '"
+                        + scannedClass.classInfo.getClassName() + "'  error",
+                        e);
             }
         }
         return builders;
     }
 
+    /**
+     * Evaluate {@link Conditional} before the builder is created, so the
+     * class of a skipped component is never loaded.
+     */
+    private boolean matchesCondition(ClassInfo classInfo) {
+        AnnotationInfo conditional = classInfo.getAnnotation(CONDITIONAL_NAME);
+        if (conditional == null) {
+            return true;
+        }
+        if (conditional.getAttributes().isEmpty()) {
+            // Indexed and cached components keep no annotation attributes.
+            ClassInfo classFile =
+                    getAnnotationTypes().get(classInfo.getClassName());
+            if (classFile != null) {
+                conditional = classFile.getAnnotation(CONDITIONAL_NAME);
+            }
+        }
+        BuilderCondition condition = BuilderCondition.from(conditional);
+        if (condition == null || condition.matches(context)) {
+            return true;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Skipped component " + classInfo.getClassName()
+                    + " for " + condition);
+        }
+        return false;
+    }
+
+    private Builder<?> createBuilder(ScannedClass scannedClass)
+            throws ReflectiveOperationException {
+        ConstructorBuilder<?> builder;
+        if (scannedClass.generatedBuilder != null) {
+            builder = (ConstructorBuilder<?>) scannedClass.generatedBuilder
+                    .newInstance(context);
+        } else {
+            builder = new ConstructorBuilder<>(context);
+            // The builder class is loaded on its first use.
+            builder.setClassName(scannedClass.classInfo.getClassName());
+        }
+        builder.setClassInfo(scannedClass.classInfo);
+        String builderName = scannedClass.builderName;
+        if (StringHelper.isEmpty(builderName)) {
+            builderName = generateComponentName(
+                    scannedClass.classInfo.getClassName());
+            builderName = BuilderNameHelper.satisfiedName(builderName,
+                    context::checkAndUseName);
+        }
+        builder.setBuilderName(builderName);
+        this.context.addBuilder(builderName, builder);
+        return builder;
+    }
+
+    /**
+     * The simple class name with a lower case first letter, unless the
+     * first two letters are upper case, e.g. 'userService' of
+     * 'com.chuan.UserService' and 'URLHandler' of 'com.chuan.URLHandler'.
+     * It is taken from the class name, so the class is not loaded.
+     */
+    static String generateComponentName(String className) {
+        String simpleName = className.substring(Math.max(
+                className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+        if (simpleName.isEmpty() || simpleName.length() > 1
+                && Character.isUpperCase(simpleName.charAt(1))
+                && Character.isUpperCase(simpleName.charAt(0))) {
+            return simpleName;
+        }
+        return Character.toLowerCase(simpleName.charAt(0))
+                + simpleName.substring(1);
+    }
+
+    /**
+     * Map the sources in chunks on the scan executor of the context and keep
+     * their order. Small scans are mapped on the calling thread.
+     */
+    private <S, R> List<R> parallelMap(List<S> sources,
+            Function<S, R> mapper) {
+        Executor executor = this.context.getScanExecutor();
+        if (executor == null || sources.size() < PARALLEL_THRESHOLD) {
+            return map(sources, mapper);
+        }
+        ClassLoader classLoader =
+                Thread.currentThread().getContextClassLoader();
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>();
+        for (int from = 0; from < sources.size(); from += CHUNK_SIZE) {
+            List<S> chunk = sources.subList(from,
+                    Math.min(from + CHUNK_SIZE, sources.size()));
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    Thread thread = Thread.currentThread();
+                    ClassLoader outer = thread.getContextClassLoader();
+                    thread.setContextClassLoader(classLoader);
+                    try {
+                        return map(chunk, mapper);
+                    } finally {
+                        thread.setContextClassLoader(outer);
+                    }
+                }, executor));
+            } catch (RejectedExecutionException e) {
+                futures.add(CompletableFuture
+                        .completedFuture(map(chunk, mapper)));
+            }
+        }
+        List<R> result = new ArrayList<>(sources.size());
+        try {
+            for (CompletableFuture<List<R>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            for (CompletableFuture<List<R>> future : futures) {
+                future.cancel(false);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SimpleParseException("Scan failed", e.getCause());
+        }
+        return result;
+    }
+
+    private static <S, R> List<R> map(List<S> sources,
+            Function<S, R> mapper) {
+        List<R> result = new ArrayList<>(sources.size());
+        for (S source : sources) {
+            result.add(mapper.apply(source));
+        }
+        return result;
+    }
+
+    /**
+     * What the scanning threads found out about a component.
+     */
+    protected static class ScannedClass {
+
+        private final ClassInfo classInfo;
+
+        private final String builderName;
+
+        /**
+         * The constructor of the {@link GeneratedBuilder}, null to build the
+         * component by reflection.
+         */
+        private final Constructor<?> generatedBuilder;
+
+        protected ScannedClass(ClassInfo classInfo, String builderName,
+                Constructor<?> generatedBuilder) {
+            this.classInfo = classInfo;
+            this.builderName = builderName;
+            this.generatedBuilder = generatedBuilder;
+        }
+
+        /**
+         * The summary of the class kept by {@link ScanCache}.
+         */
+        protected IndexedComponent toIndexedComponent() {
+            IndexedComponent component = new IndexedComponent(
+                    classInfo.getClassName(),
+                    StringHelper.isEmpty(builderName) ? null : builderName);
+            for (String annotationName : classInfo.getAnnotations()
+                    .keySet()) {
+                component.addAnnotationName(annotationName);
+            }
+            for (MethodInfo method : classInfo
+                    .getAnnotatedMethods(Bean.class.getName())) {
+                component.addBeanMethod(method.getMethodName(),
+                        method.getDescriptor());
+            }
+            return component;
+        }
+
+    }
+
+    /**
+     * The compile time index unless it is absent or disabled by 'index:false'.
+     */
+    private ComponentIndex getComponentIndex(Node element) {
+        if (Boolean.FALSE.toString()
+                .equals(element.attrString(ATTR_INDEX))) {
+            return null;
+        }
+        if (this.componentIndex == null) {
+            synchronized (this) {
+                if (this.componentIndex == null) {
+                    ComponentIndex index =
+                            ComponentIndex.load(getClassLoader());
+                    this.componentIndex =
+                            index == null ? Optional.empty() : Optional.of(index);
+                }
+            }
+        }
+        return this.componentIndex.orElse(null);
+    }
+
+    private final Map<String, ScanCache> scanCaches =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The cache given by the attribute 'cache', null if there is none.
+     */
+    private ScanCache getScanCache(Node element) {
+        String cachePath = element.attrString(ATTR_CACHE);
+        if (StringHelper.isEmpty(cachePath)) {
+            return null;
+        }
+        return scanCaches.computeIfAbsent(cachePath,
+                key -> new ScanCache(Paths.get(key)));
+    }
+
+    private ClassLoader getClassLoader() {
+        ClassLoader classLoader =
+                Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ScanHandler.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
     private String getBasePackage(Node element) {
         String basePackage = element.attrString(Constant.ATTR_BASE_PACKAGE);
         if (StringHelper.isEmpty(basePackage)) {
@@ -136,32 +476,87 @@ public class ScanHandler implements Handler {
         return basePackage;
     }
 
-    private static final Class<?> COMPONENT_TYPE = Component.class;
-    private static final Map<Class<?>, Boolean> componentTypeCache =
-            new HashMap<>();
+    private static final String COMPONENT_NAME = Component.class.getName();
+
+    private static final String SAME_AS_NAME = SameAs.class.getName();
+
+    private static final String CONDITIONAL_NAME = Conditional.class.getName();
+
+    private static final String ATTR_ANNOTATION = "annotation";
 
     private boolean isComponent(ClassInfo classInfo) {
-        for (AnnotationInfo desc : classInfo.getAnnotations().values()) {
-            Class<?> annotationClass = desc.getAnnotationClass();
-            Boolean isComponent = componentTypeCache.get(annotationClass);
-            if (isComponent == null) {
-                if (annotationClass.equals(COMPONENT_TYPE)) {
-                    isComponent = true;
-                } else {
-                    Map<Class<? extends Annotation>, AnnotationAttribute> annotationAttributes =
-                            AnnotationAttributeHelper.from(annotationClass);
-                    isComponent =
-                            annotationAttributes.containsKey(Component.class);
-                }
-                componentTypeCache.put(annotationClass, isComponent);
+        for (String annotationName : classInfo.getAnnotations().keySet()) {
+            if (isComponentType(annotationName)) {
+                return true;
             }
-            if (isComponent) {
+        }
+        return false;
+    }
+
+    /**
+     * Decide by the annotation descriptors read by {@link ClassFilePrefilter}.
+     */
+    private boolean isComponent(List<String> annotations) {
+        for (String annotation : annotations) {
+            if (isComponentType(Type.getType(annotation).getClassName())) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Resolve the meta-annotations from the class files of the annotation
+     * types, no annotation class is loaded.
+     */
+    private boolean isComponentType(String annotationName) {
+        return getAnnotationTypes().isAnnotationOf(annotationName,
+                COMPONENT_NAME);
+    }
+
+    /**
+     * The value of {@link Component} or of an attribute declared the same as
+     * it, null if none is given.
+     */
+    private String getComponentName(ClassInfo classInfo) {
+        for (AnnotationInfo annotation : classInfo.getAnnotations().values()) {
+            String annotationName = annotation.getAnnotationClassName();
+            if (!COMPONENT_NAME.equals(annotationName)
+                    && !isComponentValue(annotationName)) {
+                continue;
+            }
+            Object value = annotation.getAttribute(Constant.ATTR_VALUE);
+            if (value instanceof String && !((String) value).isEmpty()) {
+                return (String) value;
+            }
+        }
+        return null;
+    }
+
+    private boolean isComponentValue(String annotationName) {
+        ClassInfo annotationType = getAnnotationTypes().get(annotationName);
+        if (annotationType == null) {
+            return false;
+        }
+        for (MethodInfo method : annotationType.getMethods().values()) {
+            if (!Constant.ATTR_VALUE.equals(method.getMethodName())) {
+                continue;
+            }
+            AnnotationInfo sameAs = method.getAnnotationInfo(SAME_AS_NAME);
+            if (sameAs == null) {
+                return false;
+            }
+            Object target = sameAs.getAttribute(ATTR_ANNOTATION);
+            return target instanceof Type && COMPONENT_NAME
+                    .equals(((Type) target).getClassName());
+        }
+        return false;
+    }
+
+    private ClassInfoCache getAnnotationTypes() {
+        return context.getClassInfos();
+    }
+
     @Override
     public void setContext(SimpleContext context) {
         this.context = context;
@@ -42,6 +42,8 @@ public class AnnotationInfo extends AnnotationVisitor {
 
     private Class<?> annotationClass;
 
+    private boolean annotationClassResolved;
+
     public String getAnnotationClassName() {
         return annotationClassName;
     }
@@ -62,18 +64,26 @@ public class AnnotationInfo extends AnnotationVisitor {
         attributes.put(key, value);
     }
 
+    /**
+     * Load the annotation class on the first call, reading the metadata
+     * loads no classes.
+     */
     public Class<?> getAnnotationClass() {
+        if (!annotationClassResolved) {
+            this.annotationClass = ClassHelper.forName(annotationClassName);
+            this.annotationClassResolved = true;
+        }
         return annotationClass;
     }
 
     public void setAnnotationClass(Class<?> annotationClass) {
         this.annotationClass = annotationClass;
+        this.annotationClassResolved = true;
     }
 
     public AnnotationInfo(String desc) {
         super(Opcodes.ASM8);
         this.annotationClassName = Type.getType(desc).getClassName();
-        this.annotationClass = ClassHelper.forName(this.annotationClassName);
     }
 
     @Override
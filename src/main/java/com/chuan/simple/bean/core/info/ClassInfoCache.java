@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.info;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.objectweb.asm.ClassReader;
+
+import com.chuan.simple.helper.common.StringHelper;
+
+/**
+ * The {@link ClassInfo}s read from the class files of a {@link ClassLoader}
+ * without loading the classes, shared by concurrent readers.
+ */
+public class ClassInfoCache {
+
+    private static final Log log = LogFactory.getLog(ClassInfoCache.class);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private static final String JAVA_PACKAGE = "java.";
+
+    private static final String OBJECT_NAME = Object.class.getName();
+
+    private final ClassLoader classLoader;
+
+    private final Map<String, Optional<ClassInfo>> classInfos =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Whether an annotation type is another one or meta-annotated with it,
+     * keyed by both names.
+     */
+    private final Map<String, Boolean> annotationTypes =
+            new ConcurrentHashMap<>();
+
+    public ClassInfoCache(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Read the annotations and the members of the class, the code is
+     * skipped.
+     * @return null if the class file is not found
+     */
+    public ClassInfo get(String className) {
+        if (className == null) {
+            return null;
+        }
+        Optional<ClassInfo> classInfo = classInfos.get(className);
+        if (classInfo == null) {
+            classInfo = Optional.ofNullable(read(className));
+            classInfos.putIfAbsent(className, classInfo);
+        }
+        return classInfo.orElse(null);
+    }
+
+    /**
+     * Whether the annotation type is {@code targetName} or meta-annotated
+     * with it. Annotations of the java packages are not followed.
+     */
+    public boolean isAnnotationOf(String annotationName, String targetName) {
+        String key = annotationName + StringHelper.VERTICAL_LINE + targetName;
+        Boolean result = annotationTypes.get(key);
+        if (result == null) {
+            result = isAnnotationOf(annotationName, targetName,
+                    new HashSet<>());
+            annotationTypes.put(key, result);
+        }
+        return result;
+    }
+
+    public boolean isAnyAnnotationOf(Collection<String> annotationNames,
+            String targetName) {
+        for (String annotationName : annotationNames) {
+            if (isAnnotationOf(annotationName, targetName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAnnotationOf(String annotationName, String targetName,
+            Set<String> visited) {
+        if (annotationName.equals(targetName)) {
+            return true;
+        }
+        if (annotationName.startsWith(JAVA_PACKAGE)
+                || !visited.add(annotationName)) {
+            return false;
+        }
+        ClassInfo annotationType = get(annotationName);
+        if (annotationType == null) {
+            return false;
+        }
+        for (String metaAnnotation : annotationType.getAnnotations()
+                .keySet()) {
+            if (isAnnotationOf(metaAnnotation, targetName, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a field, method, constructor or parameter of the class or of
+     * its super classes is annotated with {@code annotationName} or an
+     * annotation meta-annotated with it.
+     * @return true as well if a class file is not found
+     */
+    public boolean hasAnnotatedMembers(String className,
+            String annotationName) {
+        while (className != null && !className.startsWith(JAVA_PACKAGE)) {
+            ClassInfo classInfo = get(className);
+            if (classInfo == null) {
+                return true;
+            }
+            for (FieldInfo field : classInfo.getFields().values()) {
+                if (isAnyAnnotationOf(field.getAnnotations().keySet(),
+                        annotationName)) {
+                    return true;
+                }
+            }
+            for (MethodInfo method : classInfo.getMethods().values()) {
+                if (isAnyAnnotationOf(method.getAnnotations().keySet(),
+                        annotationName)
+                        || isAnyAnnotationOf(
+                                method.getParameterAnnotationNames(),
+                                annotationName)) {
+                    return true;
+                }
+            }
+            className = classInfo.getSuperClassName();
+        }
+        return false;
+    }
+
+    /**
+     * The names of the class, all of its super classes and interfaces, and
+     * of {@link Object} for an interface.
+     * @return null if a class file of the hierarchy is not found
+     */
+    public Set<String> getTypeNames(String className) {
+        ClassInfo classInfo = get(className);
+        if (classInfo == null) {
+            return null;
+        }
+        Set<String> types = new LinkedHashSet<>();
+        if (!collectTypeNames(className, types)) {
+            return null;
+        }
+        if (Modifier.isInterface(classInfo.getModifier())) {
+            types.add(OBJECT_NAME);
+        }
+        return types;
+    }
+
+    private boolean collectTypeNames(String className, Set<String> types) {
+        while (className != null && types.add(className)) {
+            ClassInfo classInfo = get(className);
+            if (classInfo == null) {
+                return false;
+            }
+            for (String itf : classInfo.getInterfaces()) {
+                if (!collectTypeNames(itf, types)) {
+                    return false;
+                }
+            }
+            className = classInfo.getSuperClassName();
+        }
+        return true;
+    }
+
+    /**
+     * Whether the class file is found, the class is not loaded.
+     */
+    public boolean isPresent(String className) {
+        Optional<ClassInfo> classInfo = classInfos.get(className);
+        if (classInfo != null && classInfo.isPresent()) {
+            return true;
+        }
+        // Not read yet, missing or unreadable by ASM.
+        return classLoader.getResource(StringHelper
+                .classNameToResourcePath(className) + CLASS_FILE_SUFFIX) != null;
+    }
+
+    protected ClassInfo read(String className) {
+        String path = StringHelper.classNameToResourcePath(className)
+                + CLASS_FILE_SUFFIX;
+        try (InputStream in = classLoader.getResourceAsStream(path)) {
+            if (in == null) {
+                return null;
+            }
+            ClassInfo classInfo = new ClassInfo();
+            new ClassReader(in).accept(classInfo, ClassReader.SKIP_CODE
+                    | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return classInfo;
+        } catch (IOException | RuntimeException e) {
+            // Also class files of features newer than the ASM api, such as
+            // the permitted subclasses of sealed JDK types.
+            log.debug("Read class file of " + className + " failed", e);
+            return null;
+        }
+    }
+
+}
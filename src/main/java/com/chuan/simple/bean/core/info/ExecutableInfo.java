@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.info;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import com.chuan.simple.helper.annotation.AnnotationAttribute;
+import com.chuan.simple.helper.annotation.AnnotationAttributeHelper;
+import com.chuan.simple.helper.method.ParameterHelper;
+
+/**
+ * The parameters of a constructor or method, read once by
+ * {@link ExecutableInfoCache}. The returned arrays are shared and must not
+ * be modified.
+ */
+public class ExecutableInfo {
+
+    private final Executable executable;
+
+    private final Parameter[] parameters;
+
+    private final String[] parameterNames;
+
+    private final Class<?>[] parameterTypes;
+
+    private final Type[] genericParameterTypes;
+
+    /**
+     * The annotation attributes of each parameter, read on first use.
+     */
+    private volatile Map<Class<? extends Annotation>, AnnotationAttribute>[] parameterAnnotations;
+
+    public ExecutableInfo(Executable executable) {
+        this.executable = executable;
+        this.parameters = ParameterHelper.getParameters(executable);
+        this.parameterNames = ParameterHelper.getParameterNames(executable);
+        this.parameterTypes = executable.getParameterTypes();
+        this.genericParameterTypes = executable.getGenericParameterTypes();
+    }
+
+    public Executable getExecutable() {
+        return executable;
+    }
+
+    public int getParameterCount() {
+        return parameterTypes.length;
+    }
+
+    public Parameter[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * The names from the debug info of the class file or, if the class is
+     * compiled with '-parameters', from reflection.
+     */
+    public String[] getParameterNames() {
+        return parameterNames;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public Type[] getGenericParameterTypes() {
+        return genericParameterTypes;
+    }
+
+    public Map<Class<? extends Annotation>, AnnotationAttribute> getParameterAnnotations(
+            int index) {
+        Map<Class<? extends Annotation>, AnnotationAttribute>[] annotations =
+                this.parameterAnnotations;
+        if (annotations == null) {
+            @SuppressWarnings("unchecked")
+            Map<Class<? extends Annotation>, AnnotationAttribute>[] read =
+                    new Map[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                read[i] = AnnotationAttributeHelper.from(parameters[i]);
+            }
+            this.parameterAnnotations = annotations = read;
+        }
+        return annotations[index];
+    }
+
+    /**
+     * The index of a parameter of this executable, -1 if it is none.
+     */
+    public int indexOf(Parameter parameter) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].equals(parameter)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
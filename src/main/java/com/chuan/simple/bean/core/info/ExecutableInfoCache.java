@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.info;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.chuan.simple.helper.method.ParameterHelper;
+
+/**
+ * The {@link ExecutableInfo}s of a context, shared by building, proxying
+ * and installing the elements, so the parameter names are read from the
+ * class files only once per executable.
+ */
+public class ExecutableInfoCache {
+
+    private final Map<Executable, ExecutableInfo> executableInfos =
+            new ConcurrentHashMap<>();
+
+    public ExecutableInfo get(Executable executable) {
+        ExecutableInfo executableInfo = executableInfos.get(executable);
+        if (executableInfo == null) {
+            executableInfo = new ExecutableInfo(executable);
+            ExecutableInfo previous =
+                    executableInfos.putIfAbsent(executable, executableInfo);
+            if (previous != null) {
+                executableInfo = previous;
+            }
+        }
+        return executableInfo;
+    }
+
+    public String getParameterName(Parameter parameter) {
+        ExecutableInfo executableInfo =
+                get(parameter.getDeclaringExecutable());
+        int index = executableInfo.indexOf(parameter);
+        if (index < 0 || index >= executableInfo.getParameterNames().length) {
+            return ParameterHelper.getParameterName(parameter);
+        }
+        return executableInfo.getParameterNames()[index];
+    }
+
+    public int size() {
+        return executableInfos.size();
+    }
+
+    public void clear() {
+        executableInfos.clear();
+    }
+
+}
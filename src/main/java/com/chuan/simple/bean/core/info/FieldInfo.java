@@ -42,13 +42,14 @@ public class FieldInfo extends FieldVisitor {
 
     protected Class<?> fieldClass;
 
+    protected boolean fieldClassResolved;
+
     public FieldInfo(int access, String name, String desc, ClassInfo parent) {
         super(Opcodes.ASM8);
         this.modifier = access;
         this.fieldName = name;
         this.parent = parent;
         this.fieldClassName = Type.getType(desc).getClassName();
-        this.fieldClass = ClassHelper.forName(this.fieldClassName);
     }
 
     @Override
@@ -74,12 +75,20 @@ public class FieldInfo extends FieldVisitor {
         this.fieldClassName = fieldClassName;
     }
 
+    /**
+     * Load the field class on the first call.
+     */
     public Class<?> getFieldClass() {
+        if (!fieldClassResolved) {
+            this.fieldClass = ClassHelper.forName(fieldClassName);
+            this.fieldClassResolved = true;
+        }
         return fieldClass;
     }
 
     public void setFieldClass(Class<?> fieldClass) {
         this.fieldClass = fieldClass;
+        this.fieldClassResolved = true;
     }
 
     public int getModifier() {
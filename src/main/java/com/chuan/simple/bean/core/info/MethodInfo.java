@@ -16,7 +16,9 @@
 package com.chuan.simple.bean.core.info;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -34,6 +36,8 @@ public class MethodInfo extends MethodVisitor {
 
     protected final int modifier;
 
+    protected final String descriptor;
+
     protected final String returnTypeName;
 
     protected final String[] parameterTypeNames;
@@ -42,11 +46,17 @@ public class MethodInfo extends MethodVisitor {
 
     protected final Map<String, AnnotationInfo> annotations = new HashMap<>();
 
+    /**
+     * The annotations of any of the parameters.
+     */
+    protected final Set<String> parameterAnnotationNames = new HashSet<>();
+
     public MethodInfo(String methodName, int access, String desc,
             ClassInfo parent) {
         super(Opcodes.ASM8);
         this.methodName = methodName;
         this.modifier = access;
+        this.descriptor = desc;
         this.returnTypeName = Type.getReturnType(desc).getClassName();
         this.parameterTypeNames = ParameterHelper.getParameterTypeNames(desc);
         this.parent = parent;
@@ -60,6 +70,13 @@ public class MethodInfo extends MethodVisitor {
         return annotationInfo;
     }
 
+    @Override
+    public AnnotationVisitor visitParameterAnnotation(int parameter,
+            String desc, boolean visible) {
+        this.parameterAnnotationNames.add(Type.getType(desc).getClassName());
+        return null;
+    }
+
     public String getMethodName() {
         return this.methodName;
     }
@@ -72,6 +89,18 @@ public class MethodInfo extends MethodVisitor {
         return this.annotations.get(annotationClassName);
     }
 
+    public Map<String, AnnotationInfo> getAnnotations() {
+        return annotations;
+    }
+
+    public Set<String> getParameterAnnotationNames() {
+        return parameterAnnotationNames;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
     public String getReturnTypeName() {
         return this.returnTypeName;
     }
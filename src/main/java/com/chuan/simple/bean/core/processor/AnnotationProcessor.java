@@ -34,7 +34,6 @@ import com.chuan.simple.helper.clazz.BuilderNameHelper;
 import com.chuan.simple.helper.clazz.ClassHelper;
 import com.chuan.simple.helper.common.StringHelper;
 import com.chuan.simple.helper.method.MethodHelper;
-import com.chuan.simple.helper.method.ParameterHelper;
 import com.chuan.simple.bean.annotation.Alias;
 import com.chuan.simple.bean.annotation.Automatic;
 import com.chuan.simple.bean.annotation.Autowired;
@@ -45,11 +44,13 @@ import com.chuan.simple.bean.annotation.Scope;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
 import com.chuan.simple.bean.core.build.builder.MethodBuilder;
+import com.chuan.simple.bean.core.build.generated.GeneratedMethodBuilder;
 import com.chuan.simple.bean.core.element.entity.BuildParameterElement;
 import com.chuan.simple.bean.core.element.entity.Element;
 import com.chuan.simple.bean.core.element.entity.FieldElement;
 import com.chuan.simple.bean.core.element.entity.MethodParameterElement;
 import com.chuan.simple.bean.core.element.entity.ParameterElement;
+import com.chuan.simple.bean.core.info.ExecutableInfo;
 import com.chuan.simple.bean.core.info.MethodInfo;
 import com.chuan.simple.constant.Constant;
 
@@ -101,9 +102,13 @@ public class AnnotationProcessor implements Processor {
             required = (boolean) autowiredAnnotationAttribute
                     .getAttribute(Constant.ATTR_REQUIRED);
         }
-        for (Parameter parameter : ParameterHelper.getParameters(executable)) {
+        ExecutableInfo executableInfo =
+                context.getExecutableInfos().get(executable);
+        Parameter[] parameters = executableInfo.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
             Map<Class<? extends Annotation>, AnnotationAttribute> ats =
-                    AnnotationAttributeHelper.from(parameter);
+                    executableInfo.getParameterAnnotations(i);
             AnnotationAttribute attribute = ats.get(Autowired.class);
             if (methodAutowired || attribute != null) {
                 ParameterElement parameterElement = null;
@@ -192,6 +197,25 @@ public class AnnotationProcessor implements Processor {
         }
     }
 
+    protected void addGeneratedBeanMethod(GeneratedMethodBuilder<?> methodBuilder,
+            Builder<?> builder) {
+        methodBuilder.setOwnerName(builder.getBuilderName());
+        String builderName = methodBuilder.getBeanName();
+        if (StringHelper.isEmpty(builderName)) {
+            builderName = methodBuilder.getMethodName();
+        }
+        builderName = BuilderNameHelper.satisfiedName(builderName,
+                context::checkAndUseName);
+        methodBuilder.setBuilderName(builderName);
+        parseDefaultAutowiredPattern(methodBuilder);
+        methodBuilder.configure();
+        if (!methodBuilder.getAliases().isEmpty()) {
+            this.context.registerAliases(builderName,
+                    methodBuilder.getAliases());
+        }
+        this.context.addBuilder(builderName, methodBuilder);
+    }
+
     protected void processBuilderAnnotation(Builder<?> builder,
             Map<Class<? extends Annotation>, AnnotationAttribute> attrs) {
         parseDefaultAutowiredPattern(builder);
@@ -33,12 +33,12 @@ import com.chuan.simple.helper.annotation.AnnotationAttributeHelper;
 import com.chuan.simple.helper.clazz.ClassHelper;
 import com.chuan.simple.helper.common.PatternHelper;
 import com.chuan.simple.helper.common.StringHelper;
-import com.chuan.simple.helper.expression.ExpressionHelper;
 import com.chuan.simple.helper.method.MethodHelper;
 import com.chuan.simple.bean.annotation.Around;
 import com.chuan.simple.bean.annotation.Aspect;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.info.ClassInfo;
 import com.chuan.simple.bean.exception.SimpleProcessorException;
 import com.chuan.simple.constant.Constant;
 
@@ -71,9 +71,13 @@ public class AspectProcessor implements Processor {
     }
 
     private void walkPointCuts(Builder<?> builder) {
-        Class<?> beanClass = builder.getBuilderClass();
+        // Match by name, so the classes of unmatched builders stay unloaded.
+        String className = builder.getClassName();
+        if (className == null) {
+            className = builder.getBuilderClass().getName();
+        }
         for (PointCut pointCut : pointCuts) {
-            if (pointCut.matchClass(beanClass.getName())) {
+            if (pointCut.matchClass(className)) {
                 walkPointCut(pointCut, builder);
             }
         }
@@ -102,14 +106,28 @@ public class AspectProcessor implements Processor {
 
     private void addPoints(Collection<Builder<?>> builders) {
         for (Builder<?> builder : builders) {
-            Map<Class<? extends Annotation>, AnnotationAttribute> attributes =
-                    AnnotationAttributeHelper.from(builder.getBuilderClass());
-            if (attributes.containsKey(Aspect.class)) {
+            if (isAspect(builder)) {
                 resolveAround(builder);
             }
         }
     }
 
+    private boolean isAspect(Builder<?> builder) {
+        ClassInfo classInfo = null;
+        if (!builder.isBuilderClassResolved()
+                && builder.getClassName() != null) {
+            classInfo = context.getClassInfos().get(builder.getClassName());
+        }
+        if (classInfo != null) {
+            return context.getClassInfos().isAnyAnnotationOf(
+                    classInfo.getAnnotations().keySet(),
+                    Aspect.class.getName());
+        }
+        Map<Class<? extends Annotation>, AnnotationAttribute> attributes =
+                AnnotationAttributeHelper.from(builder.getBuilderClass());
+        return attributes.containsKey(Aspect.class);
+    }
+
     private void resolveAround(Builder<?> builder) {
         Class<?> beanClass = builder.getBuilderClass();
         for (Method m : MethodHelper.getMethods(beanClass,false)) {
@@ -119,7 +137,7 @@ public class AspectProcessor implements Processor {
             if (around != null) {
                 Object aspect = this.context.build(builder.getBuilderName());
                 String pointcut = (String) around.getAttribute(Constant.ATTR_VALUE);
-                pointcut = ExpressionHelper.resolvePlaceholders(pointcut,
+                pointcut = context.getPlaceholderTemplates().resolve(pointcut,
                         this.context.getAttributes());
                 if (StringHelper.isNotEmpty(pointcut)) {
                     if (m.getParameterCount() == 0) {
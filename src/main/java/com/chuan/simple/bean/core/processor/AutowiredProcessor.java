@@ -24,8 +24,10 @@ import java.util.List;
 import com.chuan.simple.helper.common.ObjectHelper;
 import com.chuan.simple.helper.field.FieldHelper;
 import com.chuan.simple.helper.method.MethodHelper;
+import com.chuan.simple.bean.annotation.Autowired;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
 import com.chuan.simple.bean.core.element.entity.Element;
 
 public class AutowiredProcessor extends AnnotationProcessor
@@ -43,6 +45,16 @@ public class AutowiredProcessor extends AnnotationProcessor
     }
 
     private void processBuilder(Builder<?> builder) {
+        if (builder instanceof GeneratedBuilder<?>) {
+            // Injected by the generated code.
+            return;
+        }
+        if (!builder.isBuilderClassResolved() && builder.getClassName() != null
+                && !context.getClassInfos().hasAnnotatedMembers(
+                        builder.getClassName(), Autowired.class.getName())) {
+            // Nothing to parse, keep the class unloaded.
+            return;
+        }
         Class<?> builderClass = builder.getBuilderClass();
         for (Field field : FieldHelper.getFields(builderClass)) {
             Element element = parseAutowiredField(field);
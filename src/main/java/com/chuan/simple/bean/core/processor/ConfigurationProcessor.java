@@ -23,6 +23,8 @@ import com.chuan.simple.bean.annotation.Bean;
 import com.chuan.simple.bean.annotation.Configuration;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
+import com.chuan.simple.bean.core.build.generated.GeneratedMethodBuilder;
 import com.chuan.simple.bean.core.info.ClassInfo;
 import com.chuan.simple.bean.core.info.MethodInfo;
 
@@ -38,6 +40,13 @@ public class ConfigurationProcessor extends AnnotationProcessor
     @Override
     public void processBuilders(Collection<Builder<?>> builders) {
         for (Builder<?> builder : builders) {
+            if (builder instanceof GeneratedBuilder<?>) {
+                for (GeneratedMethodBuilder<?> methodBuilder : ((GeneratedBuilder<?>) builder)
+                        .getMethodBuilders()) {
+                    addGeneratedBeanMethod(methodBuilder, builder);
+                }
+                continue;
+            }
             ClassInfo classInfo = builder.getClassInfo();
             if (classInfo != null && classInfo
                     .isAnnotated(Configuration.class.getName())) {
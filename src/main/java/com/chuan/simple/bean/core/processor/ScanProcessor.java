@@ -24,6 +24,7 @@ import com.chuan.simple.helper.annotation.AnnotationAttribute;
 import com.chuan.simple.helper.annotation.AnnotationAttributeHelper;
 import com.chuan.simple.bean.core.SimpleContext;
 import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
 
 public class ScanProcessor extends AnnotationProcessor implements Processor {
 
@@ -40,6 +41,11 @@ public class ScanProcessor extends AnnotationProcessor implements Processor {
     }
 
     public void processScanBuilder(Builder<?> builder) {
+        if (builder instanceof GeneratedBuilder<?>) {
+            parseDefaultAutowiredPattern(builder);
+            ((GeneratedBuilder<?>) builder).configure();
+            return;
+        }
         Map<Class<? extends Annotation>, AnnotationAttribute> attrs =
                 AnnotationAttributeHelper.from(builder.getBuilderClass());
         processBuilderAnnotation(builder, attrs);
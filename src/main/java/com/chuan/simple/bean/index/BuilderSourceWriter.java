@@ -0,0 +1,570 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.index;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+
+/**
+ * Write the source of the generated builder of a component, see
+ * {@code GeneratedBuilder}.
+ * <p>
+ * Only components whose constructor, {@code @Autowired} fields and
+ * {@code @Bean} methods are visible to their package, and which have no
+ * {@code @Autowired} methods, are generated. The others keep being built by
+ * reflection.
+ */
+class BuilderSourceWriter {
+
+    static final String SUFFIX = "_SimpleBuilder";
+
+    private static final String PACKAGE =
+            "com.chuan.simple.bean.core.build.generated.";
+
+    private static final String ANNOTATION_PACKAGE =
+            "com.chuan.simple.bean.annotation.";
+
+    private static final String AUTOWIRED = ANNOTATION_PACKAGE + "Autowired";
+
+    private static final String BEAN = ANNOTATION_PACKAGE + "Bean";
+
+    private static final String SCOPE = ANNOTATION_PACKAGE + "Scope";
+
+    private static final String AUTOMATIC = ANNOTATION_PACKAGE + "Automatic";
+
+    private static final String ORDER = ANNOTATION_PACKAGE + "Order";
+
+    private static final String DEPENDS_ON = ANNOTATION_PACKAGE + "DependsOn";
+
+    private static final String ALIAS = ANNOTATION_PACKAGE + "Alias";
+
+    private final ProcessingEnvironment processingEnv;
+
+    private final Elements elements;
+
+    private final Types types;
+
+    BuilderSourceWriter(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    /**
+     * Write the builder of the component.
+     * @return the binary name of the builder, null if the component can't
+     *         be generated
+     */
+    String write(TypeElement type) throws IOException {
+        ExecutableElement constructor = constructor(type);
+        if (constructor == null || !isGenerated(type)) {
+            return null;
+        }
+        String packageName =
+                elements.getPackageOf(type).getQualifiedName().toString();
+        String simpleName = builderSimpleName(type);
+        String builderName = packageName.isEmpty() ? simpleName
+                : packageName + "." + simpleName;
+        String typeName = typeName(type.asType());
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * Builder of {@link ").append(typeName)
+                .append("} generated by ")
+                .append(ComponentIndexProcessor.class.getSimpleName())
+                .append(".\n */\n");
+        source.append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+        source.append("public final class ").append(simpleName)
+                .append(" extends ").append(PACKAGE)
+                .append("GeneratedConstructorBuilder<").append(typeName)
+                .append("> {\n\n");
+        source.append("    public ").append(simpleName)
+                .append("(com.chuan.simple.bean.core.SimpleContext context) {\n")
+                .append("        super(context, ").append(typeName)
+                .append(".class);\n    }\n\n");
+        List<String> points = new ArrayList<>();
+        String arguments = arguments(constructor, points);
+        List<String> injections = new ArrayList<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD) {
+                AnnotationMirror autowired = annotation(member, AUTOWIRED);
+                if (autowired != null) {
+                    injections.add("        bean." + member.getSimpleName()
+                            + " = " + autowired(member.asType(), autowired,
+                                    member.getSimpleName().toString(), true,
+                                    points)
+                            + ";\n");
+                }
+            }
+        }
+        configure(source, type, "    ");
+        dependencyPoints(source, points, "    ");
+        source.append("    @Override\n    public ").append(typeName)
+                .append(" instantiate() {\n        return new ")
+                .append(typeName).append("(").append(arguments)
+                .append(");\n    }\n\n");
+        if (!injections.isEmpty()) {
+            source.append("    @Override\n    public void inject(")
+                    .append(typeName).append(" bean) {\n");
+            for (String injection : injections) {
+                source.append(injection);
+            }
+            source.append("    }\n\n");
+        }
+        List<ExecutableElement> beanMethods = new ArrayList<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.METHOD
+                    && annotation(member, BEAN) != null) {
+                beanMethods.add((ExecutableElement) member);
+            }
+        }
+        if (!beanMethods.isEmpty()) {
+            String list = "java.util.List<" + PACKAGE
+                    + "GeneratedMethodBuilder<?>>";
+            source.append("    @Override\n    public ").append(list)
+                    .append(" getMethodBuilders() {\n        ").append(list)
+                    .append(" builders = new java.util.ArrayList<>();\n");
+            for (ExecutableElement method : beanMethods) {
+                methodBuilder(source, type, method);
+            }
+            source.append("        return builders;\n    }\n\n");
+        }
+        source.append("}\n");
+        JavaFileObject file =
+                processingEnv.getFiler().createSourceFile(builderName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+        return builderName;
+    }
+
+    private void methodBuilder(StringBuilder source, TypeElement owner,
+            ExecutableElement method) {
+        String indent = "            ";
+        String returnType = typeName(boxed(method.getReturnType()));
+        AnnotationMirror bean = annotation(method, BEAN);
+        Object beanName = attribute(bean, "value", "name");
+        StringBuilder parameterTypes = new StringBuilder();
+        for (VariableElement parameter : method.getParameters()) {
+            if (parameterTypes.length() > 0) {
+                parameterTypes.append(", ");
+            }
+            parameterTypes.append(typeName(parameter.asType()))
+                    .append(".class");
+        }
+        source.append("        builders.add(new ").append(PACKAGE)
+                .append("GeneratedMethodBuilder<").append(returnType)
+                .append(">(getContext(), ")
+                .append(typeName(method.getReturnType())).append(".class, ")
+                .append(literal(method.getSimpleName().toString()))
+                .append(", ")
+                .append(isEmpty(beanName) ? "null" : literal(beanName))
+                .append(", ").append(typeName(owner.asType()))
+                .append(".class, new Class<?>[] {")
+                .append(parameterTypes.length() == 0 ? ""
+                        : " " + parameterTypes + " ")
+                .append("}) {\n\n");
+        List<String> points = new ArrayList<>();
+        String arguments = arguments(method, points);
+        configure(source, method, indent);
+        dependencyPoints(source, points, indent);
+        String target = method.getModifiers().contains(Modifier.STATIC)
+                ? typeName(owner.asType())
+                : "((" + typeName(owner.asType()) + ") getOwner())";
+        source.append(indent).append("@Override\n").append(indent)
+                .append("public ").append(returnType)
+                .append(" instantiate() {\n").append(indent)
+                .append("    return ").append(target).append(".")
+                .append(method.getSimpleName()).append("(")
+                .append(arguments).append(");\n").append(indent)
+                .append("}\n\n        });\n");
+    }
+
+    private void configure(StringBuilder source, Element element,
+            String indent) {
+        List<String> lines = new ArrayList<>();
+        Object scope = attribute(annotation(element, SCOPE), "value", "scope");
+        if (!isEmpty(scope)) {
+            lines.add("setScope(" + literal(scope) + ");");
+        }
+        AnnotationMirror automatic = annotation(element, AUTOMATIC);
+        if (automatic != null) {
+            lines.add("setAutoInit("
+                    + isTrue(attribute(automatic, "autoInit")) + ");");
+            lines.add("setAutowiredExecutable("
+                    + isTrue(attribute(automatic, "autowiredExecutable"))
+                    + ");");
+            lines.add("setAutowiredField("
+                    + isTrue(attribute(automatic, "autowiredField")) + ");");
+        }
+        AnnotationMirror order = annotation(element, ORDER);
+        if (order != null) {
+            Object value = attribute(order, "value");
+            lines.add("setOrder(" + (value == null ? 0 : value) + ");");
+        }
+        List<String> dependsOn =
+                strings(attribute(annotation(element, DEPENDS_ON), "value"));
+        if (annotation(element, DEPENDS_ON) != null) {
+            lines.add("setDependsOn(new String[] { "
+                    + String.join(", ", dependsOn) + " });");
+        }
+        for (String alias : strings(
+                attribute(annotation(element, ALIAS), "value", "name"))) {
+            lines.add("addAlias(" + alias + ");");
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        source.append(indent).append("@Override\n").append(indent)
+                .append("public void configure() {\n");
+        for (String line : lines) {
+            source.append(indent).append("    ").append(line).append("\n");
+        }
+        source.append(indent).append("}\n\n");
+    }
+
+    private void dependencyPoints(StringBuilder source, List<String> points,
+            String indent) {
+        if (points.isEmpty()) {
+            return;
+        }
+        source.append(indent).append("@Override\n").append(indent)
+                .append("public Object[][] getDependencyPoints() {\n")
+                .append(indent).append("    return new Object[][] { ")
+                .append(String.join(", ", points)).append(" };\n")
+                .append(indent).append("}\n\n");
+    }
+
+    /**
+     * The argument expressions of the constructor or the bean method like
+     * the elements of {@code AnnotationProcessor}.
+     */
+    private String arguments(ExecutableElement executable,
+            List<String> points) {
+        AnnotationMirror executableAutowired =
+                annotation(executable, AUTOWIRED);
+        StringBuilder arguments = new StringBuilder();
+        for (VariableElement parameter : executable.getParameters()) {
+            if (arguments.length() > 0) {
+                arguments.append(", ");
+            }
+            TypeMirror type = parameter.asType();
+            String name = parameter.getSimpleName().toString();
+            AnnotationMirror autowired = annotation(parameter, AUTOWIRED);
+            if (autowired != null) {
+                arguments.append(autowired(type, autowired, name, true, points));
+            } else if (executableAutowired != null) {
+                arguments.append(autowired(type, executableAutowired, name,
+                        false, points));
+            } else {
+                arguments.append("(").append(typeName(boxed(type)))
+                        .append(") parameter(").append(literal(name))
+                        .append(", ").append(typeName(type)).append(".class)");
+                points.add("{ " + literal(name) + ", " + typeName(type)
+                        + ".class }");
+            }
+        }
+        return arguments.toString();
+    }
+
+    /**
+     * @param defaultName
+     *            use the name of the field or the parameter if
+     *            {@code @Autowired} gives none
+     */
+    private String autowired(TypeMirror type, AnnotationMirror autowired,
+            String name, boolean defaultName, List<String> points) {
+        Object value = attribute(autowired, "value");
+        Object builderName = attribute(autowired, "name");
+        if (isEmpty(builderName)) {
+            builderName = defaultName ? name : null;
+        }
+        Object autowiredType = attribute(autowired, "type");
+        String typeName = typeName(type);
+        if (autowiredType != null
+                && !"java.lang.Object".equals(autowiredType.toString())) {
+            typeName = typeName((TypeMirror) autowiredType);
+        }
+        Object required = attribute(autowired, "required");
+        String nameLiteral =
+                builderName == null ? "null" : literal(builderName);
+        if (isEmpty(value)) {
+            points.add("{ " + nameLiteral + ", " + typeName + ".class }");
+        }
+        return "(" + typeName(boxed(type)) + ") autowired("
+                + (isEmpty(value) ? "null" : literal(value)) + ", "
+                + nameLiteral + ", " + typeName + ".class, "
+                + (required == null || isTrue(required)) + ")";
+    }
+
+    /**
+     * The constructor used by the reflective build: the first one with
+     * {@code @Autowired}, else the one without parameters.
+     */
+    private ExecutableElement constructor(TypeElement type) {
+        ExecutableElement noArgs = null;
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.CONSTRUCTOR) {
+                continue;
+            }
+            ExecutableElement constructor = (ExecutableElement) member;
+            boolean autowired = annotation(constructor, AUTOWIRED) != null;
+            for (VariableElement parameter : constructor.getParameters()) {
+                autowired = autowired
+                        || annotation(parameter, AUTOWIRED) != null;
+            }
+            if (autowired) {
+                return isPrivate(constructor) ? null : constructor;
+            }
+            if (constructor.getParameters().isEmpty()
+                    && !isPrivate(constructor)) {
+                noArgs = constructor;
+            }
+        }
+        return noArgs;
+    }
+
+    private boolean isGenerated(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        for (Element enclosing = type; enclosing instanceof TypeElement;
+                enclosing = enclosing.getEnclosingElement()) {
+            TypeElement typeElement = (TypeElement) enclosing;
+            if (isPrivate(typeElement)
+                    || (typeElement.getNestingKind() != NestingKind.TOP_LEVEL
+                            && !typeElement.getModifiers()
+                                    .contains(Modifier.STATIC))) {
+                return false;
+            }
+        }
+        if (hasInheritedInjection(type)) {
+            return false;
+        }
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annotationType =
+                    (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().toString()
+                    .startsWith(ANNOTATION_PACKAGE)
+                    && (annotation(annotationType, SCOPE) != null
+                            || annotation(annotationType, AUTOMATIC) != null
+                            || annotation(annotationType, ORDER) != null
+                            || annotation(annotationType,
+                                    DEPENDS_ON) != null)) {
+                // Metadata declared by meta annotations is left to reflection.
+                return false;
+            }
+        }
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD
+                    && annotation(member, AUTOWIRED) != null) {
+                Set<Modifier> modifiers = member.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE)
+                        || modifiers.contains(Modifier.FINAL)
+                        || modifiers.contains(Modifier.STATIC)
+                        || !isInjectable(member.asType(),
+                                annotation(member, AUTOWIRED))) {
+                    return false;
+                }
+            } else if (member.getKind() == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement) member;
+                if (annotation(method, BEAN) != null) {
+                    if (isPrivate(method)
+                            || method.getReturnType().getKind() == TypeKind.VOID
+                            || !isInjectable(method)) {
+                        return false;
+                    }
+                } else if (annotation(method, AUTOWIRED) != null) {
+                    return false;
+                } else {
+                    for (VariableElement parameter : method.getParameters()) {
+                        if (annotation(parameter, AUTOWIRED) != null) {
+                            return false;
+                        }
+                    }
+                }
+            } else if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && !isInjectable((ExecutableElement) member)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a super class declares {@code @Autowired} members, which are
+     * left to reflection.
+     */
+    private boolean hasInheritedInjection(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superType =
+                    (TypeElement) types.asElement(superclass);
+            for (Element member : superType.getEnclosedElements()) {
+                if (annotation(member, AUTOWIRED) != null) {
+                    return true;
+                }
+                if (member instanceof ExecutableElement) {
+                    for (VariableElement parameter : ((ExecutableElement) member)
+                            .getParameters()) {
+                        if (annotation(parameter, AUTOWIRED) != null) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            superclass = superType.getSuperclass();
+        }
+        return false;
+    }
+
+    private boolean isInjectable(ExecutableElement executable) {
+        AnnotationMirror executableAutowired =
+                annotation(executable, AUTOWIRED);
+        for (VariableElement parameter : executable.getParameters()) {
+            AnnotationMirror autowired = annotation(parameter, AUTOWIRED);
+            if (!isInjectable(parameter.asType(),
+                    autowired != null ? autowired : executableAutowired)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a value given by {@code @Autowired} can be injected without
+     * conversion.
+     */
+    private boolean isInjectable(TypeMirror type, AnnotationMirror autowired) {
+        if (autowired == null || isEmpty(attribute(autowired, "value"))) {
+            return true;
+        }
+        TypeMirror string =
+                elements.getTypeElement("java.lang.String").asType();
+        return types.isAssignable(string, type);
+    }
+
+    private static boolean isPrivate(Element element) {
+        return element.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    private static String builderSimpleName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element enclosing = type.getEnclosingElement();
+                enclosing instanceof TypeElement;
+                enclosing = enclosing.getEnclosingElement()) {
+            name = enclosing.getSimpleName() + "_" + name;
+        }
+        return name + SUFFIX;
+    }
+
+    private String typeName(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private TypeMirror boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass((PrimitiveType) type).asType();
+        }
+        return type;
+    }
+
+    private String literal(Object value) {
+        return elements.getConstantExpression(value);
+    }
+
+    private static AnnotationMirror annotation(Element element,
+            String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The first explicit value of the attributes.
+     */
+    private static Object attribute(AnnotationMirror mirror,
+            String... names) {
+        if (mirror == null) {
+            return null;
+        }
+        for (String name : names) {
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+                    .getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(name)) {
+                    return entry.getValue().getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The literals of a string or string array attribute.
+     */
+    private List<String> strings(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value instanceof String) {
+            if (!isEmpty(value)) {
+                strings.add(literal(value));
+            }
+        } else if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                Object string = ((AnnotationValue) item).getValue();
+                if (!isEmpty(string)) {
+                    strings.add(literal(string));
+                }
+            }
+        }
+        return strings;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null || value.toString().isEmpty();
+    }
+
+    private static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+}
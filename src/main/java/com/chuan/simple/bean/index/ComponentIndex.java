@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.chuan.simple.bean.annotation.Bean;
+import com.chuan.simple.bean.core.handler.ClassPathScanner;
+import com.chuan.simple.bean.core.handler.PathPattern;
+import com.chuan.simple.bean.core.info.ClassInfo;
+import com.chuan.simple.bean.exception.SimpleParseException;
+
+/**
+ * The components listed in the {@value #LOCATION} files of the class path,
+ * written by {@link ComponentIndexProcessor} at compile time.
+ * <p>
+ * Each line of an index is one of
+ * <pre>
+ * component &lt;class name&gt; &lt;builder name or -&gt; &lt;annotation,...&gt; [&lt;generated builder&gt;]
+ * bean &lt;class name&gt; &lt;method name&gt; &lt;method descriptor&gt;
+ * </pre>
+ * An index stands for the components of the class path root, i.e. the
+ * folder or the jar, it is found in. The other roots still have to be
+ * scanned.
+ */
+public class ComponentIndex {
+
+    private static final Log log = LogFactory.getLog(ComponentIndex.class);
+
+    public static final String LOCATION = "META-INF/simple.components";
+
+    static final String COMPONENT = "component";
+
+    static final String BEAN = "bean";
+
+    static final String NONE = "-";
+
+    private final Map<String, IndexedComponent> components =
+            new LinkedHashMap<>();
+
+    private final Set<String> roots = new LinkedHashSet<>();
+
+    /**
+     * Load the indexes visible to the class loader.
+     * @return null if there is none
+     */
+    public static ComponentIndex load(ClassLoader classLoader) {
+        ComponentIndex index = new ComponentIndex();
+        int count = 0;
+        try {
+            Enumeration<URL> urls = classLoader.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                index.read(url);
+                index.roots.add(ClassPathScanner.rootOf(url, LOCATION));
+                count++;
+            }
+        } catch (IOException e) {
+            throw new SimpleParseException(
+                    "Load component index '" + LOCATION + "' failed", e);
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + index.components.size()
+                    + " indexed components from " + count + " indexes");
+        }
+        return index;
+    }
+
+    private void read(URL url) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(" ");
+                if (COMPONENT.equals(parts[0]) && parts.length > 2) {
+                    IndexedComponent component = new IndexedComponent(parts[1],
+                            NONE.equals(parts[2]) ? null : parts[2]);
+                    if (parts.length > 3) {
+                        for (String annotationName : parts[3].split(",")) {
+                            component.addAnnotationName(annotationName);
+                        }
+                    }
+                    if (parts.length > 4) {
+                        component.generatedBuilderName = parts[4];
+                    }
+                    components.putIfAbsent(parts[1], component);
+                } else if (BEAN.equals(parts[0]) && parts.length > 3) {
+                    IndexedComponent component = components.get(parts[1]);
+                    if (component != null) {
+                        component.addBeanMethod(parts[2], parts[3]);
+                    }
+                } else {
+                    log.warn("Ignore unknown line '" + line + "' of " + url);
+                }
+            }
+        }
+    }
+
+    /**
+     * The class path roots with an index, see
+     * {@link ClassPathScanner#rootOf(URL, String)}.
+     */
+    public Set<String> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Whether the class is listed in an index.
+     */
+    public boolean contains(String className) {
+        return components.containsKey(className);
+    }
+
+    /**
+     * The components whose class file path matches the pattern, e.g.
+     * 'com/chuan/**&#47;*.class'.
+     */
+    public List<IndexedComponent> getComponents(String pathPattern) {
+        PathPattern pattern = new PathPattern(pathPattern);
+        List<IndexedComponent> result = new ArrayList<>();
+        for (IndexedComponent component : components.values()) {
+            if (pattern.matches(
+                    component.getClassName().replace('.', '/') + ".class")) {
+                result.add(component);
+            }
+        }
+        return result;
+    }
+
+    public static class IndexedComponent {
+
+        private final String className;
+
+        private final String builderName;
+
+        private final List<String> annotationNames = new ArrayList<>();
+
+        private final List<String[]> beanMethods = new ArrayList<>();
+
+        private String generatedBuilderName;
+
+        /**
+         * @param builderName
+         *            the explicit builder name, null if the name is
+         *            generated
+         */
+        public IndexedComponent(String className, String builderName) {
+            this.className = className;
+            this.builderName = builderName;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * The explicit builder name, null if the name is generated.
+         */
+        public String getBuilderName() {
+            return builderName;
+        }
+
+        public List<String> getAnnotationNames() {
+            return annotationNames;
+        }
+
+        public void addAnnotationName(String annotationName) {
+            this.annotationNames.add(annotationName);
+        }
+
+        /**
+         * The name and the descriptor of each {@code @Bean} method.
+         */
+        public List<String[]> getBeanMethods() {
+            return beanMethods;
+        }
+
+        public void addBeanMethod(String methodName, String descriptor) {
+            this.beanMethods.add(new String[] { methodName, descriptor });
+        }
+
+        /**
+         * The class name of the generated builder, null if there is none.
+         */
+        public String getGeneratedBuilderName() {
+            return generatedBuilderName;
+        }
+
+        /**
+         * The class info holding the indexed annotations and bean methods,
+         * without reading the class file.
+         */
+        public ClassInfo toClassInfo() {
+            ClassInfo classInfo = new ClassInfo();
+            classInfo.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC,
+                    className.replace('.', '/'), null, null, new String[0]);
+            for (String annotationName : annotationNames) {
+                classInfo.visitAnnotation(descriptor(annotationName), true);
+            }
+            String beanDescriptor = descriptor(Bean.class.getName());
+            for (String[] method : beanMethods) {
+                MethodVisitor methodInfo = classInfo.visitMethod(
+                        Opcodes.ACC_PUBLIC, method[0], method[1], null, null);
+                methodInfo.visitAnnotation(beanDescriptor, true);
+            }
+            return classInfo;
+        }
+
+        private static String descriptor(String className) {
+            return "L" + className.replace('.', '/') + ";";
+        }
+
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Write the {@link ComponentIndex} of the compiled classes at compile time.
+ * <p>
+ * Every class annotated with {@code @Component}, directly or by an
+ * annotation like {@code @Configuration}, is written with its explicit
+ * builder name, its annotations, its {@code @Bean} methods and, with the
+ * option {@value #OPTION_BUILDERS}, its generated builder. Entries of
+ * classes which are not compiled in this run are kept from the previous
+ * index, so incremental compilation keeps the index complete.
+ */
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    private static final String COMPONENT =
+            "com.chuan.simple.bean.annotation.Component";
+
+    private static final String BEAN = "com.chuan.simple.bean.annotation.Bean";
+
+    private static final String SAME_AS = "com.chuan.simple.annotation.SameAs";
+
+    /**
+     * Processor option to generate a builder for each component, so the
+     * components are built without reflection.
+     */
+    public static final String OPTION_BUILDERS = "simple.builders";
+
+    /**
+     * Records of the previous index by class name.
+     */
+    private Map<String, List<String>> previous;
+
+    private final Map<String, List<String>> records = new TreeMap<>();
+
+    private final Set<String> processed = new HashSet<>();
+
+    private final Map<String, Boolean> componentTypes = new TreeMap<>();
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_BUILDERS);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv) {
+        if (previous == null) {
+            previous = readPrevious();
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            write();
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!(element instanceof TypeElement)
+                || element.getKind() == ElementKind.ANNOTATION_TYPE) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        String className = binaryName(type);
+        processed.add(className);
+        if (isComponent(type)) {
+            List<String> lines = new ArrayList<>();
+            List<String> annotationNames = new ArrayList<>();
+            for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+                TypeElement annotationType = annotationType(mirror);
+                Retention retention =
+                        annotationType.getAnnotation(Retention.class);
+                if (retention == null
+                        || retention.value() != RetentionPolicy.SOURCE) {
+                    annotationNames.add(binaryName(annotationType));
+                }
+            }
+            String builderName = componentName(type);
+            String generatedBuilder = writeBuilder(type);
+            lines.add(ComponentIndex.COMPONENT + ' ' + className + ' '
+                    + (builderName == null ? ComponentIndex.NONE : builderName)
+                    + ' ' + String.join(",", annotationNames)
+                    + (generatedBuilder == null ? ""
+                            : " " + generatedBuilder));
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD
+                        && isAnnotated(member, BEAN)) {
+                    lines.add(ComponentIndex.BEAN + ' ' + className + ' '
+                            + member.getSimpleName() + ' '
+                            + descriptor((ExecutableElement) member));
+                }
+            }
+            records.put(className, lines);
+        }
+        for (Element member : type.getEnclosedElements()) {
+            collect(member);
+        }
+    }
+
+    /**
+     * Write the generated builder if the option {@value #OPTION_BUILDERS} is
+     * true.
+     */
+    private String writeBuilder(TypeElement type) {
+        if (!Boolean.parseBoolean(
+                processingEnv.getOptions().get(OPTION_BUILDERS))) {
+            return null;
+        }
+        try {
+            return new BuilderSourceWriter(processingEnv).write(type);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Couldn't write the builder of " + type + ": " + e, type);
+            return null;
+        }
+    }
+
+    private boolean isComponent(TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (isComponentType(annotationType(mirror), new HashSet<>())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the annotation type is {@code @Component} or annotated with it.
+     */
+    private boolean isComponentType(TypeElement annotationType,
+            Set<String> visited) {
+        String name = annotationType.getQualifiedName().toString();
+        Boolean cached = componentTypes.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        if (!visited.add(name)) {
+            return false;
+        }
+        boolean component = COMPONENT.equals(name);
+        for (AnnotationMirror mirror : annotationType.getAnnotationMirrors()) {
+            if (component) {
+                break;
+            }
+            component = isComponentType(annotationType(mirror), visited);
+        }
+        componentTypes.put(name, component);
+        return component;
+    }
+
+    /**
+     * The value of {@code @Component} or of an attribute declared the same as
+     * it, null if none is given.
+     */
+    private String componentName(TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annotationType = annotationType(mirror);
+            boolean component =
+                    annotationType.getQualifiedName().contentEquals(COMPONENT);
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+                    .getElementValues().entrySet()) {
+                ExecutableElement attribute = entry.getKey();
+                if (!attribute.getSimpleName().contentEquals("value")
+                        || !(component || isComponentValue(attribute))) {
+                    continue;
+                }
+                Object value = entry.getValue().getValue();
+                if (value instanceof String && !((String) value).isEmpty()) {
+                    return (String) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isComponentValue(ExecutableElement attribute) {
+        for (AnnotationMirror mirror : attribute.getAnnotationMirrors()) {
+            if (!annotationType(mirror).getQualifiedName()
+                    .contentEquals(SAME_AS)) {
+                continue;
+            }
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+                    .getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("annotation")
+                        && COMPONENT.equals(
+                                entry.getValue().getValue().toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAnnotated(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationType(mirror).getQualifiedName()
+                    .contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TypeElement annotationType(AnnotationMirror mirror) {
+        return (TypeElement) mirror.getAnnotationType().asElement();
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String descriptor(ExecutableElement method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (VariableElement parameter : method.getParameters()) {
+            descriptor.append(descriptor(parameter.asType()));
+        }
+        return descriptor.append(')')
+                .append(descriptor(method.getReturnType())).toString();
+    }
+
+    private String descriptor(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        switch (erased.getKind()) {
+        case BOOLEAN:
+            return "Z";
+        case BYTE:
+            return "B";
+        case CHAR:
+            return "C";
+        case SHORT:
+            return "S";
+        case INT:
+            return "I";
+        case LONG:
+            return "J";
+        case FLOAT:
+            return "F";
+        case DOUBLE:
+            return "D";
+        case VOID:
+            return "V";
+        case ARRAY:
+            return "[" + descriptor(((ArrayType) erased).getComponentType());
+        case DECLARED:
+            TypeElement element =
+                    (TypeElement) ((DeclaredType) erased).asElement();
+            return "L" + binaryName(element).replace('.', '/') + ";";
+        default:
+            return "Ljava/lang/Object;";
+        }
+    }
+
+    private Map<String, List<String>> readPrevious() {
+        Map<String, List<String>> previous = new TreeMap<>();
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, "", ComponentIndex.LOCATION);
+            try (Reader in = new InputStreamReader(resource.openInputStream(),
+                    StandardCharsets.UTF_8);
+                    BufferedReader reader = new BufferedReader(in)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.trim().split(" ");
+                    if (parts.length > 1 && !line.startsWith("#")) {
+                        previous.computeIfAbsent(parts[1],
+                                k -> new ArrayList<>()).add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // No previous index.
+        }
+        return previous;
+    }
+
+    private void write() {
+        Map<String, List<String>> index = new TreeMap<>();
+        for (Entry<String, List<String>> entry : previous.entrySet()) {
+            String className = entry.getKey();
+            if (!processed.contains(className) && processingEnv
+                    .getElementUtils()
+                    .getTypeElement(className.replace('$', '.')) != null) {
+                index.put(className, entry.getValue());
+            }
+        }
+        index.putAll(records);
+        if (index.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", ComponentIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(
+                    resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by "
+                        + ComponentIndexProcessor.class.getName() + "\n");
+                for (List<String> lines : index.values()) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Couldn't write " + ComponentIndex.LOCATION + ": " + e);
+        }
+    }
+
+}
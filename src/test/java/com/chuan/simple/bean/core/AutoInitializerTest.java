@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+
+public class AutoInitializerTest {
+
+    private static final List<String> created =
+            Collections.synchronizedList(new ArrayList<>());
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Before
+    public void setUp() throws IOException {
+        created.clear();
+    }
+
+    @Test(timeout = 10000)
+    public void buildsDependenciesBeforeDependents() throws IOException {
+        SimpleContext context = configs.context(configs.write("chain.sp",
+                "builder",
+                "\tname:c",
+                "\tclass:" + C.class.getName(),
+                "\tauto-init:true",
+                "\tdepends-on:b",
+                "builder",
+                "\tname:b",
+                "\tclass:" + B.class.getName(),
+                "\tauto-init:true",
+                "\tfield",
+                "\t\tname:a",
+                "builder",
+                "\tname:a",
+                "\tclass:" + A.class.getName(),
+                "\tauto-init:true"));
+        assertEquals(Arrays.asList("a", "b", "c"), created);
+        for (String name : created) {
+            assertNotNull(context.getSingletonMap().get(name));
+        }
+        assertEquals(Arrays.asList("a", "b", "c"),
+                context.getAutoInitCriticalPath());
+    }
+
+    @Test(timeout = 10000)
+    public void literalValuesAreNoDependencies() throws IOException {
+        SimpleContext context = configs.context(configs.write("literal.sp",
+                "builder",
+                "\tname:labeled",
+                "\tclass:" + Labeled.class.getName(),
+                "\tauto-init:true",
+                "\tfield",
+                "\t\tname:label",
+                "\t\tval:a",
+                "builder",
+                "\tname:a",
+                "\tclass:" + A.class.getName(),
+                "\tauto-init:true"));
+        assertEquals(1, context.getAutoInitCriticalPath().size());
+        Labeled labeled = (Labeled) context.getSingletonMap().get("labeled");
+        assertNotNull(labeled);
+        assertEquals("a", labeled.label);
+        assertTrue(created.contains("a"));
+    }
+
+    @Test(timeout = 10000)
+    public void buildsOnThePoolOfTheContext() throws IOException {
+        SimpleContext context = configs.context(configs.write("a.sp",
+                "builder",
+                "\tname:a",
+                "\tclass:" + A.class.getName(),
+                "\tauto-init:true"));
+        assertTrue(context.getAutoInitExecutor() instanceof ContextExecutor);
+        assertTrue(A.thread.startsWith("simple-bean-auto-init-"));
+        context.destroy();
+    }
+
+    @Test(timeout = 10000)
+    public void firstFailureCancelsPendingBuilds() throws Exception {
+        Slow.started = new CountDownLatch(1);
+        Slow.done = new CountDownLatch(1);
+        Pending.created.set(0);
+        ContextExecutor executor = new ContextExecutor("test", 2);
+        SimpleContext context = new SimpleContext();
+        context.setAutoInitExecutor(executor);
+        context.addConfig(new Resource(configs.write("failing.sp",
+                "builder",
+                "\tname:slow",
+                "\tclass:" + Slow.class.getName(),
+                "\tauto-init:true",
+                "builder",
+                "\tname:pending",
+                "\tclass:" + Pending.class.getName(),
+                "\tauto-init:true",
+                "\tdepends-on:slow",
+                "builder",
+                "\tname:failing",
+                "\tclass:" + Failing.class.getName(),
+                "\tauto-init:true")));
+        try {
+            context.refresh();
+            fail();
+        } catch (RuntimeException e) {
+            // Reported before the slow build is done.
+            assertEquals(1, Slow.done.getCount());
+        }
+        assertTrue(Slow.done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Thread.sleep(100);
+        assertEquals(0, Pending.created.get());
+    }
+
+    private static void create(String name) {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        created.add(name);
+    }
+
+    public static class A {
+
+        private static volatile String thread;
+
+        public A() {
+            thread = Thread.currentThread().getName();
+            create("a");
+        }
+
+    }
+
+    public static class B {
+
+        public A a;
+
+        public B() {
+            create("b");
+        }
+
+    }
+
+    public static class C {
+
+        public C() {
+            create("c");
+        }
+
+    }
+
+    public static class Labeled {
+
+        public String label;
+
+        public Labeled() {
+            create("labeled");
+        }
+
+    }
+
+    public static class Slow {
+
+        private static volatile CountDownLatch started;
+
+        private static volatile CountDownLatch done;
+
+        public Slow() throws InterruptedException {
+            started.countDown();
+            Thread.sleep(500);
+            done.countDown();
+        }
+
+    }
+
+    public static class Pending {
+
+        private static final AtomicInteger created = new AtomicInteger();
+
+        public Pending() {
+            created.incrementAndGet();
+        }
+
+    }
+
+    public static class Failing {
+
+        public Failing() throws InterruptedException {
+            // Fail while the slow build runs, not before it is started.
+            Slow.started.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("failing");
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.annotation.Component;
+import com.chuan.simple.bean.annotation.Conditional;
+import com.chuan.simple.bean.core.handler.TestClasses;
+import com.chuan.simple.bean.index.ComponentIndex;
+
+public class BuilderConditionTest {
+
+    private static final String COMPONENT = Component.class.getName();
+
+    /**
+     * The classes initialized by the tests.
+     */
+    private static final Set<String> initialized =
+            ConcurrentHashMap.newKeySet();
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Rule
+    public final TestClasses classes = new TestClasses();
+
+    @Test
+    public void buildersAreOnlyRegisteredIfTheirConditionsHold()
+            throws IOException {
+        SimpleContext context = new SimpleContext();
+        context.setAttribute("mode", "fast");
+        context.addConfig(new Resource(configs.write("conditions.sp",
+                builder("present", Plain.class, "on-class:java.lang.String"),
+                builder("absent", Skipped.class, "on-class:no.such.Driver"),
+                builder("fallback", Plain.class,
+                        "on-missing-class:no.such.Driver"),
+                builder("fast", Plain.class, "on-attribute:mode=fast"),
+                builder("slow", Skipped.class, "on-attribute:mode=slow"),
+                builder("dependent", Plain.class, "on-builder:present"),
+                // Registered later, so not found yet.
+                builder("early", Skipped.class, "on-builder:late"),
+                builder("late", Plain.class, null),
+                builder("replacement", Skipped.class,
+                        "on-missing-builder:present"))));
+        context.refresh();
+        assertEquals(new HashSet<>(Arrays.asList("present", "fallback",
+                "fast", "dependent", "late")),
+                new HashSet<>(context.getRegistry().getBuilderNames()));
+        assertTrue(initialized.isEmpty());
+    }
+
+    @Test
+    public void scannedComponentsAreOnlyRegisteredIfConditionalHolds()
+            throws IOException {
+        Path folder = classes.folder("classes");
+        writeComponents(folder);
+        classes.use(folder);
+        assertEquals(new HashSet<>(Arrays.asList("active", "plain")),
+                scan());
+    }
+
+    @Test
+    public void conditionalOfIndexedComponentsIsReadFromTheClassFile()
+            throws IOException {
+        Path folder = classes.folder("classes");
+        writeComponents(folder);
+        // Not indexed, so the components are taken from the index.
+        classes.write(folder, "gen.cond.Unlisted",
+                TestClasses.classFile("gen.cond.Unlisted", COMPONENT));
+        Path index = folder.resolve(ComponentIndex.LOCATION);
+        Files.createDirectories(index.getParent());
+        String annotations = COMPONENT + "," + Conditional.class.getName();
+        Files.write(index, Arrays.asList(
+                "component gen.cond.Active - " + annotations,
+                "component gen.cond.Inactive - " + annotations,
+                "component gen.cond.Plain - " + COMPONENT),
+                StandardCharsets.UTF_8);
+        classes.use(folder);
+        assertEquals(new HashSet<>(Arrays.asList("active", "plain")),
+                scan());
+    }
+
+    private Set<String> scan() throws IOException {
+        SimpleContext context = new SimpleContext();
+        context.setAttribute("mode", "fast");
+        context.addConfig(new Resource(configs.write("scan.sp",
+                "scan",
+                "\tbase-package:gen.cond")));
+        context.refresh();
+        return new HashSet<>(context.getRegistry().getBuilderNames());
+    }
+
+    private void writeComponents(Path folder) throws IOException {
+        classes.write(folder, "gen.cond.Active", conditionalClassFile(
+                "gen.cond.Active", "onClass", "java.lang.String"));
+        classes.write(folder, "gen.cond.Inactive", conditionalClassFile(
+                "gen.cond.Inactive", "onAttribute", "mode=slow"));
+        classes.write(folder, "gen.cond.Plain",
+                TestClasses.classFile("gen.cond.Plain", COMPONENT));
+    }
+
+    private static String builder(String name, Class<?> clazz,
+            String condition) {
+        return "builder\n\tname:" + name + "\n\tclass:" + clazz.getName()
+                + (condition == null ? "" : "\n\t" + condition);
+    }
+
+    /**
+     * A component class annotated with {@code @Conditional} of the string
+     * array attribute.
+     */
+    private static byte[] conditionalClassFile(String className,
+            String attribute, String... values) {
+        ClassWriter cw = new ClassWriter(0);
+        new ClassReader(TestClasses.classFile(className, COMPONENT))
+                .accept(new ClassVisitor(Opcodes.ASM8, cw) {
+
+                    @Override
+                    public void visit(int version, int access, String name,
+                            String signature, String superName,
+                            String[] interfaces) {
+                        super.visit(version, access, name, signature,
+                                superName, interfaces);
+                        AnnotationVisitor conditional = visitAnnotation(
+                                Type.getDescriptor(Conditional.class), true);
+                        AnnotationVisitor array =
+                                conditional.visitArray(attribute);
+                        for (String value : values) {
+                            array.visit(null, value);
+                        }
+                        array.visitEnd();
+                        conditional.visitEnd();
+                    }
+
+                }, 0);
+        return cw.toByteArray();
+    }
+
+    public static class Plain {
+    }
+
+    public static class Skipped {
+
+        static {
+            initialized.add(Skipped.class.getName());
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+
+public class IncrementalRefreshTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private String aConfig;
+
+    private SimpleContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        aConfig = writeA("1");
+        String bcConfig = configs.write("bc.sp",
+                "builder",
+                "\tname:b",
+                "\tclass:" + B.class.getName(),
+                "\tfield",
+                "\t\tname:a",
+                "builder",
+                "\tname:c",
+                "\tclass:" + C.class.getName());
+        context = configs.context(aConfig, bcConfig);
+    }
+
+    private String writeA(String order) throws IOException {
+        return configs.write("a.sp",
+                "builder",
+                "\tname:a",
+                "\tclass:" + A.class.getName(),
+                "\torder:" + order);
+    }
+
+    @Test
+    public void unchangedBuildersAreReusedWithTheirSingletons() {
+        Object a = context.build("a");
+        Object b = context.build("b");
+        Object c = context.build("c");
+        RefreshReport report = context.refreshIncrementally();
+        assertTrue(report.isIncremental());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")),
+                report.getReused());
+        assertTrue(report.getRebuilt().isEmpty());
+        assertSame(a, context.build("a"));
+        assertSame(b, context.build("b"));
+        assertSame(c, context.build("c"));
+        assertSame(context.getRegistry(),
+                context.getBuilder("c").getRegistry());
+    }
+
+    @Test
+    public void changedBuildersAndTheirDependentsAreRebuilt()
+            throws IOException {
+        Object a = context.build("a");
+        Object b = context.build("b");
+        Object c = context.build("c");
+        writeA("2");
+        RefreshReport report = context.refreshIncrementally(
+                Collections.singleton(new Resource(aConfig)));
+        assertTrue(report.isIncremental());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+                report.getRebuilt());
+        assertEquals(Collections.singleton("c"), report.getReused());
+        assertNotSame(a, context.build("a"));
+        assertNotSame(b, context.build("b"));
+        assertSame(context.build("a"), ((B) context.build("b")).a);
+        assertSame(c, context.build("c"));
+    }
+
+    @Test
+    public void changedAttributesRebuildEveryBuilder() {
+        Object c = context.build("c");
+        context.setAttribute("mode", "test");
+        RefreshReport report = context.refreshIncrementally();
+        assertFalse(report.isIncremental());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")),
+                report.getRebuilt());
+        assertNotSame(c, context.build("c"));
+    }
+
+    @Test
+    public void failedRefreshKeepsReusedBuildersOnPublishedRegistry()
+            throws IOException {
+        String flakyConfig = writeFlaky("1");
+        context.addConfig(new Resource(flakyConfig));
+        context.refresh();
+        Registry published = context.getRegistry();
+        Object c = context.build("c");
+        writeFlaky("2");
+        Flaky.failing = true;
+        try {
+            context.refreshIncrementally(
+                    Collections.singleton(new Resource(flakyConfig)));
+            fail("The auto-init failure is not thrown");
+        } catch (RuntimeException e) {
+            assertSame(published, context.getRegistry());
+            assertSame(published, context.getBuilder("c").getRegistry());
+            assertSame(c, context.build("c"));
+        } finally {
+            Flaky.failing = false;
+        }
+    }
+
+    private String writeFlaky(String order) throws IOException {
+        return configs.write("flaky.sp",
+                "builder",
+                "\tname:flaky",
+                "\tclass:" + Flaky.class.getName(),
+                "\tauto-init:true",
+                "\torder:" + order);
+    }
+
+    public static class A {
+    }
+
+    public static class B {
+
+        public A a;
+
+    }
+
+    public static class C {
+    }
+
+    public static class Flaky {
+
+        static volatile boolean failing;
+
+        public Flaky() {
+            if (failing) {
+                throw new IllegalStateException("flaky");
+            }
+        }
+
+    }
+
+}
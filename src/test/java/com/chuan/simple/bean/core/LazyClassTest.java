@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.exception.SimpleCreateException;
+
+public class LazyClassTest {
+
+    /**
+     * The simple names of the classes initialized by the tests.
+     */
+    private static final Set<String> initialized =
+            ConcurrentHashMap.newKeySet();
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test
+    public void builderClassesAreLoadedOnFirstUse() throws IOException {
+        SimpleContext context = configs.context(configs.write("lazy.sp",
+                "builder",
+                "\tname:lazy",
+                "\tclass:" + Lazy.class.getName(),
+                "builder",
+                "\tname:unused",
+                "\tclass:" + Unused.class.getName()));
+        assertFalse(context.getBuilder("lazy").isBuilderClassResolved());
+        assertTrue(initialized.isEmpty());
+        // Indexed by the names read from the class files.
+        assertTrue(context.getBuilders(Runnable.class).isEmpty());
+        assertTrue(initialized.isEmpty());
+        assertEquals(Collections.singleton("lazy"),
+                context.getBuilders(Marker.class).keySet());
+        assertEquals(Collections.singleton("Lazy"), initialized);
+        assertNotNull(context.build("lazy"));
+        assertFalse(context.getBuilder("unused").isBuilderClassResolved());
+        assertFalse(initialized.contains("Unused"));
+    }
+
+    @Test
+    public void missingClassesAreReportedOnFirstUse() throws IOException {
+        SimpleContext context = configs.context(configs.write("missing.sp",
+                "builder",
+                "\tname:missing",
+                "\tclass:no.such.Missing",
+                "builder",
+                "\tname:present",
+                "\tclass:" + Present.class.getName()));
+        assertTrue(context.build("present") instanceof Present);
+        try {
+            context.build("missing");
+            fail("The missing class is not reported");
+        } catch (SimpleCreateException e) {
+            // Not while the config is parsed.
+        }
+    }
+
+    public interface Marker {
+    }
+
+    public static class Lazy implements Marker {
+
+        static {
+            initialized.add("Lazy");
+        }
+
+    }
+
+    public static class Unused {
+
+        static {
+            initialized.add("Unused");
+        }
+
+    }
+
+    public static class Present {
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.config.parser.LazyImport;
+import com.chuan.simple.bean.core.processor.Processor;
+
+public class LazyImportTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private SimpleContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        String nested = configs.write("nested.sp",
+                "builder",
+                "\tname:nested",
+                "\tclass:" + Nested.class.getName());
+        String first = configs.write("first.sp",
+                "builder",
+                "\tname:first",
+                "\talias:firstAlias",
+                "\tclass:" + First.class.getName(),
+                "import",
+                "\tresource:" + nested);
+        String second = configs.write("second.sp",
+                "builder",
+                "\tname:second",
+                "\tclass:" + Second.class.getName());
+        context = configs.context(configs.write("root.sp",
+                "builder",
+                "\tname:root",
+                "\tclass:" + Root.class.getName(),
+                "import",
+                "\tresource:" + first,
+                "\tlazy:true",
+                "import",
+                "\tresource:" + second,
+                "\tlazy:true"));
+    }
+
+    @Test
+    public void importsAreNotReadBeforeLookupMisses() {
+        assertNotNull(context.build("root"));
+        assertEquals(Collections.singleton("root"),
+                context.getRegistry().getBuilderNames());
+        for (LazyImport lazyImport : context.getRegistry().getLazyImports()) {
+            assertFalse(lazyImport.isCollected());
+        }
+    }
+
+    @Test
+    public void buildersAreLoadedByNameAliasAndType() {
+        assertNotNull(context.build("nested"));
+        assertSame(context.getBuilder("first"),
+                context.getBuilder("firstAlias"));
+        assertNull("The second import is parsed too early",
+                context.getRegistry().getBuilder("second"));
+        Map<String, Builder<?>> builders = context.getBuilders(Second.class);
+        assertEquals(Collections.singleton("second"), builders.keySet());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentLookupsOnlySeeProcessedBuilders() throws Exception {
+        Set<Builder<?>> processed =
+                Collections.newSetFromMap(new ConcurrentHashMap<>());
+        context.addProcessor(new Processor() {
+            @Override
+            public void processBuilders(Collection<Builder<?>> builders) {
+                processed.addAll(builders);
+            }
+        });
+        List<Callable<Builder<?>>> lookups = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String name = i % 2 == 0 ? "nested" : "second";
+            lookups.add(() -> {
+                Builder<?> builder = context.getBuilder(name);
+                assertTrue(name + " is visible before it is processed",
+                        processed.contains(builder));
+                return builder;
+            });
+        }
+        Set<Builder<?>> builders =
+                new HashSet<>(ConcurrentTasks.run(lookups));
+        assertEquals(2, builders.size());
+        for (Builder<?> builder : builders) {
+            assertSame(builder,
+                    context.getBuilder(builder.getBuilderName()));
+            assertSame(context.getRegistry(), builder.getRegistry());
+        }
+    }
+
+    @Test
+    public void incrementalRefreshKeepsLazilyLoadedBuilders() {
+        Object nested = context.build("nested");
+        RefreshReport report = context.refreshIncrementally();
+        assertTrue(report.isIncremental());
+        assertTrue(report.getReused().contains("nested"));
+        assertTrue(report.getReused().contains("first"));
+        assertSame(nested, context.build("nested"));
+        assertFalse(report.getRebuilt().contains("second"));
+    }
+
+    @Test
+    public void malformedImportDoesNotFailOtherLookups() throws IOException {
+        String malformed = configs.write("malformed.sp",
+                "builder",
+                "\t\t\tname:malformed");
+        // The unknown class may be of any type, so every lookup by type
+        // parses the broken import.
+        String broken = configs.write("broken.sp",
+                "builder",
+                "\tname:broken",
+                "\tclass:no.such.Missing",
+                "import",
+                "\tresource:" + malformed);
+        String second = configs.write("second.sp",
+                "builder",
+                "\tname:second",
+                "\tclass:" + Second.class.getName());
+        context = configs.context(configs.write("root.sp",
+                "builder",
+                "\tname:root",
+                "\tclass:" + Root.class.getName(),
+                "import",
+                "\tresource:" + broken,
+                "\tlazy:true",
+                "import",
+                "\tresource:" + second,
+                "\tlazy:true"));
+        Map<String, Builder<?>> builders = context.getBuilders(Second.class);
+        assertEquals(Collections.singleton("second"), builders.keySet());
+        assertNull(context.getBuilder("broken"));
+        assertNotNull(context.build("root"));
+    }
+
+    public static class Root {
+    }
+
+    public static class First {
+    }
+
+    public static class Nested {
+    }
+
+    public static class Second {
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PlaceholderTemplateTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test
+    public void referencedNamesIncludeTheNamesWithDefaults() {
+        PlaceholderTemplate template =
+                PlaceholderTemplate.of("${host:localhost}:${port}");
+        assertFalse(template.isConstant());
+        assertTrue(template.references(Collections.singleton("host")));
+        assertTrue(template.references(Collections.singleton("port")));
+        assertFalse(template.references(Collections.singleton("user")));
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("port", "80");
+        assertEquals("localhost:80", template.resolve(attributes));
+    }
+
+    @Test
+    public void constantsReferenceNoAttribute() {
+        String source = "no placeholder";
+        PlaceholderTemplate template = PlaceholderTemplate.of(source);
+        assertTrue(template.isConstant());
+        assertFalse(template.references(Arrays.asList("no", "placeholder")));
+        assertSame(source, template.resolve(new HashMap<>()));
+    }
+
+    @Test
+    public void nestedPlaceholdersReferenceEveryAttribute() {
+        PlaceholderTemplate template = PlaceholderTemplate.of("${${key}}");
+        assertTrue(template.references(Collections.singleton("any")));
+        assertTrue(PlaceholderTemplate.of("${open")
+                .references(Collections.singleton("any")));
+    }
+
+    @Test
+    public void resultIsReusedWhileTheReferencedValuesAreKept() {
+        PlaceholderTemplate template = PlaceholderTemplate.of("${a}-${b}");
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("a", "1");
+        attributes.put("b", "2");
+        String first = template.resolve(attributes);
+        assertEquals("1-2", first);
+        attributes.put("unrelated", "3");
+        assertSame(first, template.resolve(new HashMap<>(attributes)));
+        attributes.put("b", "4");
+        assertEquals("1-4", template.resolve(attributes));
+    }
+
+    @Test
+    public void changedAttributesRefreshOnlyTheBuildersReferencingThem()
+            throws IOException {
+        SimpleContext context = configs.context(configs.write("values.sp",
+                "builder",
+                "\tname:greeter",
+                "\tclass:" + Value.class.getName(),
+                "\tfield",
+                "\t\tname:value",
+                "\t\tval:${greeting}",
+                "builder",
+                "\tname:messenger",
+                "\tclass:" + Value.class.getName(),
+                "\tfield",
+                "\t\tname:value",
+                "\t\tval:${message}",
+                "builder",
+                "\tname:plain",
+                "\tclass:" + Value.class.getName(),
+                "\tfield",
+                "\t\tname:value",
+                "\t\tval:${other}"));
+        context.setAttribute("greeting", "hello");
+        context.setAttribute("message", "${greeting}!");
+        context.setAttribute("other", "plain");
+        Value greeter = (Value) context.build("greeter");
+        Value messenger = (Value) context.build("messenger");
+        Value plain = (Value) context.build("plain");
+        assertEquals("hello", greeter.value);
+        context.setAttribute("greeting", "hi");
+        Value rebuilt = (Value) context.build("greeter");
+        assertNotSame(greeter, rebuilt);
+        assertEquals("hi", rebuilt.value);
+        // Through the value of the message attribute.
+        assertNotSame(messenger, context.build("messenger"));
+        assertSame(plain, context.build("plain"));
+        context.setAttribute("greeting", "hi");
+        assertSame(rebuilt, context.build("greeter"));
+    }
+
+    public static class Value {
+
+        String value;
+
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.element.entity.FieldElement;
+import com.chuan.simple.bean.core.element.installer.ElementInstaller;
+import com.chuan.simple.bean.core.element.installer.FieldInstaller;
+import com.chuan.simple.bean.core.processor.Processor;
+import com.chuan.simple.helper.resource.Resource;
+
+public class RefreshTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private SimpleContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        context = configs.context(configs.write("x.sp",
+                "builder",
+                "\tname:x",
+                "\tclass:" + X.class.getName()));
+    }
+
+    @Test(timeout = 10000)
+    public void readersSeePreviousRegistryWhileRefreshing() throws Exception {
+        Registry previous = context.getRegistry();
+        Object x = context.build("x");
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        context.addProcessor(new Processor() {
+            @Override
+            public void processBuilders(Collection<Builder<?>> builders) {
+                processing.countDown();
+                await(release);
+            }
+        });
+        context.addConfig(new Resource(configs.write("y.sp",
+                "builder",
+                "\tname:y",
+                "\tclass:" + X.class.getName())));
+        CompletableFuture<Void> refresh =
+                CompletableFuture.runAsync(context::refresh);
+        processing.await();
+        try {
+            assertSame(previous, context.getRegistry());
+            assertSame(x, context.build("x"));
+            assertNull(context.getBuilder("y"));
+            assertNull(context.refreshIncrementally());
+        } finally {
+            release.countDown();
+        }
+        refresh.get();
+        assertNotSame(previous, context.getRegistry());
+        assertNotNull(context.getBuilder("y"));
+    }
+
+    @Test
+    public void failedRefreshKeepsPublishedRegistry() {
+        Registry previous = context.getRegistry();
+        Object x = context.build("x");
+        AtomicBoolean failing = new AtomicBoolean(true);
+        context.addProcessor(new Processor() {
+            @Override
+            public void processBuilders(Collection<Builder<?>> builders) {
+                if (failing.get()) {
+                    throw new IllegalStateException("refresh failed");
+                }
+            }
+        });
+        try {
+            context.refresh();
+            fail("The processor failure is not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(previous, context.getRegistry());
+            assertSame(x, context.build("x"));
+        }
+        failing.set(false);
+        context.refresh();
+        assertNotSame(previous, context.getRegistry());
+        assertNotNull(context.getBuilder("x"));
+    }
+
+    @Test
+    public void refreshesShareHandlerClassesAndKeepCustomInstallers() {
+        Map<String, Class<?>> handlerClasses = context.getHandlerClasses();
+        assertTrue(handlerClasses.containsKey("scan"));
+        ElementInstaller<?, ?> installer = new FieldInstaller();
+        context.addElementInstaller(FieldElement.class, installer);
+        context.refresh();
+        assertSame(handlerClasses, context.getHandlerClasses());
+        assertSame(installer,
+                context.getElementInstaller(FieldElement.class));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class X {
+    }
+
+}
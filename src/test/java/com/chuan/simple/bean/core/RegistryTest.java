@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.builder.ConstructorBuilder;
+
+public class RegistryTest {
+
+    /**
+     * The context {@link RegisteringService} registers its builder into.
+     */
+    private static SimpleContext registering;
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test
+    public void buildersAreFoundByEverySuperType() throws IOException {
+        SimpleContext context = configs.context(configs.write("types.sp",
+                "builder",
+                "\tname:service",
+                "\tclass:" + DefaultService.class.getName(),
+                "builder",
+                "\tname:other",
+                "\tclass:" + Other.class.getName(),
+                "\torder:5"));
+        assertEquals(new HashSet<>(Arrays.asList("service")),
+                context.getBuilders(Service.class).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("service")),
+                context.getBuilders(AbstractService.class).keySet());
+        assertEquals(new HashSet<>(Arrays.asList("service", "other")),
+                context.getBuilders(Serializable.class).keySet());
+        assertSame(context.getBuilder("other"),
+                context.getBuilder(Object.class));
+        assertNull(context.getBuilder(Runnable.class));
+    }
+
+    @Test
+    public void winnersChosenWhileTheIndexChangesAreNotCached()
+            throws IOException {
+        SimpleContext context = configs.context(configs.write("types.sp",
+                "builder",
+                "\tname:low",
+                "\tclass:" + RegisteringService.class.getName()));
+        registering = context;
+        // Loading the class of the only indexed builder registers a
+        // builder of a higher order.
+        assertSame(context.getBuilder("low"),
+                context.getBuilder(Service.class));
+        assertSame(context.getBuilder("high"),
+                context.getBuilder(Service.class));
+        Builder<?> high = context.getBuilder("high");
+        high.setOrder(-1);
+        context.invalidateBuilderOrder(high);
+        assertSame(context.getBuilder("low"),
+                context.getBuilder(Service.class));
+    }
+
+    public interface Service extends Serializable {
+    }
+
+    public abstract static class AbstractService implements Service {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    public static class DefaultService extends AbstractService {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    public static class Other implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    public static class HighService implements Service {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+    public static class RegisteringService implements Service {
+
+        private static final long serialVersionUID = 1L;
+
+        static {
+            ConstructorBuilder<?> builder =
+                    new ConstructorBuilder<>(registering);
+            builder.setClassName(HighService.class.getName());
+            builder.setBuilderName("high");
+            builder.setOrder(10);
+            registering.addBuilder("high", builder);
+        }
+
+    }
+
+}
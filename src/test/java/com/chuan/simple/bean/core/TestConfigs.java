@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.rules.ExternalResource;
+
+import com.chuan.simple.helper.resource.Resource;
+
+/**
+ * Writes .sp configs into a temporary folder, deleted after each test, and
+ * creates contexts of them.
+ */
+public class TestConfigs extends ExternalResource {
+
+    private Path folder;
+
+    @Override
+    protected void before() throws IOException {
+        folder = Files.createTempDirectory("simple-bean");
+    }
+
+    @Override
+    protected void after() {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            // Left to the temporary folder of the system.
+        }
+    }
+
+    /**
+     * Write the lines into the config file of the name.
+     * @return the absolute path of the file
+     */
+    public String write(String name, String... lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        Path file = folder.resolve(name);
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toAbsolutePath().toString();
+    }
+
+    /**
+     * Create and refresh a context of the config files.
+     */
+    public SimpleContext context(String... paths) {
+        SimpleContext context = new SimpleContext();
+        for (String path : paths) {
+            context.addConfig(new Resource(path));
+        }
+        context.refresh();
+        return context;
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class AsmInvokerFactoryTest {
+
+    private final AsmInvokerFactory asm = new AsmInvokerFactory();
+
+    private final ReflectiveInvokerFactory reflective =
+            ReflectiveInvokerFactory.INSTANCE;
+
+    @Test
+    public void generatedInvokersMatchReflectiveInvokers() throws Throwable {
+        Constructor<?> constructor =
+                Bean.class.getConstructor(String.class, int.class);
+        Method describe = Bean.class.getMethod("describe", String.class);
+        Method of = Bean.class.getMethod("of", String.class);
+        for (Executable executable : new Executable[] { constructor,
+                describe, of }) {
+            assertTrue(isGenerated(asm.invoker(executable)));
+        }
+        Object[] args = { "a", 2 };
+        assertEquals(reflective.invoker(constructor).invoke(null, args),
+                asm.invoker(constructor).invoke(null, args));
+        Bean bean = new Bean("b", 3);
+        assertEquals(reflective.invoker(describe).invoke(bean,
+                new Object[] { "!" }),
+                asm.invoker(describe).invoke(bean, new Object[] { "!" }));
+        assertEquals(reflective.invoker(of).invoke(null, new Object[] { "c" }),
+                asm.invoker(of).invoke(null, new Object[] { "c" }));
+    }
+
+    @Test
+    public void generatedInvokersThrowTheExceptionOfTheMember()
+            throws Throwable {
+        Method fail = Bean.class.getMethod("fail");
+        for (InvokerFactory factory : new InvokerFactory[] { asm,
+                reflective }) {
+            try {
+                factory.invoker(fail).invoke(new Bean("a", 1), new Object[0]);
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("failed", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void generatedSettersSetPublicFields() throws Throwable {
+        Field count = Bean.class.getField("count");
+        FieldSetter setter = asm.setter(count);
+        assertTrue(isGenerated(setter));
+        Bean bean = new Bean("a", 1);
+        setter.set(bean, 5);
+        assertEquals(5, bean.count);
+    }
+
+    @Test
+    public void unreachableMembersAreInvokedByMethodHandles()
+            throws Throwable {
+        Constructor<?> hidden =
+                Bean.class.getDeclaredConstructor(String.class);
+        Invoker invoker = asm.invoker(hidden);
+        assertFalse(isGenerated(invoker));
+        assertEquals(new Bean("a", 0),
+                invoker.invoke(null, new Object[] { "a" }));
+        Constructor<?> packagePrivate =
+                Hidden.class.getDeclaredConstructor();
+        invoker = asm.invoker(packagePrivate);
+        assertFalse(isGenerated(invoker));
+        assertTrue(invoker.invoke(null, new Object[0]) instanceof Hidden);
+    }
+
+    @Test
+    public void finalFieldsAreNotSetByGeneratedSetters() throws Throwable {
+        FieldSetter setter = asm.setter(Bean.class.getField("label"));
+        assertFalse(isGenerated(setter));
+        Bean bean = new Bean("a", 1);
+        setter.set(bean, "b");
+        assertEquals("b", bean.label);
+    }
+
+    @Test
+    public void classesOfChildLoadersGetGeneratedInvokers() throws Throwable {
+        ChildLoader child =
+                new ChildLoader(AsmInvokerFactoryTest.class.getClassLoader());
+        Class<?> childBean = child.defineChildBean();
+        Invoker invoker = asm.invoker(childBean.getConstructor());
+        FieldSetter setter = asm.setter(childBean.getField("name"));
+        assertTrue(isGenerated(invoker));
+        assertTrue(isGenerated(setter));
+        ClassLoader generated = invoker.getClass().getClassLoader();
+        assertSame(child, generated.getParent());
+        assertSame(generated, setter.getClass().getClassLoader());
+        Object bean = invoker.invoke(null, new Object[0]);
+        setter.set(bean, "child");
+        assertEquals("child", childBean.getField("name").get(bean));
+    }
+
+    private static boolean isGenerated(Object invoker) {
+        return invoker.getClass().getName().startsWith(
+                AsmInvokerFactory.class.getPackage().getName() + ".Generated");
+    }
+
+    public static class Bean {
+
+        public final String label;
+
+        public int count;
+
+        public Bean(String label, int count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        private Bean(String label) {
+            this(label, 0);
+        }
+
+        public static Bean of(String label) {
+            return new Bean(label, label.length());
+        }
+
+        public String describe(String suffix) {
+            return label + count + suffix;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Bean && ((Bean) obj).label.equals(label)
+                    && ((Bean) obj).count == count;
+        }
+
+        @Override
+        public int hashCode() {
+            return label.hashCode() * 31 + count;
+        }
+
+    }
+
+    static class Hidden {
+    }
+
+    /**
+     * Defines a public bean class the loader of simple-bean can't see.
+     */
+    private static class ChildLoader extends ClassLoader implements Opcodes {
+
+        private ChildLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> defineChildBean() {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(V1_8, ACC_PUBLIC, "child/ChildBean", null,
+                    "java/lang/Object", null);
+            cw.visitField(ACC_PUBLIC, "name", "Ljava/lang/String;", null,
+                    null).visitEnd();
+            MethodVisitor mv =
+                    cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>",
+                    "()V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+            cw.visitEnd();
+            byte[] bytes = cw.toByteArray();
+            return defineClass("child.ChildBean", bytes, 0, bytes.length);
+        }
+
+    }
+
+}
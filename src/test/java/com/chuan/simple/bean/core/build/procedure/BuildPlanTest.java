@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.core.build.builder.Builder;
+import com.chuan.simple.bean.core.build.invoker.AsmInvokerFactory;
+import com.chuan.simple.bean.core.element.entity.Element;
+import com.chuan.simple.bean.core.element.entity.FieldElement;
+import com.chuan.simple.bean.core.element.installer.FieldInstaller;
+
+public class BuildPlanTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test
+    public void buildsByThePlanEqualTheFirstBuild() throws IOException {
+        SimpleContext context = configs.context(writePrototype());
+        Prototype first = (Prototype) context.build("prototype");
+        assertNotNull(planOf(context, "prototype"));
+        Prototype second = (Prototype) context.build("prototype");
+        assertNotSame(first, second);
+        assertEquals("a", second.label);
+        assertEquals(first.label, second.label);
+        assertEquals(first.suffix, second.suffix);
+        assertSame(first.singleton, second.singleton);
+        assertSame(context.build("singleton"), second.singleton);
+    }
+
+    @Test
+    public void refreshingTheBuilderDropsThePlan() throws IOException {
+        SimpleContext context = configs.context(writePrototype());
+        context.build("prototype");
+        BuildPlan plan = planOf(context, "prototype");
+        assertNotNull(plan);
+        context.getBuilder("prototype").refresh();
+        assertNull(planOf(context, "prototype"));
+        assertEquals("b", ((Prototype) context.build("prototype")).suffix);
+        assertNotNull(planOf(context, "prototype"));
+        assertNotSame(plan, planOf(context, "prototype"));
+    }
+
+    @Test
+    public void customInstallersParseEveryBuild() throws IOException {
+        SimpleContext context = configs.context(writePrototype());
+        context.addElementInstaller(FieldElement.class,
+                new UpperCaseInstaller());
+        assertEquals("B", ((Prototype) context.build("prototype")).suffix);
+        assertNotNull(planOf(context, "prototype"));
+        assertEquals("B", ((Prototype) context.build("prototype")).suffix);
+    }
+
+    @Test
+    public void autowiredParametersFollowRefreshedBuilders()
+            throws IOException {
+        String singletonConfig = configs.write("singleton.sp",
+                "builder",
+                "\tname:singleton",
+                "\tclass:" + Singleton.class.getName());
+        SimpleContext context = configs.context(singletonConfig,
+                configs.write("autowired.sp",
+                        "builder",
+                        "\tname:autowired",
+                        "\tclass:" + Autowired.class.getName(),
+                        "\tscope:prototype",
+                        "\tautowired-executable:true"));
+        context.build("autowired");
+        assertSame(context.build("singleton"),
+                ((Autowired) context.build("autowired")).singleton);
+        configs.write("singleton.sp",
+                "builder",
+                "\tname:singleton",
+                "\tclass:" + Singleton.class.getName(),
+                "\torder:1");
+        context.refreshIncrementally();
+        assertSame(context.build("singleton"),
+                ((Autowired) context.build("autowired")).singleton);
+    }
+
+    @Test
+    public void valuesNeedingConversionAreSetByTheHelper() throws IOException {
+        SimpleContext context = configs.context(configs.write("widened.sp",
+                "builder",
+                "\tname:seven",
+                "\tclass:" + Integer.class.getName(),
+                "\tbuild-parameter",
+                "\t\tval:7",
+                "builder",
+                "\tname:widened",
+                "\tclass:" + Widened.class.getName(),
+                "\tscope:prototype",
+                "\tfield",
+                "\t\tname:value",
+                "\t\tref:seven"));
+        context.setInvokerFactory(new AsmInvokerFactory());
+        Widened first = (Widened) context.build("widened");
+        assertNotNull(context.getBuilder("widened")
+                .getProcedure(CreateProcedure.class).getBuildPlan());
+        Widened second = (Widened) context.build("widened");
+        assertNotSame(first, second);
+        assertEquals(7L, first.value);
+        assertEquals(7L, second.value);
+    }
+
+    private String writePrototype() throws IOException {
+        return configs.write("prototype.sp",
+                "builder",
+                "\tname:singleton",
+                "\tclass:" + Singleton.class.getName(),
+                "builder",
+                "\tname:prototype",
+                "\tclass:" + Prototype.class.getName(),
+                "\tscope:prototype",
+                "\tbuild-parameter",
+                "\t\tval:a",
+                "\tfield",
+                "\t\tname:suffix",
+                "\t\tval:b",
+                "\tfield",
+                "\t\tname:singleton",
+                "\t\tref:singleton");
+    }
+
+    private static BuildPlan planOf(SimpleContext context, String name) {
+        return context.getBuilder(name).getProcedure(CreateProcedure.class)
+                .getBuildPlan();
+    }
+
+    public static class Singleton {
+    }
+
+    public static class Prototype {
+
+        private final String label;
+
+        private String suffix;
+
+        private Singleton singleton;
+
+        public Prototype(String label) {
+            this.label = label;
+        }
+
+    }
+
+    public static class Autowired {
+
+        private final Singleton singleton;
+
+        public Autowired(Singleton singleton) {
+            this.singleton = singleton;
+        }
+
+    }
+
+    private static class UpperCaseInstaller extends FieldInstaller {
+
+        @Override
+        public void parse(Builder<?> owner, Element element) {
+            super.parse(owner, element);
+            if (element.getParsedValue() instanceof String) {
+                element.setParsedValue(
+                        ((String) element.getParsedValue()).toUpperCase());
+            }
+        }
+
+    }
+
+    public static class Widened {
+
+        public long value;
+
+    }
+
+}
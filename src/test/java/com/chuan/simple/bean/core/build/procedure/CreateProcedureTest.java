@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.ConcurrentTasks;
+import com.chuan.simple.bean.core.TestConfigs;
+
+public class CreateProcedureTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Before
+    public void setUp() throws IOException {
+        Slow.created.set(0);
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentBuildsShareOneSingleton() throws Exception {
+        SimpleContext context = configs.context(configs.write("slow.sp",
+                "builder",
+                "\tname:slow",
+                "\tclass:" + Slow.class.getName()));
+        List<Callable<Object>> builds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            builds.add(() -> context.build("slow"));
+        }
+        List<Object> beans = ConcurrentTasks.run(builds);
+        for (Object bean : beans) {
+            assertSame(beans.get(0), bean);
+        }
+        assertEquals(1, Slow.created.get());
+    }
+
+    @Test(timeout = 30000)
+    public void threadsBuildingSingletonsOfEachOtherDoNotDeadlock()
+            throws Exception {
+        String config = configs.write("circular.sp",
+                "builder",
+                "\tname:a",
+                "\tclass:" + A.class.getName(),
+                "\tfield",
+                "\t\tname:b",
+                "builder",
+                "\tname:b",
+                "\tclass:" + B.class.getName(),
+                "\tfield",
+                "\t\tname:a");
+        for (int i = 0; i < 20; i++) {
+            SimpleContext context = configs.context(config);
+            List<Callable<Object>> builds = new ArrayList<>();
+            builds.add(() -> context.build("a"));
+            builds.add(() -> context.build("b"));
+            List<Object> beans = ConcurrentTasks.run(builds);
+            A a = (A) beans.get(0);
+            B b = (B) beans.get(1);
+            assertNotNull(a);
+            assertNotNull(b);
+            assertSame(b, a.b);
+            assertSame(a, b.a);
+        }
+    }
+
+    public static class Slow {
+
+        static final AtomicInteger created = new AtomicInteger();
+
+        public Slow() throws InterruptedException {
+            Thread.sleep(50);
+            created.incrementAndGet();
+        }
+
+    }
+
+    public static class A {
+
+        public B b;
+
+        public A() throws InterruptedException {
+            Thread.sleep(5);
+        }
+
+    }
+
+    public static class B {
+
+        public A a;
+
+        public B() throws InterruptedException {
+            Thread.sleep(5);
+        }
+
+    }
+
+}
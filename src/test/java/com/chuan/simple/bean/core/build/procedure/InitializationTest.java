@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.build.procedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.ConcurrentTasks;
+import com.chuan.simple.bean.exception.SimpleCreateException;
+
+public class InitializationTest {
+
+    private final WaiterGraph waiters = new WaiterGraph();
+
+    @Test(timeout = 10000)
+    public void runsStepOnceForConcurrentThreads() throws Exception {
+        Initialization initialization = new Initialization();
+        AtomicInteger runs = new AtomicInteger();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                initialization.initialize(() -> {
+                    runs.incrementAndGet();
+                    sleep(50);
+                }, waiters);
+                return initialization.isDone();
+            });
+        }
+        for (boolean done : ConcurrentTasks.run(tasks)) {
+            assertTrue(done);
+        }
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void runningThreadReentersStep() {
+        Initialization initialization = new Initialization();
+        AtomicInteger runs = new AtomicInteger();
+        initialization.initialize(() -> {
+            runs.incrementAndGet();
+            initialization.initialize(runs::incrementAndGet, waiters);
+        }, waiters);
+        assertEquals(1, runs.get());
+        assertTrue(initialization.isDone());
+    }
+
+    @Test
+    public void failedStepRunsAgain() {
+        Initialization initialization = new Initialization();
+        try {
+            initialization.initialize(() -> {
+                throw new IllegalStateException("failed");
+            }, waiters);
+            fail("The step failure is not thrown");
+        } catch (IllegalStateException e) {
+            assertFalse(initialization.isDone());
+        }
+        AtomicInteger runs = new AtomicInteger();
+        initialization.initialize(runs::incrementAndGet, waiters);
+        assertEquals(1, runs.get());
+        assertTrue(initialization.isDone());
+    }
+
+    @Test(timeout = 10000)
+    public void waitingThreadRegistersOnceAndWakesWhenDone()
+            throws Exception {
+        Initialization initialization = new Initialization();
+        AtomicInteger awaits = new AtomicInteger();
+        WaiterGraph counting = new WaiterGraph() {
+            @Override
+            public synchronized boolean await(Thread owner) {
+                awaits.incrementAndGet();
+                return super.await(owner);
+            }
+        };
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread runner = new Thread(() -> initialization.initialize(() -> {
+            running.countDown();
+            await(release);
+        }, counting));
+        runner.start();
+        running.await();
+        Thread waiter = new Thread(
+                () -> initialization.initialize(() -> fail(), counting));
+        waiter.start();
+        // Failed by the timeout of the test if it never parks.
+        while (waiter.getState() != Thread.State.WAITING) {
+            sleep(10);
+        }
+        release.countDown();
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertEquals(1, awaits.get());
+        assertFalse(counting.isWaiting(waiter));
+        runner.join();
+    }
+
+    @Test(timeout = 10000)
+    public void resetRestartsOnlyDoneSteps() throws Exception {
+        Initialization initialization = new Initialization();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable step = () -> {
+            runs.incrementAndGet();
+            running.countDown();
+            await(release);
+        };
+        Thread first = new Thread(() -> initialization.initialize(step,
+                waiters));
+        first.start();
+        running.await();
+        initialization.reset();
+        Thread second = new Thread(() -> initialization.initialize(step,
+                waiters));
+        second.start();
+        sleep(100);
+        assertEquals(1, runs.get());
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(1, runs.get());
+        assertTrue(initialization.isDone());
+        initialization.reset();
+        initialization.initialize(step, waiters);
+        assertEquals(2, runs.get());
+    }
+
+    @Test(timeout = 10000)
+    public void threadsWaitingForEachOtherFailInsteadOfDeadlock()
+            throws Exception {
+        Initialization first = new Initialization();
+        Initialization second = new Initialization();
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        List<Callable<Throwable>> tasks = new ArrayList<>();
+        tasks.add(() -> initialize(first, second, bothRunning));
+        tasks.add(() -> initialize(second, first, bothRunning));
+        List<Throwable> failures = ConcurrentTasks.run(tasks);
+        int failed = 0;
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                assertTrue(failure instanceof SimpleCreateException);
+                failed++;
+            }
+        }
+        assertEquals(1, failed);
+        // The surviving thread takes over the step of the failed one.
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+    }
+
+    /**
+     * Run the step of {@code own}, which initializes {@code other} once both
+     * threads are running their steps.
+     */
+    private Throwable initialize(Initialization own, Initialization other,
+            CountDownLatch bothRunning) {
+        try {
+            own.initialize(() -> {
+                bothRunning.countDown();
+                await(bothRunning);
+                other.initialize(() -> {
+                }, waiters);
+            }, waiters);
+            return null;
+        } catch (SimpleCreateException e) {
+            return e;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.core.config.node.Node;
+
+public class NodeCacheTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    /**
+     * The root, the node and its attribute.
+     */
+    private static final long CONFIG_WEIGHT = 3;
+
+    @Test
+    public void leastRecentlyUsedConfigsAreEvictedByWeight()
+            throws IOException {
+        NodeCache cache = new NodeCache(CONFIG_WEIGHT * 2 + 1);
+        SimpleLoader loader = new SimpleLoader(cache);
+        Resource a = new Resource(configs.write("a.sp", "a", "\tx:1"));
+        Resource b = new Resource(configs.write("b.sp", "b", "\tx:1"));
+        Resource c = new Resource(configs.write("c.sp", "c", "\tx:1"));
+        Node first = loader.load(a).getNode();
+        loader.load(b);
+        assertEquals(CONFIG_WEIGHT * 2, cache.getWeight());
+        assertSame(first, loader.load(a).getNode());
+        loader.load(c);
+        assertEquals(2, cache.size());
+        assertEquals(CONFIG_WEIGHT * 2, cache.getWeight());
+        assertStats(cache, 1, 3, 1, 0);
+        assertSame(first, loader.load(a).getNode());
+        loader.load(b);
+        assertStats(cache, 2, 4, 2, 0);
+    }
+
+    @Test
+    public void configsHeavierThanTheCacheAreNotKept() throws IOException {
+        NodeCache cache = new NodeCache(CONFIG_WEIGHT - 1);
+        SimpleLoader loader = new SimpleLoader(cache);
+        Resource a = new Resource(configs.write("a.sp", "a", "\tx:1"));
+        loader.load(a);
+        loader.load(a);
+        assertEquals(0, cache.size());
+        assertStats(cache, 0, 2, 0, 0);
+    }
+
+    @Test
+    public void filesAreParsedAgainOnceTheirStampChanged()
+            throws IOException {
+        NodeCache cache = new NodeCache(NodeCache.DEFAULT_MAX_WEIGHT);
+        SimpleLoader loader = new SimpleLoader(cache);
+        File file = new File(configs.write("a.sp", "a", "\tx:1"));
+        Resource resource = new Resource(file.getPath());
+        Node first = loader.load(resource).getNode();
+        assertSame(first, loader.load(resource).getNode());
+        // Same size, only the modification time tells.
+        Files.write(file.toPath(),
+                "a\n\tx:2\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        Node second = loader.load(resource).getNode();
+        assertEquals("2", second.getChilds().get(0).attrString("x"));
+        // Same modification time, only the size tells.
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(),
+                "a\n\tx:33\n".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+        assertEquals("33", loader.load(resource).getNode().getChilds()
+                .get(0).attrString("x"));
+        assertStats(cache, 1, 3, 0, 2);
+    }
+
+    @Test
+    public void otherResourcesAreComparedByChecksum() throws IOException {
+        NodeCache cache = new NodeCache(NodeCache.DEFAULT_MAX_WEIGHT);
+        SimpleLoader loader = new SimpleLoader(cache);
+        Map<String, String> contents = new ConcurrentHashMap<>();
+        contents.put("/a.sp", "a\n\tx:1\n");
+        Resource resource = new Resource(memory("/a.sp", contents));
+        Node first = loader.load(resource).getNode();
+        assertSame(first, loader.load(resource).getNode());
+        contents.put("/a.sp", "a\n\tx:2\n");
+        assertEquals("2", loader.load(resource).getNode().getChilds().get(0)
+                .attrString("x"));
+        assertStats(cache, 1, 2, 0, 1);
+    }
+
+    @Test
+    public void jarEntriesAreStampedByTheJar() throws IOException {
+        NodeCache cache = new NodeCache(NodeCache.DEFAULT_MAX_WEIGHT);
+        SimpleLoader loader = new SimpleLoader(cache);
+        // The empty file is replaced by the jar.
+        File jar = new File(configs.write("configs.jar"));
+        writeJar(jar.toPath(), "a\n\tx:1\n");
+        Resource resource =
+                new Resource(new URL("jar:" + jar.toURI() + "!/conf/a.sp"));
+        assertEquals(jar, NodeCache.stampFile(resource));
+        Node first = loader.load(resource).getNode();
+        assertSame(first, loader.load(resource).getNode());
+        jar.setLastModified(jar.lastModified() + 2000);
+        loader.load(resource);
+        assertStats(cache, 1, 2, 0, 1);
+    }
+
+    @Test
+    public void invalidatingCountsTheDroppedConfigs() throws IOException {
+        NodeCache cache = new NodeCache(NodeCache.DEFAULT_MAX_WEIGHT);
+        SimpleLoader loader = new SimpleLoader(cache);
+        Resource a = new Resource(configs.write("a.sp", "a", "\tx:1"));
+        Resource b = new Resource(configs.write("b.sp", "b", "\tx:1"));
+        loader.load(a);
+        loader.load(b);
+        cache.invalidate(a);
+        assertEquals(1, cache.size());
+        assertEquals(CONFIG_WEIGHT, cache.getWeight());
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertStats(cache, 0, 2, 0, 2);
+    }
+
+    private static void assertStats(NodeCache cache, long hits, long misses,
+            long evictions, long invalidations) {
+        NodeCache.Stats stats = cache.getStats();
+        assertEquals("hits", hits, stats.getHits());
+        assertEquals("misses", misses, stats.getMisses());
+        assertEquals("evictions", evictions, stats.getEvictions());
+        assertEquals("invalidations", invalidations,
+                stats.getInvalidations());
+    }
+
+    private static void writeJar(Path jar, String config) throws IOException {
+        try (JarOutputStream out =
+                new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("conf/a.sp"));
+            out.write(config.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * A URL reading the current content of the path from the map.
+     */
+    private static URL memory(String path, Map<String, String> contents)
+            throws IOException {
+        return new URL("memory", null, -1, path, new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) {
+                return new URLConnection(url) {
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(
+                                contents.get(url.getPath())
+                                        .getBytes(StandardCharsets.UTF_8));
+                    }
+                };
+            }
+        });
+    }
+
+}
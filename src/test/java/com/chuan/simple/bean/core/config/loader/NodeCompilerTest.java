@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.core.config.node.Node;
+
+public class NodeCompilerTest {
+
+    private static final String[] CONFIG = { "# compiled",
+            "builder",
+            "\tname:first",
+            "\tclass:com.chuan.First",
+            "\tfield",
+            "\t\tname:value",
+            "\t\tval:a:b",
+            "a.b.c",
+            "\tx:1",
+            "..d",
+            "\ty:2",
+            "",
+            "import",
+            "\tresource:./other.sp" };
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private final SimpleLoader loader = new SimpleLoader(null);
+
+    @Test
+    public void compiledTreeEqualsTheParsedText() throws IOException {
+        File source = new File(configs.write("a.sp", CONFIG));
+        Node parsed = loader.load(new Resource(source.getPath())).getNode();
+        File compiled = NodeCompiler.compile(source);
+        assertEquals(new File(source.getParentFile(), "a.spc"), compiled);
+        byte[] content = Files.readAllBytes(source.toPath());
+        Node read = NodeCompiler.read(
+                ByteBuffer.wrap(Files.readAllBytes(compiled.toPath())),
+                NodeCompiler.checksum(content), content.length);
+        assertSameTree(parsed, read);
+        assertSameTree(parsed,
+                loader.load(new Resource(source.getPath())).getNode());
+    }
+
+    @Test
+    public void loaderTakesTheCompiledTreeOfTheSameSource()
+            throws IOException {
+        File source = new File(configs.write("a.sp", CONFIG));
+        writeCompiled(source, marker(), source);
+        assertSameTree(marker(),
+                loader.load(new Resource(source.getPath())).getNode());
+    }
+
+    @Test
+    public void compiledTreeOfAChangedSourceIsIgnored() throws IOException {
+        File source = new File(configs.write("a.sp", CONFIG));
+        writeCompiled(source, marker(), source);
+        // Same length, so only the checksum differs.
+        String content = new String(Files.readAllBytes(source.toPath()),
+                StandardCharsets.UTF_8);
+        Files.write(source.toPath(), content.replace("first", "other")
+                .getBytes(StandardCharsets.UTF_8));
+        Node changed = loader.load(new Resource(source.getPath())).getNode();
+        assertEquals("other", changed.getChilds().get(0).attrString("name"));
+        Files.write(source.toPath(), Arrays.asList(CONFIG[1], CONFIG[2]),
+                StandardCharsets.UTF_8);
+        changed = loader.load(new Resource(source.getPath())).getNode();
+        assertEquals(1, changed.getChilds().size());
+    }
+
+    @Test
+    public void corruptOrForeignCompiledTreesAreIgnored() throws IOException {
+        File source = new File(configs.write("a.sp", CONFIG));
+        Node parsed = loader.load(new Resource(source.getPath())).getNode();
+        byte[] content = Files.readAllBytes(source.toPath());
+        byte[] compiled = compile(marker(), content);
+        File target = new File(source.getParentFile(), "a.spc");
+        byte[] truncated = Arrays.copyOf(compiled, compiled.length - 3);
+        byte[] otherVersion = compiled.clone();
+        otherVersion[7]++;
+        byte[] otherMagic = compiled.clone();
+        otherMagic[0]++;
+        byte[] badIndex = compiled.clone();
+        // The name index of the root node, the tree of the marker takes the
+        // last 32 bytes.
+        Arrays.fill(badIndex, compiled.length - 32, compiled.length - 28,
+                (byte) 0x7f);
+        for (byte[] bytes : new byte[][] { truncated, otherVersion,
+                otherMagic, badIndex, new byte[3] }) {
+            assertNull(NodeCompiler.read(ByteBuffer.wrap(bytes),
+                    NodeCompiler.checksum(content), content.length));
+            Files.write(target.toPath(), bytes);
+            assertSameTree(parsed,
+                    loader.load(new Resource(source.getPath())).getNode());
+        }
+    }
+
+    @Test
+    public void configsInJarsTakeTheCompiledSibling() throws IOException {
+        byte[] content = String.join("\n", CONFIG)
+                .getBytes(StandardCharsets.UTF_8);
+        // The empty file is replaced by the jar.
+        Path jar = new File(configs.write("configs.jar")).toPath();
+        try (JarOutputStream out =
+                new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("conf/a.sp"));
+            out.write(content);
+            out.putNextEntry(new JarEntry("conf/a.spc"));
+            out.write(compile(marker(), content));
+            out.putNextEntry(new JarEntry("conf/b.sp"));
+            out.write(content);
+            out.closeEntry();
+        }
+        String root = "jar:" + jar.toUri() + "!/conf/";
+        assertSameTree(marker(), loader.load(
+                new Resource(new URL(root + "a.sp"))).getNode());
+        assertEquals(3, loader.load(new Resource(
+                new URL(root + "b.sp"))).getNode().getChilds()
+                .size());
+    }
+
+    private static Node marker() {
+        Node root = new Node("root");
+        Node marker = new Node("marker");
+        marker.attr("from", "compiled");
+        marker.setParent(root);
+        root.addChild(marker);
+        return root;
+    }
+
+    /**
+     * Write the tree as the compiled config of {@code source}, stamped with
+     * the content of {@code stamp}.
+     */
+    private static void writeCompiled(File source, Node root, File stamp)
+            throws IOException {
+        byte[] content = Files.readAllBytes(stamp.toPath());
+        Files.write(new File(source.getParentFile(),
+                source.getName().replace(".sp", ".spc")).toPath(),
+                compile(root, content));
+    }
+
+    private static byte[] compile(Node root, byte[] content)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NodeCompiler.write(root, NodeCompiler.checksum(content),
+                content.length, out);
+        return out.toByteArray();
+    }
+
+    static void assertSameTree(Node expected, Node actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.attrs(), actual.attrs());
+        assertEquals(expected.getName() + " childs",
+                expected.getChilds().size(), actual.getChilds().size());
+        for (int i = 0; i < expected.getChilds().size(); i++) {
+            Node child = actual.getChilds().get(i);
+            assertSame(actual, child.getParent());
+            assertSameTree(expected.getChilds().get(i), child);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.core.config.loader.SimpleLoader.IllegalConfigException;
+import com.chuan.simple.bean.core.config.node.Node;
+
+public class SimpleLoaderTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private final SimpleLoader loader = new SimpleLoader(null);
+
+    @Test
+    public void attributesAreSplitAsByColons() throws IOException {
+        assertSameAsSplit("node", "\ta:", "\t:b", "\tc::d", "\te:f:g",
+                "\th:i:", "\t k : l ");
+        assertSameAsSplit("node", "\t:");
+        assertSameAsSplit("node", "\t::");
+        assertSameAsSplit("node", "\t:::x");
+    }
+
+    @Test
+    public void crlfCommentAndBlankLinesAreSkipped() throws IOException {
+        assertSameAsSplit("# comment\r", "node\r", "\ta:b\r", "\r", "\t\t\r",
+                "\t# indented comment", "\t\t\t# deep comment",
+                "\tchild\r", "\t\tc:d\r", "other\r");
+        assertSameAsSplit("node", "\ta:b", "", "\t\t\t", "\tc:d");
+    }
+
+    @Test
+    public void nestedNamesAndNewNodesAreBuiltAsBefore() throws IOException {
+        assertSameAsSplit("aa", "\tbb", "\t\tcc", "\t\t\ta.b.c:xx",
+                "\t\t\t..d:yy", "..dd", "\txx:xx", ".ee", "\txx:xx");
+        assertSameAsSplit("aa.bb.dd", "\txx:yy", "..cc", "\txx:yy");
+        assertSameAsSplit("aa.bb.dd", "\txx:yy", ".$.cc", "\txx:yy");
+        assertSameAsSplit("aa.bb", "\tx.y:1", "\t.$.z:2", "\t$.w:3");
+        assertSameAsSplit("..aa", "\tx:1");
+        assertSameAsSplit("node", "\t\t\tx:1");
+        assertSameAsSplit("node", "\tchild", "\t\t\tx:1");
+    }
+
+    @Test
+    public void linesLongerThanTheBufferAreKept() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append("n").append(i).append('.');
+        }
+        assertSameAsSplit("node", "\tlong:" + value,
+                "\t" + name + "last:" + value, "\t\t\t\t" + value + ":x",
+                "next", "\tshort:1");
+    }
+
+    /**
+     * Load the lines by both loaders, they either fail both or build equal
+     * trees.
+     */
+    private void assertSameAsSplit(String... lines) throws IOException {
+        String path = configs.write("config.sp", lines);
+        String content = new String(Files.readAllBytes(Paths.get(path)),
+                StandardCharsets.UTF_8);
+        Node expected;
+        try {
+            expected = SplitLoader.load(content);
+        } catch (IllegalConfigException e) {
+            try {
+                loader.load(new Resource(path));
+                fail("Loaded a config the split loader rejects: "
+                        + e.getMessage());
+            } catch (IllegalConfigException rejected) {
+                assertEquals(e.getMessage().trim(),
+                        rejected.getMessage().trim());
+            }
+            return;
+        }
+        NodeCompilerTest.assertSameTree(expected,
+                loader.load(new Resource(path)).getNode());
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.loader;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.chuan.simple.helper.common.StringHelper;
+import com.chuan.simple.bean.core.config.loader.SimpleLoader.IllegalConfigException;
+import com.chuan.simple.bean.core.config.node.Node;
+
+/**
+ * The loader before {@link SimpleLoader} tokenized lines in a reused
+ * buffer, splitting each line by ':'. Kept as the reference of the config
+ * syntax.
+ */
+class SplitLoader {
+
+    private final Map<Integer, String> domainName = new HashMap<>();
+
+    private final Map<Integer, Node> domainNode = new HashMap<>();
+
+    private Node node;
+
+    private Node end;
+
+    private int curLevel;
+
+    static Node load(String config) {
+        return new SplitLoader().parse(config);
+    }
+
+    private Node parse(String config) {
+        config += "\n";
+        StringBuilder line = new StringBuilder();
+        Node root = new Node("root");
+        node = root;
+        end = root;
+        for (int i = 0, level = 0; i < config.length(); i++) {
+            char c = config.charAt(i);
+            if (c == '\n') {
+                String ln = line.toString().trim();
+                line.setLength(0);
+                int lineLevel = level;
+                level = 0;
+                if (StringHelper.isEmpty(ln) || ln.charAt(0) == '#') {
+                    continue;
+                }
+                if (lineLevel > curLevel) {
+                    throw new IllegalConfigException(ln);
+                }
+                for (; lineLevel < curLevel; curLevel--) {
+                    node = node.getParent();
+                }
+                if (ln.indexOf(":") >= 0) {
+                    attr(ln);
+                } else {
+                    nestedChild(ln);
+                    curLevel++;
+                }
+                continue;
+            } else if (c == '\t') {
+                level++;
+            }
+            line.append(c);
+        }
+        return root;
+    }
+
+    private void attr(String line) {
+        String[] attr = line.split(":");
+        if (attr.length == 0) {
+            throw new IllegalConfigException(line);
+        }
+        String name = attr[0];
+        int p;
+        if ((p = name.lastIndexOf('.')) >= 0) {
+            nestedChild(name.substring(0, p));
+            name = name.substring(p + 1);
+            node = node.getParent();
+        }
+        end.attr(name, attr.length == 1 ? "" : attr[1]);
+    }
+
+    private void nestedChild(String nestedName) {
+        int pos = 0;
+        int l = curLevel;
+        end = node;
+        boolean isNew = false;
+        for (int i = 0; i <= nestedName.length(); i++) {
+            if (i == nestedName.length() || nestedName.charAt(i) == '.') {
+                String name = nestedName.substring(pos, i);
+                if ("$".equals(name)) {
+                    isNew = true;
+                    name = "";
+                }
+                if (name.length() > 0) {
+                    domainName.put(l, name);
+                    end = create(end, name);
+                    domainNode.put(l, end);
+                } else {
+                    Node found = null;
+                    if (isNew) {
+                        name = domainName.get(l);
+                        if (name != null) {
+                            found = create(end, name);
+                        }
+                    } else {
+                        found = domainNode.get(l);
+                    }
+                    if (found == null) {
+                        throw new IllegalConfigException(nestedName);
+                    }
+                    domainNode.put(l, found);
+                    end = found;
+                }
+                if (l == curLevel) {
+                    node = end;
+                }
+                pos = i + 1;
+                l++;
+            }
+        }
+    }
+
+    private static Node create(Node parent, String childName) {
+        Node child = new Node(childName);
+        child.setParent(parent);
+        parent.addChild(child);
+        return child;
+    }
+
+}
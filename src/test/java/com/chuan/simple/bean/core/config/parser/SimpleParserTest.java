@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.core.build.builder.Builder;
+
+public class SimpleParserTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test(timeout = 10000)
+    public void buildersAreRegisteredInDeclarationOrder() throws IOException {
+        String nested = configs.write("nested.sp", builder("nested"));
+        String first = configs.write("first.sp",
+                concat(builder("first"), imports(nested)));
+        String second = configs.write("second.sp", builder("second"));
+        String root = configs.write("root.sp", concat(builder("root"),
+                imports(first), builder("middle"), imports(second)));
+        String last = configs.write("last.sp", builder("last"));
+        List<String> registered =
+                Collections.synchronizedList(new ArrayList<>());
+        SimpleContext context = new SimpleContext() {
+            @Override
+            public void addBuilder(String beanName, Builder<?> builder) {
+                registered.add(beanName);
+                super.addBuilder(beanName, builder);
+            }
+        };
+        // The configs submitted first are loaded last.
+        AtomicInteger submitted = new AtomicInteger();
+        context.setConfigExecutor(task -> {
+            long delay = Math.max(0, 200 - 40 * submitted.getAndIncrement());
+            Thread thread = new Thread(() -> {
+                sleep(delay);
+                task.run();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        });
+        context.addConfig(new Resource(root), new Resource(last));
+        context.refresh();
+        assertEquals(Arrays.asList("root", "first", "nested", "middle",
+                "second", "last"), registered);
+        assertTrue(context.getRegistry().getParser().getPreloading()
+                .isEmpty());
+    }
+
+    @Test
+    public void configsLoadedAheadAreDroppedAfterParsing()
+            throws IOException {
+        List<Runnable> tasks = new ArrayList<>();
+        SimpleContext context = new SimpleContext();
+        // Never runs the loading, the config is not parsed anyway.
+        Executor idle = tasks::add;
+        context.setConfigExecutor(idle);
+        SimpleParser parser = new SimpleParser(context);
+        parser.preload(new Resource(configs.write("unused.sp",
+                builder("unused"))));
+        assertEquals(1, parser.getPreloading().size());
+        parser.parse(new Resource(configs.write("used.sp",
+                builder("used"))));
+        assertTrue(parser.getPreloading().isEmpty());
+        assertEquals(1, tasks.size());
+    }
+
+    private static String[] builder(String name) {
+        return new String[] { "builder", "\tname:" + name,
+                "\tclass:" + Bean.class.getName() };
+    }
+
+    private static String[] imports(String resource) {
+        return new String[] { "import", "\tresource:" + resource };
+    }
+
+    private static String[] concat(String[]... parts) {
+        List<String> lines = new ArrayList<>();
+        for (String[] part : parts) {
+            lines.addAll(Arrays.asList(part));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Bean {
+    }
+
+}
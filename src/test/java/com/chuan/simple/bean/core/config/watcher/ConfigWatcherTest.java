@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.config.watcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.RefreshReport;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.TestConfigs;
+
+public class ConfigWatcherTest {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    private final List<Set<String>> reloads = new ArrayList<>();
+
+    @Test(timeout = 20000)
+    public void changesWithinTheDebounceTimeReloadOnce() throws Exception {
+        String other = writeOther("first");
+        String root = writeRoot(other, "first");
+        SimpleContext context = new SimpleContext() {
+            @Override
+            public RefreshReport refreshIncrementally(
+                    Collection<Resource> changed) {
+                Set<String> paths = new HashSet<>();
+                for (Resource resource : changed) {
+                    paths.add(resource.getPath());
+                }
+                synchronized (reloads) {
+                    reloads.add(paths);
+                    reloads.notifyAll();
+                }
+                return super.refreshIncrementally(changed);
+            }
+        };
+        context.addConfig(new Resource(root));
+        context.refresh();
+        try {
+            ConfigWatcher watcher = context.watchConfigs(DEBOUNCE_MILLIS);
+            assertEquals(2, watcher.getWatchedFiles().size());
+            writeRoot(other, "second");
+            Thread.sleep(DEBOUNCE_MILLIS / 3);
+            writeOther("second");
+            // An unwatched file of the same folder.
+            configs.write("unrelated.sp", "builder");
+            awaitReloads(1);
+            Thread.sleep(DEBOUNCE_MILLIS * 3);
+            synchronized (reloads) {
+                assertEquals(1, reloads.size());
+                Set<String> expected = new HashSet<>();
+                expected.add(root);
+                expected.add(other);
+                assertEquals(expected, reloads.get(0));
+            }
+            assertEquals("second", ((Bean) context.build("root")).value);
+            assertEquals("second", ((Bean) context.build("other")).value);
+            context.stopWatchingConfigs();
+            writeOther("third");
+            Thread.sleep(DEBOUNCE_MILLIS * 3);
+            synchronized (reloads) {
+                assertEquals(1, reloads.size());
+            }
+        } finally {
+            context.destroy();
+        }
+    }
+
+    private void awaitReloads(int count) throws InterruptedException {
+        synchronized (reloads) {
+            while (reloads.size() < count) {
+                reloads.wait();
+            }
+            assertTrue(reloads.size() >= count);
+        }
+    }
+
+    private String writeRoot(String other, String value) throws IOException {
+        return configs.write("root.sp",
+                "builder",
+                "\tname:root",
+                "\tclass:" + Bean.class.getName(),
+                "\tfield",
+                "\t\tname:value",
+                "\t\tval:" + value,
+                "import",
+                "\tresource:" + other);
+    }
+
+    private String writeOther(String value) throws IOException {
+        return configs.write("other.sp",
+                "builder",
+                "\tname:other",
+                "\tclass:" + Bean.class.getName(),
+                "\tfield",
+                "\t\tname:value",
+                "\t\tval:" + value);
+    }
+
+    public static class Bean {
+
+        String value;
+
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.chuan.simple.bean.core.handler.ClassPathScanner.ClassResource;
+
+public class ClassFilePrefilterTest {
+
+    @Test
+    public void annotationsEqualTheAnnotationsOfAFullVisit()
+            throws IOException {
+        int compared = 0;
+        try (ClassPathScanner scanner = new ClassPathScanner(
+                ClassFilePrefilterTest.class.getClassLoader())) {
+            for (ClassResource resource : scanner
+                    .scan("com/chuan/simple/**/*.class")) {
+                byte[] bytes;
+                try (InputStream in = resource.open()) {
+                    bytes = ClassFilePrefilter.readAll(in);
+                }
+                assertEquals(resource.toString(), visit(bytes),
+                        sorted(ClassFilePrefilter.getClassAnnotations(bytes)));
+                compared++;
+            }
+        }
+        assertTrue("Only " + compared + " classes found", compared > 100);
+    }
+
+    @Test
+    public void membersAndAnnotationValuesAreSkipped() {
+        byte[] bytes = annotatedClass();
+        List<String> annotations =
+                ClassFilePrefilter.getClassAnnotations(bytes);
+        assertEquals(visit(bytes), sorted(annotations));
+        assertEquals(Arrays.asList("Lgen/A;", "Lgen/B;", "Lgen/C;"),
+                sorted(annotations));
+    }
+
+    @Test
+    public void classesWithoutAnnotationsHaveNone() {
+        assertEquals(Collections.emptyList(), ClassFilePrefilter
+                .getClassAnnotations(TestClasses.classFile("gen.Plain")));
+    }
+
+    @Test
+    public void unreadableBytesAreLeftToTheFullVisit() {
+        byte[] bytes = annotatedClass();
+        byte[] otherMagic = bytes.clone();
+        otherMagic[0] = 0;
+        byte[] unknownTag = bytes.clone();
+        // The tag of the first constant pool entry.
+        unknownTag[10] = 99;
+        for (byte[] broken : Arrays.asList(otherMagic, unknownTag,
+                Arrays.copyOf(bytes, bytes.length / 2), new byte[3])) {
+            assertNull(ClassFilePrefilter.getClassAnnotations(broken));
+        }
+    }
+
+    /**
+     * A class with annotation values of every kind, long and double
+     * constants, fields and code, visible and invisible annotations.
+     */
+    private static byte[] annotatedClass() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+                "gen/Annotated", null, "java/lang/Object",
+                new String[] { "java/io/Serializable" });
+        FieldVisitor fv = cw.visitField(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                "LONG", "J", null, 42L);
+        fv.visitAnnotation("Lgen/FieldOnly;", true).visitEnd();
+        fv.visitEnd();
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC
+                | Opcodes.ACC_FINAL, "DOUBLE", "D", null, 4.2d).visitEnd();
+        AnnotationVisitor av = cw.visitAnnotation("Lgen/A;", true);
+        av.visit("string", "value");
+        av.visit("int", 7);
+        av.visit("long", 7L);
+        av.visit("type", Type.getType("Ljava/lang/String;"));
+        av.visitEnum("enum", "Ljava/lang/annotation/ElementType;", "TYPE");
+        AnnotationVisitor nested = av.visitAnnotation("nested", "Lgen/N;");
+        nested.visit("deep", new int[] { 1, 2 });
+        nested.visitEnd();
+        AnnotationVisitor array = av.visitArray("array");
+        array.visit(null, "x");
+        array.visitEnum(null, "Ljava/lang/annotation/ElementType;", "FIELD");
+        array.visitAnnotation(null, "Lgen/N;").visitEnd();
+        array.visitEnd();
+        av.visitEnd();
+        cw.visitAnnotation("Lgen/B;", false).visitEnd();
+        cw.visitAnnotation("Lgen/C;", true).visitEnd();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V",
+                null, null);
+        mv.visitAnnotation("Lgen/MethodOnly;", true).visitEnd();
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object",
+                "<init>", "()V", false);
+        mv.visitLdcInsn(1.5d);
+        mv.visitInsn(Opcodes.POP2);
+        mv.visitLdcInsn("text");
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitSource("Annotated.java", null);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * The descriptors of the class annotations visited by ASM, sorted.
+     */
+    private static List<String> visit(byte[] bytes) {
+        List<String> annotations = new ArrayList<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM8) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor,
+                    boolean visible) {
+                annotations.add(descriptor);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+                | ClassReader.SKIP_FRAMES);
+        return sorted(annotations);
+    }
+
+    private static List<String> sorted(List<String> annotations) {
+        List<String> sorted = new ArrayList<>(annotations);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.core.handler.ClassPathScanner.ClassResource;
+
+public class ClassPathScannerTest {
+
+    private static final String PATTERN = "gen/scan/**/*.class";
+
+    @Rule
+    public final TestClasses classes = new TestClasses();
+
+    private Path folder;
+
+    private Path jar;
+
+    private ClassLoader classLoader;
+
+    private void createClassPath() throws IOException {
+        folder = classes.folder("classes");
+        classes.write(folder, "gen.scan.A", TestClasses.classFile("gen.scan.A"));
+        classes.write(folder, "gen.scan.sub.B",
+                TestClasses.classFile("gen.scan.sub.B"));
+        classes.write(folder, "gen.other.C",
+                TestClasses.classFile("gen.other.C"));
+        Map<String, byte[]> jarClasses = new LinkedHashMap<>();
+        jarClasses.put("gen.scan.A", TestClasses.classFile("gen.scan.A"));
+        jarClasses.put("gen.scan.D", TestClasses.classFile("gen.scan.D"));
+        jarClasses.put("gen.scan.deep.er.E",
+                TestClasses.classFile("gen.scan.deep.er.E"));
+        jarClasses.put("gen.other.F", TestClasses.classFile("gen.other.F"));
+        jar = classes.jar("lib.jar", jarClasses);
+        classLoader = classes.use(folder, jar);
+    }
+
+    @Test
+    public void foldersAndJarsAreScannedInClassPathOrder()
+            throws IOException {
+        createClassPath();
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> found = byPath(scanner.scan(PATTERN));
+            assertEquals(Collections.<String>emptyList(),
+                    missing(found, "gen/scan/A.class", "gen/scan/sub/B.class",
+                            "gen/scan/D.class", "gen/scan/deep/er/E.class"));
+            assertEquals(4, found.size());
+            // Taken from the folder, which comes first.
+            assertEquals(folder.resolve("gen/scan/A.class").toString(),
+                    found.get("gen/scan/A.class").toString());
+            assertTrue(found.get("gen/scan/D.class").toString()
+                    .endsWith("lib.jar!/gen/scan/D.class"));
+        }
+    }
+
+    @Test
+    public void jarEntriesAreReadFromTheJar() throws IOException {
+        createClassPath();
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader);
+                JarFile jarFile = new JarFile(jar.toFile())) {
+            ClassResource resource =
+                    byPath(scanner.scan(PATTERN)).get("gen/scan/D.class");
+            ZipEntry entry = jarFile.getEntry("gen/scan/D.class");
+            assertEquals(entry.getSize(), resource.getSize());
+            assertEquals(entry.getCrc(), resource.getStamp());
+            try (InputStream in = resource.open();
+                    InputStream expected = jarFile.getInputStream(entry)) {
+                assertArrayEquals(ClassFilePrefilter.readAll(expected),
+                        ClassFilePrefilter.readAll(in));
+            }
+        }
+    }
+
+    @Test
+    public void skippedRootsAreNotSearched() throws IOException {
+        createClassPath();
+        String jarRoot = ClassPathScanner.rootOf(
+                classLoader.getResource("gen/scan/D.class"),
+                "gen/scan/D.class");
+        assertEquals("jar:" + jar.toUri().toURL() + "!/", jarRoot);
+        String folderRoot = ClassPathScanner.rootOf(
+                classLoader.getResource("gen/scan/"), "gen/scan/");
+        assertEquals(folder.toUri().toURL().toString(), folderRoot);
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> found = byPath(
+                    scanner.scan(PATTERN, Collections.singleton(jarRoot)));
+            assertEquals(2, found.size());
+            assertTrue(found.containsKey("gen/scan/sub/B.class"));
+            found = byPath(
+                    scanner.scan(PATTERN, Collections.singleton(folderRoot)));
+            assertEquals(3, found.size());
+            // The copy in the jar once the folder is skipped.
+            assertTrue(found.get("gen/scan/A.class").toString()
+                    .endsWith("lib.jar!/gen/scan/A.class"));
+        }
+    }
+
+    private static Map<String, ClassResource> byPath(
+            List<ClassResource> resources) {
+        Map<String, ClassResource> found = new LinkedHashMap<>();
+        for (ClassResource resource : resources) {
+            found.put(resource.getPath(), resource);
+        }
+        return found;
+    }
+
+    private static List<String> missing(Map<String, ClassResource> found,
+            String... paths) {
+        List<String> missing = new ArrayList<>();
+        for (String path : paths) {
+            if (!found.containsKey(path)) {
+                missing.add(path);
+            }
+        }
+        return missing;
+    }
+
+}
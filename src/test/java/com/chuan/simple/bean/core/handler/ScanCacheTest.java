@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.annotation.Component;
+import com.chuan.simple.bean.core.handler.ClassPathScanner.ClassResource;
+import com.chuan.simple.bean.index.ComponentIndex.IndexedComponent;
+
+public class ScanCacheTest {
+
+    private static final String COMPONENT = Component.class.getName();
+
+    @Rule
+    public final TestClasses classes = new TestClasses();
+
+    private Path folder;
+
+    private Path cachePath;
+
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = classes.folder("classes");
+        classes.write(folder, "gen.cache.A",
+                TestClasses.classFile("gen.cache.A", COMPONENT));
+        classes.write(folder, "gen.cache.B",
+                TestClasses.classFile("gen.cache.B"));
+        classes.jar("lib.jar", Collections.singletonMap("gen.cache.C",
+                TestClasses.classFile("gen.cache.C", COMPONENT)));
+        classLoader = classes.use(folder,
+                folder.resolveSibling("lib.jar"));
+        cachePath = classes.folder("cache").resolve("nested/scan.cache");
+    }
+
+    @Test
+    public void savedEntriesAreHitUntilTheClassFilesChange()
+            throws IOException {
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> resources = scan(scanner);
+            ScanCache cache = new ScanCache(cachePath);
+            for (ClassResource resource : resources.values()) {
+                assertNull(cache.get(resource));
+            }
+            cache.put(resources.get("A"), component("gen.cache.A", "a"));
+            cache.put(resources.get("B"), null);
+            cache.put(resources.get("C"), component("gen.cache.C", null));
+            cache.save();
+        }
+        assertEquals(Collections.singletonList("scan.cache"),
+                fileNames(cachePath.getParent()));
+        File a = folder.resolve("gen/cache/A.class").toFile();
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> resources = scan(scanner);
+            ScanCache cache = new ScanCache(cachePath);
+            IndexedComponent component =
+                    cache.get(resources.get("A")).getComponent();
+            assertEquals("gen.cache.A", component.getClassName());
+            assertEquals("a", component.getBuilderName());
+            assertEquals(Collections.singletonList(COMPONENT),
+                    component.getAnnotationNames());
+            assertEquals(1, component.getBeanMethods().size());
+            assertArrayEquals(new String[] { "create", "()Ljava/lang/Object;" },
+                    component.getBeanMethods().get(0));
+            assertNull(cache.get(resources.get("B")).getComponent());
+            assertNull(cache.get(resources.get("C")).getComponent()
+                    .getBuilderName());
+            assertTrue(a.setLastModified(a.lastModified() + 2000));
+            assertNull(cache.get(scan(scanner).get("A")));
+        }
+    }
+
+    @Test
+    public void saveKeepsTheUsedEntriesOnly() throws IOException {
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> resources = scan(scanner);
+            ScanCache cache = new ScanCache(cachePath);
+            cache.put(resources.get("A"), component("gen.cache.A", null));
+            cache.put(resources.get("B"), null);
+            cache.save();
+            // Nothing changed and every entry is used, nothing is written.
+            cache = new ScanCache(cachePath);
+            assertNotNull(cache.get(resources.get("A")));
+            assertNotNull(cache.get(resources.get("B")));
+            File file = cachePath.toFile();
+            assertTrue(file.setLastModified(1000));
+            cache.save();
+            assertEquals(1000, file.lastModified());
+            cache = new ScanCache(cachePath);
+            assertNotNull(cache.get(resources.get("A")));
+            cache.save();
+            cache = new ScanCache(cachePath);
+            assertNotNull(cache.get(resources.get("A")));
+            assertNull(cache.get(resources.get("B")));
+        }
+    }
+
+    @Test
+    public void brokenCachesAreIgnoredAndReplaced() throws IOException {
+        Files.createDirectories(cachePath.getParent());
+        try (ClassPathScanner scanner = new ClassPathScanner(classLoader)) {
+            Map<String, ClassResource> resources = scan(scanner);
+            ScanCache cache = new ScanCache(cachePath);
+            cache.put(resources.get("A"), component("gen.cache.A", "a"));
+            cache.save();
+            byte[] saved = Files.readAllBytes(cachePath);
+            for (byte[] broken : Arrays.asList(new byte[] { 1, 2, 3 },
+                    Arrays.copyOf(saved, saved.length - 5),
+                    Arrays.copyOf(saved, 8))) {
+                Files.write(cachePath, broken);
+                cache = new ScanCache(cachePath);
+                assertNull(cache.get(resources.get("A")));
+                cache.put(resources.get("A"), component("gen.cache.A", "a"));
+                cache.save();
+                assertArrayEquals(saved, Files.readAllBytes(cachePath));
+            }
+            assertEquals(Collections.singletonList("scan.cache"),
+                    fileNames(cachePath.getParent()));
+        }
+    }
+
+    private static IndexedComponent component(String className,
+            String builderName) {
+        IndexedComponent component =
+                new IndexedComponent(className, builderName);
+        component.addAnnotationName(COMPONENT);
+        component.addBeanMethod("create", "()Ljava/lang/Object;");
+        return component;
+    }
+
+    /**
+     * The class resources by simple class name.
+     */
+    private static Map<String, ClassResource> scan(ClassPathScanner scanner) {
+        Map<String, ClassResource> resources = new HashMap<>();
+        for (ClassResource resource : scanner.scan("gen/cache/*.class")) {
+            String path = resource.getPath();
+            resources.put(path.substring(path.lastIndexOf('/') + 1,
+                    path.lastIndexOf('.')), resource);
+        }
+        assertEquals(3, resources.size());
+        return resources;
+    }
+
+    private static List<String> fileNames(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.map(file -> file.getFileName().toString())
+                    .collect(Collectors.toList());
+        }
+    }
+
+}
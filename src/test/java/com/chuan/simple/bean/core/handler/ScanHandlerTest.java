@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.helper.clazz.BuilderNameHelper;
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.annotation.Component;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.TestConfigs;
+import com.chuan.simple.bean.index.ComponentIndex;
+
+public class ScanHandlerTest {
+
+    private static final String COMPONENT = Component.class.getName();
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Rule
+    public final TestClasses classes = new TestClasses();
+
+    @Test(timeout = 10000)
+    public void largeScansRunOnTheScanExecutorOfTheContext()
+            throws IOException {
+        Path folder = classes.folder("classes");
+        for (int i = 0; i < 100; i++) {
+            classes.write(folder, "gen.many.C" + i,
+                    TestClasses.classFile("gen.many.C" + i, COMPONENT));
+        }
+        classes.use(folder);
+        SimpleContext context = new SimpleContext();
+        AtomicInteger tasks = new AtomicInteger();
+        context.setScanExecutor(task -> {
+            tasks.incrementAndGet();
+            new Thread(task).start();
+        });
+        context.addConfig(new Resource(configs.write("scan.sp",
+                "scan",
+                "\tbase-package:gen.many")));
+        context.refresh();
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(context.getBuilder("c" + i));
+        }
+        assertEquals(4, tasks.get());
+    }
+
+    @Test
+    public void metaAnnotatedComponentsAreNotRejectedByThePrefilter()
+            throws IOException {
+        Path folder = classes.folder("classes");
+        // The stereotypes are outside the scanned package.
+        classes.write(folder, "gen.stereotype.Service",
+                TestClasses.annotationFile("gen.stereotype.Service",
+                        COMPONENT));
+        classes.write(folder, "gen.stereotype.Special",
+                TestClasses.annotationFile("gen.stereotype.Special",
+                        "gen.stereotype.Service"));
+        classes.write(folder, "gen.stereotype.Other",
+                TestClasses.annotationFile("gen.stereotype.Other"));
+        classes.write(folder, "gen.meta.Direct",
+                TestClasses.classFile("gen.meta.Direct", COMPONENT));
+        classes.write(folder, "gen.meta.Service", TestClasses.classFile(
+                "gen.meta.Service", "gen.stereotype.Service"));
+        classes.write(folder, "gen.meta.Special", TestClasses.classFile(
+                "gen.meta.Special", "gen.stereotype.Other",
+                "gen.stereotype.Special"));
+        classes.write(folder, "gen.meta.Plain", TestClasses.classFile(
+                "gen.meta.Plain", "gen.stereotype.Other"));
+        classes.write(folder, "gen.meta.Bare",
+                TestClasses.classFile("gen.meta.Bare"));
+        classes.use(folder);
+        SimpleContext context = configs.context(configs.write("scan.sp",
+                "scan",
+                "\tbase-package:gen.meta"));
+        Set<String> names =
+                new HashSet<>(context.getRegistry().getBuilderNames());
+        assertEquals(new HashSet<>(Arrays.asList("direct", "service",
+                "special")), names);
+    }
+
+    @Test
+    public void indexIsOnlyUsedForTheRootItIsFoundIn() throws IOException {
+        Path indexed = classes.folder("indexed");
+        classes.write(indexed, "gen.roots.Listed",
+                TestClasses.classFile("gen.roots.Listed", COMPONENT));
+        // Left out of the index, so it is not found in this root.
+        classes.write(indexed, "gen.roots.Unlisted",
+                TestClasses.classFile("gen.roots.Unlisted", COMPONENT));
+        Path index = indexed.resolve(ComponentIndex.LOCATION);
+        Files.createDirectories(index.getParent());
+        Files.write(index, Arrays.asList(
+                "component gen.roots.Listed listedByIndex " + COMPONENT),
+                StandardCharsets.UTF_8);
+        Path plain = classes.folder("plain");
+        classes.write(plain, "gen.roots.Scanned",
+                TestClasses.classFile("gen.roots.Scanned", COMPONENT));
+        classes.use(indexed, plain);
+        SimpleContext context = configs.context(configs.write("scan.sp",
+                "scan",
+                "\tbase-package:gen.roots"));
+        assertEquals(new HashSet<>(Arrays.asList("listedByIndex", "scanned")),
+                new HashSet<>(context.getRegistry().getBuilderNames()));
+        SimpleContext unindexed = configs.context(configs.write("full.sp",
+                "scan",
+                "\tbase-package:gen.roots",
+                "\tindex:false"));
+        assertEquals(
+                new HashSet<>(Arrays.asList("listed", "unlisted", "scanned")),
+                new HashSet<>(unindexed.getRegistry().getBuilderNames()));
+    }
+
+    @Test
+    public void componentNamesEqualTheNamesOfTheHelper() {
+        for (Class<?> clazz : new Class<?>[] { ScanHandlerTest.class,
+                UserService.class, Outer.Inner.class, URLHandler.class,
+                X.class, Xy.class, XY.class }) {
+            assertEquals(clazz.getName(),
+                    BuilderNameHelper.generateAnnotatedBuilderName(clazz),
+                    ScanHandler.generateComponentName(clazz.getName()));
+        }
+    }
+
+    public static class UserService {
+    }
+
+    public static class Outer {
+
+        public static class Inner {
+        }
+
+    }
+
+    public static class URLHandler {
+    }
+
+    public static class X {
+    }
+
+    public static class Xy {
+    }
+
+    public static class XY {
+    }
+
+}
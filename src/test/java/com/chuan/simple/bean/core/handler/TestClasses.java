@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import org.junit.rules.ExternalResource;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Writes class files generated by ASM into class folders and jars of a
+ * temporary folder, deleted after each test, and makes them the context
+ * class loader of the test.
+ */
+public class TestClasses extends ExternalResource {
+
+    private Path folder;
+
+    private ClassLoader outer;
+
+    @Override
+    protected void before() throws IOException {
+        folder = Files.createTempDirectory("simple-classes");
+        outer = Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    protected void after() {
+        Thread.currentThread().setContextClassLoader(outer);
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            // Left to the temporary folder of the system.
+        }
+    }
+
+    /**
+     * A class folder of the name, created if missing.
+     */
+    public Path folder(String name) throws IOException {
+        return Files.createDirectories(folder.resolve(name));
+    }
+
+    /**
+     * Write the class file into the class folder.
+     */
+    public Path write(Path classes, String className, byte[] bytes)
+            throws IOException {
+        Path file = classes.resolve(className.replace('.', '/') + ".class");
+        Files.createDirectories(file.getParent());
+        return Files.write(file, bytes);
+    }
+
+    /**
+     * Write the class files, keyed by class name, into a jar of the name.
+     * The folders get entries of their own, like the jar tool writes them.
+     */
+    public Path jar(String name, Map<String, byte[]> classes)
+            throws IOException {
+        Path jar = folder.resolve(name);
+        Set<String> folders = new HashSet<>();
+        try (JarOutputStream out =
+                new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                String path = internalName(entry.getKey()) + ".class";
+                for (int i = path.indexOf('/'); i > 0;
+                        i = path.indexOf('/', i + 1)) {
+                    if (folders.add(path.substring(0, i + 1))) {
+                        out.putNextEntry(
+                                new JarEntry(path.substring(0, i + 1)));
+                        out.closeEntry();
+                    }
+                }
+                out.putNextEntry(new JarEntry(path));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Set a class loader of the class folders and jars as the context class
+     * loader, until the end of the test.
+     */
+    public ClassLoader use(Path... roots) throws MalformedURLException {
+        URL[] urls = new URL[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            urls[i] = roots[i].toUri().toURL();
+        }
+        ClassLoader classLoader = new URLClassLoader(urls, outer);
+        Thread.currentThread().setContextClassLoader(classLoader);
+        return classLoader;
+    }
+
+    /**
+     * A public class with a public constructor, annotated with the
+     * annotation types.
+     */
+    public static byte[] classFile(String className,
+            String... annotations) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+                internalName(className), null, "java/lang/Object", null);
+        annotate(cw, annotations);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V",
+                null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object",
+                "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * A runtime annotation type, annotated with the annotation types.
+     */
+    public static byte[] annotationFile(String className,
+            String... annotations) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE
+                | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ANNOTATION,
+                internalName(className), null, "java/lang/Object",
+                new String[] { "java/lang/annotation/Annotation" });
+        annotate(cw, annotations);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void annotate(ClassWriter cw, String... annotations) {
+        for (String annotation : annotations) {
+            cw.visitAnnotation(
+                    Type.getObjectType(internalName(annotation))
+                            .getDescriptor(),
+                    true).visitEnd();
+        }
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.core.info;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.chuan.simple.bean.annotation.Autowired;
+import com.chuan.simple.bean.core.ConcurrentTasks;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.TestConfigs;
+
+public class ExecutableInfoCacheTest {
+
+    @Rule
+    public final TestConfigs configs = new TestConfigs();
+
+    @Test
+    public void parametersAreReadOncePerExecutable() throws Exception {
+        ExecutableInfoCache cache = new ExecutableInfoCache();
+        Method method = Target.class.getMethod("join", String.class,
+                List.class);
+        ExecutableInfo info = cache.get(method);
+        assertSame(info, cache.get(Target.class.getMethod("join",
+                String.class, List.class)));
+        assertSame(info.getParameterTypes(), cache.get(method)
+                .getParameterTypes());
+        assertEquals(2, info.getParameterCount());
+        assertEquals(List.class, info.getParameterTypes()[1]);
+        assertEquals(method.getGenericParameterTypes()[1],
+                info.getGenericParameterTypes()[1]);
+        assertSame(info.getParameterAnnotations(0),
+                info.getParameterAnnotations(0));
+        assertTrue(info.getParameterAnnotations(0)
+                .containsKey(Autowired.class));
+        assertTrue(info.getParameterAnnotations(1).isEmpty());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void parameterNamesAreTakenFromTheExecutable() throws Exception {
+        ExecutableInfoCache cache = new ExecutableInfoCache();
+        Method method = Target.class.getMethod("join", String.class,
+                List.class);
+        String[] names = cache.get(method).getParameterNames();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            assertEquals(names[i], cache.getParameterName(parameters[i]));
+            assertEquals(i, cache.get(method).indexOf(parameters[i]));
+        }
+        Parameter other = Target.class.getConstructor(String.class)
+                .getParameters()[0];
+        assertEquals(-1, cache.get(method).indexOf(other));
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentReadersShareOneInfo() throws Exception {
+        ExecutableInfoCache cache = new ExecutableInfoCache();
+        Constructor<?> constructor = Target.class.getConstructor(String.class);
+        List<Callable<ExecutableInfo>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> cache.get(constructor));
+        }
+        assertEquals(1, new HashSet<>(ConcurrentTasks.run(tasks)).size());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void buildsReuseTheInfosOfTheContext() throws Exception {
+        SimpleContext context = configs.context(configs.write("target.sp",
+                "builder",
+                "\tname:target",
+                "\tclass:" + Target.class.getName(),
+                "\tscope:prototype",
+                "\tbuild-parameter",
+                "\t\tval:a"));
+        ExecutableInfoCache cache = context.getExecutableInfos();
+        Target first = (Target) context.build("target");
+        int size = cache.size();
+        assertTrue(size > 0);
+        ExecutableInfo info =
+                cache.get(Target.class.getConstructor(String.class));
+        assertEquals(size, cache.size());
+        Target second = (Target) context.build("target");
+        assertNotSame(first, second);
+        assertEquals("a", second.label);
+        assertEquals(size, cache.size());
+        assertSame(info, cache.get(Target.class.getConstructor(String.class)));
+        assertNotNull(info.getParameterNames());
+    }
+
+    public static class Target {
+
+        private final String label;
+
+        public Target(String label) {
+            this.label = label;
+        }
+
+        public String join(@Autowired String prefix, List<String> parts) {
+            return prefix + parts;
+        }
+
+    }
+
+}
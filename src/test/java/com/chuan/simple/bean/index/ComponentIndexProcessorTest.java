@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018-2021 Bingchuan Sun.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.chuan.simple.bean.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chuan.simple.helper.resource.Resource;
+import com.chuan.simple.bean.core.SimpleContext;
+import com.chuan.simple.bean.core.build.generated.GeneratedBuilder;
+import com.chuan.simple.bean.core.build.generated.GeneratedMethodBuilder;
+import com.chuan.simple.bean.index.ComponentIndex.IndexedComponent;
+
+public class ComponentIndexProcessorTest {
+
+    private static final String ANNOTATION =
+            "@com.chuan.simple.bean.annotation.";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void componentsAreIndexedWithNamesAnnotationsAndBeanMethods()
+            throws IOException {
+        File classes = folder.newFolder("classes");
+        compile(classes, false,
+                source("gen.index.Named",
+                        ANNOTATION + "Component(\"named\")",
+                        "public class Named {",
+                        "}"),
+                source("gen.index.Config",
+                        ANNOTATION + "Configuration",
+                        "public class Config {",
+                        "    " + ANNOTATION + "Bean",
+                        "    public String text(int length, String[] parts) {",
+                        "        return null;",
+                        "    }",
+                        "}"),
+                source("gen.index.Plain",
+                        "public class Plain {",
+                        "}"));
+        List<String> lines = readIndex(classes);
+        assertEquals(Arrays.asList(
+                "component gen.index.Config - "
+                        + "com.chuan.simple.bean.annotation.Configuration",
+                "bean gen.index.Config text (I[Ljava/lang/String;)"
+                        + "Ljava/lang/String;",
+                "component gen.index.Named named "
+                        + "com.chuan.simple.bean.annotation.Component"),
+                lines);
+        ComponentIndex index = load(classes);
+        List<IndexedComponent> components =
+                index.getComponents("gen/index/**/*.class");
+        assertEquals(2, components.size());
+        IndexedComponent config = components.get(0);
+        assertEquals("gen.index.Config", config.getClassName());
+        assertEquals(null, config.getBuilderName());
+        assertEquals(1, config.getBeanMethods().size());
+        assertTrue(config.toClassInfo().getAnnotations().containsKey(
+                "com.chuan.simple.bean.annotation.Configuration"));
+        assertEquals("named", components.get(1).getBuilderName());
+    }
+
+    @Test
+    public void entriesOfClassesNotRecompiledAreKept() throws IOException {
+        File classes = folder.newFolder("classes");
+        compile(classes, false, source("gen.index.First",
+                ANNOTATION + "Component",
+                "public class First {",
+                "}"));
+        // Only the second class is compiled, the first one is on the class
+        // path.
+        compile(classes, false, source("gen.index.Second",
+                ANNOTATION + "Service",
+                "public class Second {",
+                "}"));
+        List<String> lines = readIndex(classes);
+        assertEquals(Arrays.asList(
+                "component gen.index.First - "
+                        + "com.chuan.simple.bean.annotation.Component",
+                "component gen.index.Second - "
+                        + "com.chuan.simple.bean.annotation.Service"),
+                lines);
+        // A class removed from the sources is dropped.
+        new File(classes, "gen/index/First.class").delete();
+        compile(classes, false, source("gen.index.Second",
+                ANNOTATION + "Service(\"second\")",
+                "public class Second {",
+                "}"));
+        assertEquals(Arrays.asList(
+                "component gen.index.Second second "
+                        + "com.chuan.simple.bean.annotation.Service"),
+                readIndex(classes));
+    }
+
+    @Test
+    public void generatedBuildersBuildTheComponents() throws Exception {
+        File classes = folder.newFolder("classes");
+        compile(classes, true,
+                source("gen.built.Repository",
+                        ANNOTATION + "Component",
+                        "public class Repository {",
+                        "}"),
+                source("gen.built.Service",
+                        ANNOTATION + "Service",
+                        ANNOTATION + "Scope(\"prototype\")",
+                        "public class Service {",
+                        "    " + ANNOTATION + "Autowired",
+                        "    public Repository repository;",
+                        "    " + ANNOTATION + "Bean(\"label\")",
+                        "    public String label(",
+                        "            " + ANNOTATION + "Autowired",
+                        "            Repository repository) {",
+                        "        return \"label of \" + (repository != null);",
+                        "    }",
+                        "}"),
+                source("gen.built.Hidden",
+                        ANNOTATION + "Component",
+                        "public class Hidden {",
+                        "    " + ANNOTATION + "Autowired",
+                        "    private Repository repository;",
+                        "    public Repository getRepository() {",
+                        "        return repository;",
+                        "    }",
+                        "}"));
+        for (String line : readIndex(classes)) {
+            if (line.startsWith(ComponentIndex.COMPONENT)) {
+                assertEquals(line, !line.contains("Hidden"),
+                        line.endsWith(BuilderSourceWriter.SUFFIX));
+            }
+        }
+        ClassLoader outer = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { classes.toURI().toURL() },
+                getClass().getClassLoader())) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            File config = new File(folder.getRoot(), "scan.sp");
+            Files.write(config.toPath(),
+                    Arrays.asList("scan", "\tbase-package:gen.built"),
+                    StandardCharsets.UTF_8);
+            SimpleContext context = new SimpleContext();
+            context.addConfig(new Resource(config.getPath()));
+            context.refresh();
+            assertTrue(
+                    context.getBuilder("service") instanceof GeneratedBuilder);
+            assertTrue(context
+                    .getBuilder("label") instanceof GeneratedMethodBuilder);
+            assertFalse(
+                    context.getBuilder("hidden") instanceof GeneratedBuilder);
+            Object repository = context.build("repository");
+            Object service = context.build("service");
+            assertSame(repository,
+                    service.getClass().getField("repository").get(service));
+            assertNotSame(service, context.build("service"));
+            assertEquals("label of true", context.build("label"));
+            Object hidden = context.build("hidden");
+            assertSame(repository, hidden.getClass()
+                    .getMethod("getRepository").invoke(hidden));
+        } finally {
+            Thread.currentThread().setContextClassLoader(outer);
+        }
+    }
+
+    /**
+     * Compile the sources into the class folder, which is on the class path
+     * of the compilation as well.
+     */
+    private static void compile(File classes, boolean builders,
+            File... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = new ArrayList<>(Arrays.asList("-d",
+                classes.getPath(), "-classpath",
+                classes.getPath() + File.pathSeparator
+                        + System.getProperty("java.class.path"),
+                "-processor", ComponentIndexProcessor.class.getName(),
+                "-implicit:none"));
+        if (builders) {
+            options.add("-A" + ComponentIndexProcessor.OPTION_BUILDERS
+                    + "=true");
+        }
+        try (StandardJavaFileManager files =
+                compiler.getStandardFileManager(null, null, null)) {
+            boolean compiled = compiler.getTask(null, files, null, options,
+                    null, files.getJavaFileObjects(sources)).call();
+            assertTrue("Compilation failed", compiled);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File source(String className, String... lines) throws IOException {
+        int dot = className.lastIndexOf('.');
+        File file = new File(folder.getRoot(),
+                "src/" + className.replace('.', '/') + ".java");
+        file.getParentFile().mkdirs();
+        List<String> content = new ArrayList<>();
+        content.add("package " + className.substring(0, dot) + ";");
+        content.addAll(Arrays.asList(lines));
+        Files.write(file.toPath(), content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> readIndex(File classes) throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(
+                new File(classes, ComponentIndex.LOCATION).toPath(),
+                StandardCharsets.UTF_8));
+        // The comment naming the processor.
+        assertTrue(lines.remove(0).startsWith("#"));
+        return lines;
+    }
+
+    private static ComponentIndex load(File classes) throws IOException {
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { classes.toURI().toURL() }, null)) {
+            return ComponentIndex.load(classLoader);
+        }
+    }
+
+}